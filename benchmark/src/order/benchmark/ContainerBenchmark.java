@@ -0,0 +1,87 @@
+package order.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import order.exceptions.ContainerException;
+import order.exceptions.PositionException;
+import order.packing.Color;
+import order.packing.CompactContainer;
+import order.packing.Container;
+import order.packing.IContainer;
+import order.packing.Item;
+import order.packing.Position;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the validation and of the filling of a container with unit
+ * items, for Container and CompactContainer. A container holds up to 125
+ * items, the validation of larger numbers of items is measured by the
+ * validation of orders in {@link OrderBenchmark}. The allocations of the
+ * filling are reported by the GC profiler (-prof gc, used by default).
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerBenchmark {
+    
+    @Param({ "10", "25", "64", "125" })
+    public int items;
+    
+    @Param({ "Container", "CompactContainer" })
+    public String layout;
+    
+    private Item[] unit;
+    private Position[] positions;
+    private IContainer container;
+    
+    @Setup
+    public void setup() throws ContainerException, PositionException {
+        
+        this.unit = new Item[this.items];
+        this.positions = new Position[this.items];
+        
+        // Unit items filling the layers of the container from the bottom
+        for (int i = 0; i < this.items; i++) {
+            
+            this.unit[i] = new Item("ITEM" + i, "Item " + i, 1, 1, 1);
+            this.positions[i] = new Position(i % 5, i / 25, i / 5 % 5);
+        }
+        
+        this.container = this.fill();
+        this.container.close();
+    }
+    
+    @Benchmark
+    public void validate() throws ContainerException, PositionException {
+        
+        this.container.validate();
+    }
+    
+    @Benchmark
+    public IContainer fill() throws ContainerException {
+        
+        IContainer container = this.layout.equals("Container") ? new Container("C", Color.black, Color.blue) : new CompactContainer("C", Color.black, Color.blue);
+        
+        for (int i = 0; i < this.items; i++) {
+            
+            container.addItem(this.unit[i], this.positions[i], Color.red);
+        }
+        
+        return container;
+    }
+    
+}
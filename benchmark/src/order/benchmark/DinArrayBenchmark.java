@@ -0,0 +1,88 @@
+package order.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import order.util.DinArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of DinArray: filling an array, removing an element (and adding
+ * it back, to keep the size) and iterating it
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DinArrayBenchmark {
+    
+    @Param({ "10", "1000", "100000", "1000000" })
+    public int size;
+    
+    private Integer[] values;
+    private DinArray<Integer> array;
+    private int cursor;
+    
+    @Setup
+    public void setup() {
+        
+        this.values = new Integer[this.size];
+        this.array = new DinArray<>(Integer.class);
+        
+        for (int i = 0; i < this.size; i++) {
+            
+            this.values[i] = i;
+            this.array.add(this.values[i]);
+        }
+    }
+    
+    @Benchmark
+    public DinArray<Integer> add() {
+        
+        DinArray<Integer> a = new DinArray<>(Integer.class);
+        
+        for (Integer value : this.values) {
+            
+            a.add(value);
+        }
+        
+        return a;
+    }
+    
+    @Benchmark
+    public boolean remove() {
+        
+        // Walk the values with a prime stride, so the removed positions spread over the array
+        this.cursor = (int) ((this.cursor + 7919L) % this.size);
+        
+        Integer value = this.values[this.cursor];
+        boolean removed = this.array.remove(value);
+        
+        this.array.add(value);
+        
+        return removed;
+    }
+    
+    @Benchmark
+    public void iterator(Blackhole blackhole) {
+        
+        for (Integer value : this.array) {
+            
+            blackhole.consume(value);
+        }
+    }
+    
+}
@@ -0,0 +1,81 @@
+package order.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import order.base.Customer;
+import order.exceptions.ContainerException;
+import order.exceptions.OrderException;
+import order.exceptions.PositionException;
+import order.management.IOrder;
+import order.management.Management;
+import order.management.Order;
+import order.management.WorkloadGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of Management: registering a batch of orders and searching the
+ * orders of a customer. The orders are generated (not packed) by a
+ * WorkloadGenerator, with a customer for every 10 orders.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ManagementBenchmark {
+    
+    @Param({ "10", "1000", "100000", "1000000" })
+    public int orders;
+    
+    private Customer[] customers;
+    private Order[] batch;
+    private Management management;
+    private int cursor;
+    
+    @Setup
+    public void setup() throws OrderException, ContainerException, PositionException {
+        
+        WorkloadGenerator generator = new WorkloadGenerator(42);
+        
+        generator.setCustomers(Math.max(1, this.orders / 10));
+        generator.setPacked(false);
+        
+        this.batch = generator.nextOrders(this.orders);
+        this.customers = generator.getCustomers();
+        this.management = this.add();
+    }
+    
+    @Benchmark
+    public Management add() throws OrderException {
+        
+        Management m = new Management();
+        
+        for (Order order : this.batch) {
+            
+            m.add(order);
+        }
+        
+        return m;
+    }
+    
+    @Benchmark
+    public IOrder[] getOrdersByCustomer() {
+        
+        this.cursor = (this.cursor + 1) % this.customers.length;
+        
+        return this.management.getOrders(this.customers[this.cursor]);
+    }
+    
+}
@@ -0,0 +1,76 @@
+package order.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import order.exceptions.ContainerException;
+import order.exceptions.OrderException;
+import order.exceptions.PositionException;
+import order.management.Order;
+import order.management.WorkloadGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of an order with its items packed in shippings of 512 items on
+ * average, with the status mix of a WorkloadGenerator: counting the items
+ * to send, validating the containers and exporting the order. The export is written to a stream that discards it, so the disk
+ * isn't measured.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OrderBenchmark {
+    
+    @Param({ "10", "1000", "100000", "1000000" })
+    public int items;
+    
+    private Order order;
+    private OutputStream sink;
+    
+    @Setup
+    public void setup() throws OrderException, ContainerException, PositionException {
+        
+        WorkloadGenerator generator = new WorkloadGenerator(42);
+        int shippings = (this.items + 511) / 512;
+        
+        generator.setItemsPerOrder(this.items, this.items, this.items);
+        generator.setShippingsPerOrder(shippings, shippings);
+        
+        this.order = generator.nextOrder();
+        this.sink = OutputStream.nullOutputStream();
+    }
+    
+    @Benchmark
+    public int getNumberOfRemaingItemsToSend() {
+        
+        return this.order.getNumberOfRemaingItemsToSend();
+    }
+    
+    @Benchmark
+    public void validate() throws OrderException, ContainerException, PositionException {
+        
+        this.order.validate();
+    }
+    
+    @Benchmark
+    public void export() throws IOException {
+        
+        this.order.export(this.sink);
+    }
+    
+}
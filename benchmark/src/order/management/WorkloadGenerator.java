@@ -0,0 +1,507 @@
+package order.management;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Random;
+import order.base.Address;
+import order.base.Customer;
+import order.base.Person;
+import order.exceptions.ContainerException;
+import order.exceptions.OrderException;
+import order.exceptions.PositionException;
+import order.packing.Container;
+import order.packing.IItem;
+import order.packing.Item;
+import order.packing.Packer;
+
+/**
+ * Deterministic generator of synthetic orders, for benchmarks, load tests
+ * and capacity planning. Everything generated only depends on the seed and
+ * the settings, so two generators with the same seed and settings generate
+ * the same orders (except the customer ids, which are assigned in creation
+ * order by Customer).
+ * 
+ * Each order has a customer from a fixed set of customers (a few customers
+ * place most of the orders), a destination, a date in the given year and a
+ * number of items that follows a geometric distribution (many small orders
+ * and a few large ones). When packing is enabled, the items are split in
+ * shippings, and the items of each shipping are packed in containers by a
+ * Packer. Each shipping gets a status drawn from the status mix: the
+ * shippings AWAITS_TREATMENT have no containers, the others have their
+ * containers and went through the statuses before theirs.
+ * 
+ * The orders are generated one at a time, so the files of millions of
+ * items can be written without holding them in memory.
+ * 
+ * The generator is in the benchmark sources, not in the application: it's
+ * in the package order.management to create the shippings (Shipping isn't
+ * public) and set their statuses.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class WorkloadGenerator {
+    
+    private static final String[] CITIES = { "Porto", "Lisboa", "Braga", "Coimbra", "Faro", "Aveiro", "Viseu", "Leiria", "Setúbal", "Évora" };
+    private static final String[] STREETS = { "Rua", "Avenida", "Travessa", "Largo", "Praça" };
+    private static final String[] PRODUCTS = { "Box", "Crate", "Parcel", "Case", "Bag", "Drum", "Pallet", "Roll" };
+    
+    private final Random random;
+    private int nextId;
+    
+    private int customerCount;
+    private Customer[] customers;
+    private int minItems, meanItems, maxItems;
+    private int minSize, maxSize;
+    private int minShippings, maxShippings;
+    private final EnumMap<ShipmentStatus, Integer> statusWeights;
+    private boolean packed;
+    private int year;
+    
+    /**
+     * WorkloadGenerator's instance constructor, with the default settings:
+     * <ol>
+     * <li>1000 customers</li>
+     * <li>1 to 500 items per order, 4 on average</li>
+     * <li>items of sizes 1 to 3 on each axis</li>
+     * <li>1 to 3 shippings per order</li>
+     * <li>RECEIVED 45%, SHIPPED 20%, CLOSED 10%, IN_TREATMENT 10%,
+     * CANCELLED 10% and AWAITS_TREATMENT 5% of the shippings</li>
+     * <li>packed orders, from 2020</li>
+     * </ol>
+     * 
+     * @param seed seed of the random generator
+     */
+    public WorkloadGenerator(long seed) {
+        
+        this.random = new Random(seed);
+        this.nextId = 1;
+        this.customerCount = 1000;
+        this.customers = null;
+        this.minItems = 1;
+        this.meanItems = 4;
+        this.maxItems = 500;
+        this.minSize = 1;
+        this.maxSize = 3;
+        this.minShippings = 1;
+        this.maxShippings = 3;
+        this.statusWeights = new EnumMap<>(ShipmentStatus.class);
+        this.statusWeights.put(ShipmentStatus.AWAITS_TREATMENT, 5);
+        this.statusWeights.put(ShipmentStatus.IN_TREATMENT, 10);
+        this.statusWeights.put(ShipmentStatus.CLOSED, 10);
+        this.statusWeights.put(ShipmentStatus.SHIPPED, 20);
+        this.statusWeights.put(ShipmentStatus.RECEIVED, 45);
+        this.statusWeights.put(ShipmentStatus.CANCELLED, 10);
+        this.packed = true;
+        this.year = 2020;
+    }
+    
+    /**
+     * Setter for the number of customers. The customers are created with
+     * the first order generated, so this must be set before.
+     * 
+     * @param count number of customers
+     * @throws IllegalArgumentException if count is lower than 1
+     * @throws IllegalStateException if the customers were already created
+     */
+    public void setCustomers(int count) {
+        
+        if (count < 1) {
+            
+            throw new IllegalArgumentException("Illegal number of customers: " + count);
+        }
+        
+        if (this.customers != null) {
+            
+            throw new IllegalStateException("The customers were already created");
+        }
+        
+        this.customerCount = count;
+    }
+    
+    /**
+     * Setter for the distribution of the number of items per order: the
+     * minimum plus a geometric number of items, up to the maximum. With the
+     * three values equal, every order has the same number of items.
+     * 
+     * @param min minimum number of items
+     * @param mean average number of items (before limiting to the maximum)
+     * @param max maximum number of items
+     * @throws IllegalArgumentException if min is lower than 1 or the values aren't in order
+     */
+    public void setItemsPerOrder(int min, int mean, int max) {
+        
+        if (min < 1 || mean < min || max < mean) {
+            
+            throw new IllegalArgumentException("Illegal items per order: " + min + ", " + mean + ", " + max);
+        }
+        
+        this.minItems = min;
+        this.meanItems = mean;
+        this.maxItems = max;
+    }
+    
+    /**
+     * Setter for the sizes of the items, uniform on each axis
+     * 
+     * @param min minimum size
+     * @param max maximum size (an item larger than a container can't be packed)
+     * @throws IllegalArgumentException if min is lower than 1 or greater than max
+     */
+    public void setItemSize(int min, int max) {
+        
+        if (min < 1 || max < min) {
+            
+            throw new IllegalArgumentException("Illegal item size: " + min + " to " + max);
+        }
+        
+        this.minSize = min;
+        this.maxSize = max;
+    }
+    
+    /**
+     * Setter for the number of shippings per order, uniform (an order has at
+     * most one shipping per item)
+     * 
+     * @param min minimum number of shippings
+     * @param max maximum number of shippings
+     * @throws IllegalArgumentException if min is lower than 1 or greater than max
+     */
+    public void setShippingsPerOrder(int min, int max) {
+        
+        if (min < 1 || max < min) {
+            
+            throw new IllegalArgumentException("Illegal shippings per order: " + min + " to " + max);
+        }
+        
+        this.minShippings = min;
+        this.maxShippings = max;
+    }
+    
+    /**
+     * Setter for the weight of a status in the status mix of the shippings.
+     * The probability of a status is its weight over the sum of the weights.
+     * 
+     * @param status shipping status
+     * @param weight weight of the status (0 for none)
+     * @throws IllegalArgumentException if weight is negative
+     */
+    public void setStatusWeight(ShipmentStatus status, int weight) {
+        
+        if (weight < 0) {
+            
+            throw new IllegalArgumentException("Illegal weight: " + weight);
+        }
+        
+        this.statusWeights.put(status, weight);
+    }
+    
+    /**
+     * Setter for the packing of the orders: if false, the orders only have
+     * items (as the imported orders)
+     * 
+     * @param packed true to generate shippings and containers
+     */
+    public void setPacked(boolean packed) {
+        
+        this.packed = packed;
+    }
+    
+    /**
+     * Setter for the year of the orders
+     * 
+     * @param year year of the orders' dates
+     */
+    public void setYear(int year) {
+        
+        this.year = year;
+    }
+    
+    /**
+     * Getter for the customers of the orders, created on the first call
+     * 
+     * @return the customers
+     */
+    public Customer[] getCustomers() {
+        
+        if (this.customers == null) {
+            
+            this.customers = new Customer[this.customerCount];
+            
+            for (int i = 0; i < this.customerCount; i++) {
+                
+                Address address = this.address();
+                
+                // A fifth of the customers are billed at another address
+                Address billing = this.random.nextInt(5) == 0 ? this.address() : address;
+                
+                this.customers[i] = new Customer("Customer " + (i + 1), address, billing);
+                this.customers[i].setVat(String.valueOf(500000000 + i));
+            }
+        }
+        
+        return this.customers.clone();
+    }
+    
+    /**
+     * Generates the next order, with the next id (from 1)
+     * 
+     * @return the order
+     * @throws OrderException if a shipping can't be added or change status
+     * @throws ContainerException if an item can't be packed
+     * @throws PositionException if a container fails the validation
+     */
+    public Order nextOrder() throws OrderException, ContainerException, PositionException {
+        
+        this.getCustomers();
+        
+        Order order = new Order();
+        int id = this.nextId++;
+        
+        order.setId(id);
+        
+        // The square of a uniform number skews the orders to the first customers
+        double u = this.random.nextDouble();
+        Customer customer = this.customers[(int) (u * u * this.customers.length)];
+        
+        order.setCustomer(customer);
+        
+        // Most orders are delivered to the customer
+        if (this.random.nextInt(4) > 0) {
+            
+            order.setDestination(new Person(customer.getName(), (Address) customer.getAddress()));
+            
+        } else {
+            
+            order.setDestination(new Person("Destination " + id, this.address()));
+        }
+        
+        LocalDate date = LocalDate.ofYearDay(this.year, 1 + this.random.nextInt(LocalDate.of(this.year, 1, 1).lengthOfYear()));
+        order.setDate(date.getDayOfMonth(), date.getMonthValue(), date.getYear());
+        
+        Item[] items = new Item[this.items()];
+        
+        for (int i = 0; i < items.length; i++) {
+            
+            String product = PRODUCTS[this.random.nextInt(PRODUCTS.length)];
+            
+            items[i] = new Item("ITEM" + (i + 1), product + " " + (i + 1), this.size(), this.size(), this.size());
+            order.add(items[i]);
+        }
+        
+        if (this.packed) {
+            
+            this.ship(order, items);
+        }
+        
+        return order;
+    }
+    
+    /**
+     * Generates the next orders
+     * 
+     * @param n number of orders
+     * @return the orders
+     * @throws OrderException if a shipping can't be added or change status
+     * @throws ContainerException if an item can't be packed
+     * @throws PositionException if a container fails the validation
+     */
+    public Order[] nextOrders(int n) throws OrderException, ContainerException, PositionException {
+        
+        Order[] orders = new Order[n];
+        
+        for (int i = 0; i < n; i++) {
+            
+            orders[i] = this.nextOrder();
+        }
+        
+        return orders;
+    }
+    
+    /**
+     * Generates orders and writes them to a directory, one file per order
+     * (order1.json, order2.json, ...) in the format of order.json, to be
+     * imported by {@link Management#importAll(Path)}
+     * 
+     * @param directory target directory
+     * @param n number of orders
+     * @throws IOException if a file can't be written
+     * @throws OrderException if a shipping can't be added or change status
+     * @throws ContainerException if an item can't be packed
+     * @throws PositionException if a container fails the validation
+     */
+    public void writeOrders(Path directory, int n) throws IOException, OrderException, ContainerException, PositionException {
+        
+        for (int i = 0; i < n; i++) {
+            
+            Order order = this.nextOrder();
+            
+            try (Writer writer = Files.newBufferedWriter(directory.resolve("order" + order.getId() + ".json"), StandardCharsets.UTF_8)) {
+                
+                order.writeOrderJSONString(writer);
+            }
+        }
+    }
+    
+    /**
+     * Generates orders and writes them to a JSON Lines file, one order per
+     * line in the format of order.json, to be imported by
+     * {@link Management#importLines(Path)}
+     * 
+     * @param path path of the JSON Lines file
+     * @param n number of orders
+     * @throws IOException if the file can't be written
+     * @throws OrderException if a shipping can't be added or change status
+     * @throws ContainerException if an item can't be packed
+     * @throws PositionException if a container fails the validation
+     */
+    public void writeLines(Path path, int n) throws IOException, OrderException, ContainerException, PositionException {
+        
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            
+            for (int i = 0; i < n; i++) {
+                
+                this.nextOrder().writeOrderJSONString(writer);
+                writer.newLine();
+            }
+        }
+    }
+    
+    /**
+     * Generates orders and writes their shipments to a directory, one file
+     * per order (shipment1.json, shipment2.json, ...) in the format of
+     * shipment.json (the order export)
+     * 
+     * @param directory target directory
+     * @param n number of orders
+     * @throws IOException if a file can't be written
+     * @throws OrderException if a shipping can't be added or change status
+     * @throws ContainerException if an item can't be packed
+     * @throws PositionException if a container fails the validation
+     */
+    public void writeShipments(Path directory, int n) throws IOException, OrderException, ContainerException, PositionException {
+        
+        for (int i = 0; i < n; i++) {
+            
+            Order order = this.nextOrder();
+            
+            try (Writer writer = Files.newBufferedWriter(directory.resolve("shipment" + order.getId() + ".json"), StandardCharsets.UTF_8)) {
+                
+                order.writeExportJSONString(writer);
+            }
+        }
+    }
+    
+    /**
+     * Splits the items of an order in shippings, packs them and sets the
+     * statuses of the shippings. The statuses are set after all the
+     * shippings are added, an order whose items were all sent can't get
+     * more shippings.
+     */
+    private void ship(Order order, Item[] items) throws OrderException, ContainerException, PositionException {
+        
+        int count = Math.min(items.length, this.minShippings + this.random.nextInt(this.maxShippings - this.minShippings + 1));
+        Shipping[] shippings = new Shipping[count];
+        ShipmentStatus[] statuses = new ShipmentStatus[count];
+        
+        for (int s = 0; s < count; s++) {
+            
+            shippings[s] = new Shipping();
+            statuses[s] = this.status();
+            
+            // The shippings AWAITS_TREATMENT have no containers yet
+            if (statuses[s] != ShipmentStatus.AWAITS_TREATMENT) {
+                
+                IItem[] chunk = new IItem[(s + 1) * items.length / count - s * items.length / count];
+                System.arraycopy(items, s * items.length / count, chunk, 0, chunk.length);
+                
+                shippings[s].setShipmentStatus(ShipmentStatus.IN_TREATMENT);
+                
+                for (Container container : new Packer("S" + (s + 1) + "-C").pack(chunk).getContainers()) {
+                    
+                    shippings[s].addContainer(container);
+                }
+            }
+            
+            order.addShipping(shippings[s]);
+        }
+        
+        for (int s = 0; s < count; s++) {
+            
+            switch (statuses[s]) {
+                case RECEIVED:
+                case SHIPPED:
+                    shippings[s].setShipmentStatus(ShipmentStatus.CLOSED);
+                    shippings[s].setShipmentStatus(ShipmentStatus.SHIPPED);
+                    
+                    if (statuses[s] == ShipmentStatus.RECEIVED) {
+                        
+                        shippings[s].setShipmentStatus(ShipmentStatus.RECEIVED);
+                    }
+                    break;
+                case CLOSED:
+                case CANCELLED:
+                    shippings[s].setShipmentStatus(statuses[s]);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+    
+    private int items() {
+        
+        int extra = 0;
+        
+        // Geometric number of items over the minimum, with mean meanItems - minItems
+        if (this.meanItems > this.minItems) {
+            
+            double p = 1.0 / (1 + this.meanItems - this.minItems);
+            extra = (int) Math.min(this.maxItems, Math.log(1 - this.random.nextDouble()) / Math.log(1 - p));
+        }
+        
+        return Math.min(this.maxItems, this.minItems + extra);
+    }
+    
+    private int size() {
+        
+        return this.minSize + this.random.nextInt(this.maxSize - this.minSize + 1);
+    }
+    
+    private ShipmentStatus status() {
+        
+        int total = 0;
+        
+        for (int weight : this.statusWeights.values()) {
+            
+            total += weight;
+        }
+        
+        if (total == 0) return ShipmentStatus.IN_TREATMENT;
+        
+        int r = this.random.nextInt(total);
+        
+        for (ShipmentStatus status : this.statusWeights.keySet()) {
+            
+            r -= this.statusWeights.get(status);
+            
+            if (r < 0) return status;
+        }
+        
+        return ShipmentStatus.IN_TREATMENT;
+    }
+    
+    private Address address() {
+        
+        String city = CITIES[this.random.nextInt(CITIES.length)];
+        String street = STREETS[this.random.nextInt(STREETS.length)] + " " + (1 + this.random.nextInt(2000));
+        
+        return new Address(street, city, "Portugal", city, 1 + this.random.nextInt(500));
+    }
+    
+}
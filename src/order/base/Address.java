@@ -1,12 +1,18 @@
 package order.base;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Objects;
+import order.util.JSON;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONStreamAware;
 
 /**
  * Represent's an Address
  * 
  * @author Filipe Certal (filipe.certal@gmail.com)
  */
-public class Address implements IAddress {
+public class Address implements IAddress, JSONAware, JSONStreamAware {
     
     private String street;
     private String city;
@@ -14,13 +20,22 @@ public class Address implements IAddress {
     private String state;
     private int number;
     
+    // Shared by the address pool, so it can't be changed
+    private final boolean frozen;
+    
     public Address(String street, String city, String country, String state, int number) {
         
+        this(street, city, country, state, number, false);
+    }
+    
+    Address(String street, String city, String country, String state, int number, boolean frozen) {
+        
         this.street = street;
         this.city = city;
         this.country = country;
         this.state = state;
         this.number = number;
+        this.frozen = frozen;
     }
     
     @Override
@@ -48,38 +63,149 @@ public class Address implements IAddress {
         return this.street;
     }
 
+    /**
+     * Setter for the city
+     * 
+     * @param string address's city
+     * @throws UnsupportedOperationException if the address is frozen (shared
+     * by the address pool, as the addresses of the imported orders)
+     */
     @Override
     public void setCity(String string) {
+        this.checkFrozen();
         this.city = string;
     }
 
+    /**
+     * Setter for the country
+     * 
+     * @param string address's country
+     * @throws UnsupportedOperationException if the address is frozen (shared
+     * by the address pool, as the addresses of the imported orders)
+     */
     @Override
     public void setCountry(String string) {
+        this.checkFrozen();
         this.country = string;
     }
 
+    /**
+     * Setter for the door number
+     * 
+     * @param i address's door number
+     * @throws UnsupportedOperationException if the address is frozen (shared
+     * by the address pool, as the addresses of the imported orders)
+     */
     @Override
     public void setNumber(int i) {
+        this.checkFrozen();
         this.number = i;
     }
 
+    /**
+     * Setter for the state
+     * 
+     * @param string address's state
+     * @throws UnsupportedOperationException if the address is frozen (shared
+     * by the address pool, as the addresses of the imported orders)
+     */
     @Override
     public void setState(String string) {
+        this.checkFrozen();
         this.state =string;
     }
 
+    /**
+     * Setter for the street
+     * 
+     * @param string address's street
+     * @throws UnsupportedOperationException if the address is frozen (shared
+     * by the address pool, as the addresses of the imported orders)
+     */
     @Override
     public void setStreet(String string) {
+        this.checkFrozen();
         this.street = string;
     }
     
+    /**
+     * Checks if the address is shared by the address pool, and can't be changed
+     * 
+     * @return true if the address is frozen
+     */
+    public boolean isFrozen() {
+        
+        return this.frozen;
+    }
+    
+    private void checkFrozen() {
+        
+        if (this.frozen) {
+            
+            throw new UnsupportedOperationException("The address is shared and can't be changed");
+        }
+    }
+    
+    /**
+     * Checks if an object is an address with the same street, number, city,
+     * state and country
+     * 
+     * @param o object to be compared
+     * @return true if the addresses are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        
+        if (this == o) return true;
+        
+        if (o == null || o.getClass() != this.getClass()) return false;
+        
+        Address other = (Address) o;
+        
+        return this.number == other.number &&
+               Objects.equals(this.street, other.street) &&
+               Objects.equals(this.city, other.city) &&
+               Objects.equals(this.country, other.country) &&
+               Objects.equals(this.state, other.state);
+    }
+    
+    @Override
+    public int hashCode() {
+        
+        return Objects.hash(this.street, this.number, this.city, this.state, this.country);
+    }
+    
+    /**
+     * Create the address's JSON notation representation
+     * 
+     * @return address's JSON notation representation
+     */
+    @Override
     public String toJSONString() {
-        return "{ " +
-        "\"country\": \"" + this.country + "\", " +
-        "\"number\": " + this.number + ", " +
-        "\"street\": \"" + this.street + "\", " +
-        "\"city\": \"" + this.city + "\", " +
-        "\"state\": \"" + this.state + "\" }";
+        
+        return JSON.toJSONString(this);
+    }
+    
+    /**
+     * Write the address's JSON notation representation
+     * 
+     * @param out writer
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
+        
+        out.write("{ \"country\": ");
+        JSON.writeString(out, this.country);
+        out.write(", \"number\": ");
+        out.write(Integer.toString(this.number));
+        out.write(", \"street\": ");
+        JSON.writeString(out, this.street);
+        out.write(", \"city\": ");
+        JSON.writeString(out, this.city);
+        out.write(", \"state\": ");
+        JSON.writeString(out, this.state);
+        out.write(" }");
     }
     
     
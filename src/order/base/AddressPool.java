@@ -0,0 +1,102 @@
+package order.base;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonicalizing pool of addresses and persons. Imported orders repeat the
+ * same addresses (of customers, billing and destinations) many times, so
+ * the pool hands out a single frozen instance of each distinct address or
+ * person instead of a new copy for each order. Frozen instances can't be
+ * changed, so they can be shared safely (also between threads).
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public final class AddressPool {
+    
+    private static final AddressPool DEFAULT = new AddressPool();
+    
+    private final ConcurrentHashMap<Address, Address> addresses;
+    private final ConcurrentHashMap<Person, Person> persons;
+    
+    public AddressPool() {
+        
+        this.addresses = new ConcurrentHashMap<>();
+        this.persons = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Getter for the pool used by the importers
+     * 
+     * @return the default pool
+     */
+    public static AddressPool getDefault() {
+        
+        return AddressPool.DEFAULT;
+    }
+    
+    /**
+     * Returns the shared address with the given fields
+     * 
+     * @param street address's street
+     * @param city address's city
+     * @param country address's country
+     * @param state address's state
+     * @param number address's door number
+     * @return a frozen address with the given fields
+     */
+    public Address address(String street, String city, String country, String state, int number) {
+        
+        Address address = new Address(street, city, country, state, number, true);
+        
+        // Look up first, most addresses are already in the pool
+        Address shared = this.addresses.get(address);
+        
+        if (shared == null) {
+            
+            shared = this.addresses.putIfAbsent(address, address);
+        }
+        
+        return shared != null ? shared : address;
+    }
+    
+    /**
+     * Returns the shared person with the given name and address
+     * 
+     * @param name person's name
+     * @param address person's address (shared by the pool)
+     * @return a frozen person with the given name and address
+     */
+    public Person person(String name, Address address) {
+        
+        Person person = new Person(name, address, true);
+        Person shared = this.persons.get(person);
+        
+        if (shared == null) {
+            
+            shared = this.persons.putIfAbsent(person, person);
+        }
+        
+        return shared != null ? shared : person;
+    }
+    
+    /**
+     * Getter for the number of distinct addresses and persons in the pool
+     * 
+     * @return number of addresses and persons
+     */
+    public int size() {
+        
+        return this.addresses.size() + this.persons.size();
+    }
+    
+    /**
+     * Removes all the addresses and persons from the pool. The instances
+     * handed out remain frozen.
+     */
+    public void clear() {
+        
+        this.addresses.clear();
+        this.persons.clear();
+    }
+    
+}
@@ -1,5 +1,10 @@
 package order.base;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicInteger;
+import order.util.JSON;
+
 /**
  * Represent's a Customer
  * 
@@ -7,7 +12,7 @@ package order.base;
  */
 public class Customer extends Person implements ICustomer {
     
-    private static int customerCount = 1;
+    private static final AtomicInteger customerCount = new AtomicInteger(1);
     
     private int customerId;
     private String vat;
@@ -16,12 +21,41 @@ public class Customer extends Person implements ICustomer {
     public Customer(String name, Address address, Address billingAddress) {
         
         super(name, address);
-        this.customerId = Customer.customerCount++;
+        this.customerId = Customer.customerCount.getAndIncrement();
         this.customerId = customerId;
         this.vat = vat;
         this.billingAddress = billingAddress;
     }
+    
+    private Customer(int customerId, String name, Address address, Address billingAddress) {
         
+        super(name, address);
+        this.customerId = customerId;
+        this.billingAddress = billingAddress;
+    }
+    
+    /**
+     * Restores a saved customer, with its saved id if no customer got that
+     * id yet. An id already given (for instance, to a customer imported
+     * before the snapshot was read) may belong to a different customer, and
+     * the customers are compared by id, so the restored customer gets a new
+     * id instead. The ids of the customers created afterwards are greater.
+     * 
+     * @param customerId customer's saved id
+     * @param name customer's name
+     * @param address customer's address
+     * @param billingAddress customer's billing address
+     * @return the restored customer, with the saved id or a new one
+     */
+    public static Customer restore(int customerId, String name, Address address, Address billingAddress) {
+        
+        // The next id before the update: the saved id is free if it isn't below it
+        int next = Customer.customerCount.getAndUpdate(n -> Math.max(n, customerId + 1));
+        int id = customerId >= next ? customerId : Customer.customerCount.getAndIncrement();
+        
+        return new Customer(id, name, address, billingAddress);
+    }
+    
     @Override
     public int getCustomerId() {
         return this.customerId;
@@ -32,8 +66,16 @@ public class Customer extends Person implements ICustomer {
         return this.vat;
     }
 
+    /**
+     * Setter for the VAT
+     * 
+     * @param string customer's VAT
+     * @throws UnsupportedOperationException if the customer is frozen (a
+     * customer of a registry, found by its VAT)
+     */
     @Override
     public void setVat(String string) {
+        this.checkFrozen();
         this.vat = string;
     }
 
@@ -42,8 +84,16 @@ public class Customer extends Person implements ICustomer {
         return this.billingAddress;
     }
 
+    /**
+     * Setter for the billing address
+     * 
+     * @param ia customer's billing address
+     * @throws UnsupportedOperationException if the customer is frozen (a
+     * customer of a registry)
+     */
     @Override
     public void setBillingAddress(IAddress ia) {
+        this.checkFrozen();
         this.billingAddress = (Address) ia;
     }
 
@@ -67,12 +117,46 @@ public class Customer extends Person implements ICustomer {
         super.setName(string);
     }
     
-    public String toJSONString() {
+    /**
+     * Checks if an object is a customer with the same id
+     * 
+     * @param o object to be compared
+     * @return true if the customers are the same
+     */
+    @Override
+    public boolean equals(Object o) {
+        
+        if (this == o) return true;
+        
+        if (o == null || o.getClass() != this.getClass()) return false;
+        
+        return this.customerId == ((Customer) o).customerId;
+    }
+    
+    @Override
+    public int hashCode() {
+        
+        return Integer.hashCode(this.customerId);
+    }
+    
+    /**
+     * Write the customer's JSON notation representation
+     * 
+     * @param out writer
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
         
-        return "{ \"address\": " + ((Address) this.getAddress()).toJSONString() +
-               ", \"name\": \"" + this.getName() +  "\"" + 
-               ", \"id\": " + this.customerId +
-               ", \"billingAddress\": " + this.billingAddress.toJSONString() +  " }";
+        out.write("{ \"address\": ");
+        Person.writeAddress(out, this.getAddress());
+        out.write(", \"name\": ");
+        JSON.writeString(out, this.getName());
+        out.write(", \"id\": ");
+        out.write(Integer.toString(this.customerId));
+        out.write(", \"billingAddress\": ");
+        Person.writeAddress(out, this.billingAddress);
+        out.write(" }");
     }
     
 }
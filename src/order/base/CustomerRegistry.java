@@ -0,0 +1,147 @@
+package order.base;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the customers, keyed by VAT (or by name, for customers
+ * without VAT), that can be used by several importing threads at once.
+ * A known customer is found without locking; a new one is created once,
+ * by the first thread that needs it, so the same customer never gets two
+ * ids.
+ * 
+ * The registered customers are shared by the orders, and a change of the
+ * VAT or name would leave them under a stale key, so they're frozen: their
+ * setters throw UnsupportedOperationException. A customer without VAT and
+ * without name has no key, it's never registered nor merged with another.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public final class CustomerRegistry {
+    
+    private final ConcurrentHashMap<String, Customer> customers;
+    
+    public CustomerRegistry() {
+        
+        this.customers = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Returns the registered customer with the same VAT (or name, if the
+     * VAT is null), or creates and registers a new (frozen) one. A customer
+     * without VAT and without name is created each time, not registered.
+     * 
+     * @param name customer's name
+     * @param vat customer's VAT
+     * @param address customer's address
+     * @param billingAddress customer's billing address
+     * @return the customer
+     */
+    public Customer resolve(String name, String vat, Address address, Address billingAddress) {
+        
+        String key = CustomerRegistry.key(vat, name);
+        
+        if (key == null) {
+            
+            return new Customer(name, address, billingAddress);
+        }
+        
+        // Look up first, most customers are already registered
+        Customer customer = this.customers.get(key);
+        
+        if (customer == null) {
+            
+            customer = this.customers.computeIfAbsent(key, k -> {
+                
+                Customer c = new Customer(name, address, billingAddress);
+                c.setVat(vat);
+                c.freeze();
+                
+                return c;
+            });
+        }
+        
+        return customer;
+    }
+    
+    /**
+     * Registers a customer, unless a customer with the same VAT (or name)
+     * is already registered. The registered customer is frozen. A customer
+     * without VAT and without name isn't registered.
+     * 
+     * @param customer customer to be registered
+     * @return the registered customer, the given one or the one that was
+     * already registered, or the given one if it has no VAT nor name
+     */
+    public Customer register(Customer customer) {
+        
+        String key = CustomerRegistry.key(customer.getVat(), customer.getName());
+        
+        if (key == null) {
+            
+            return customer;
+        }
+        
+        Customer known = this.customers.get(key);
+        
+        if (known == null) {
+            
+            // Frozen before it's shared, a customer that isn't registered
+            // (because another one was) is frozen anyway
+            customer.freeze();
+            known = this.customers.putIfAbsent(key, customer);
+        }
+        
+        return known != null ? known : customer;
+    }
+    
+    /**
+     * Searches for a customer by VAT, or by name if the VAT is null
+     * 
+     * @param vat customer's VAT
+     * @param name customer's name
+     * @return the customer, or null if it isn't registered (always for a
+     * null VAT and a null name)
+     */
+    public Customer get(String vat, String name) {
+        
+        String key = CustomerRegistry.key(vat, name);
+        
+        return key != null ? this.customers.get(key) : null;
+    }
+    
+    /**
+     * Returns the registered customers, by id
+     * 
+     * @return the customers
+     */
+    public Customer[] customers() {
+        
+        Customer[] r = this.customers.values().toArray(new Customer[0]);
+        Arrays.sort(r, Comparator.comparingInt(Customer::getCustomerId));
+        
+        return r;
+    }
+    
+    /**
+     * Getter for the number of registered customers
+     * 
+     * @return number of customers
+     */
+    public int size() {
+        
+        return this.customers.size();
+    }
+    
+    /**
+     * Returns the key of a customer, or null if it has no VAT nor name
+     */
+    private static String key(String vat, String name) {
+        
+        if (vat != null) return "vat:" + vat;
+        
+        return name != null ? "name:" + name : null;
+    }
+    
+}
@@ -1,19 +1,35 @@
 package order.base;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Objects;
+import order.util.JSON;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONStreamAware;
+
 /**
  * Represent's a Person
  * 
  * @author Filipe Certal (filipe.certal@gmail.com)
  */
-public class Person implements IPerson {
+public class Person implements IPerson, JSONAware, JSONStreamAware {
     
     private String name;
     private Address address;
+    
+    // Shared by the address pool (or a registered customer), so it can't be changed
+    private volatile boolean frozen;
 
     public Person(String name, Address address) {
         
+        this(name, address, false);
+    }
+    
+    Person(String name, Address address, boolean frozen) {
+        
         this.name = name;
         this.address = address;
+        this.frozen = frozen;
     }
 
     @Override
@@ -26,18 +42,128 @@ public class Person implements IPerson {
         return this.name;
     }
 
+    /**
+     * Setter for the address
+     * 
+     * @param ia person's address
+     * @throws UnsupportedOperationException if the person is frozen (shared
+     * by the address pool, as the destinations of the imported orders, or a
+     * customer of a registry)
+     */
     @Override
     public void setAddress(IAddress ia) {
+        this.checkFrozen();
         this.address = (Address) ia;
     }
 
+    /**
+     * Setter for the name
+     * 
+     * @param string person's name
+     * @throws UnsupportedOperationException if the person is frozen (shared
+     * by the address pool, as the destinations of the imported orders, or a
+     * customer of a registry)
+     */
     @Override
     public void setName(String string) {
+        this.checkFrozen();
         this.name = string;
     }
     
+    /**
+     * Checks if the person is shared by the address pool, and can't be changed
+     * 
+     * @return true if the person is frozen
+     */
+    public boolean isFrozen() {
+        
+        return this.frozen;
+    }
+    
+    /**
+     * Freezes the person, when it starts to be shared
+     */
+    void freeze() {
+        
+        this.frozen = true;
+    }
+    
+    void checkFrozen() {
+        
+        if (this.frozen) {
+            
+            throw new UnsupportedOperationException("The person " + this.name + " is shared and can't be changed");
+        }
+    }
+    
+    /**
+     * Checks if an object is a person with the same name and address
+     * 
+     * @param o object to be compared
+     * @return true if the persons are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        
+        if (this == o) return true;
+        
+        if (o == null || o.getClass() != this.getClass()) return false;
+        
+        Person other = (Person) o;
+        
+        return Objects.equals(this.name, other.name) && Objects.equals(this.address, other.address);
+    }
+    
+    @Override
+    public int hashCode() {
+        
+        return Objects.hash(this.name, this.address);
+    }
+    
+    /**
+     * Create the person's JSON notation representation
+     * 
+     * @return person's JSON notation representation
+     */
+    @Override
     public String toJSONString() {
-        return "{ \"address\": " + this.address.toJSONString() + ", " + "\"name\": \"" + this.name +"\" }";
+        
+        return JSON.toJSONString(this);
+    }
+    
+    /**
+     * Write the person's JSON notation representation
+     * 
+     * @param out writer
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
+        
+        out.write("{ \"address\": ");
+        Person.writeAddress(out, this.address);
+        out.write(", \"name\": ");
+        JSON.writeString(out, this.name);
+        out.write(" }");
+    }
+    
+    /**
+     * Write an address's JSON notation representation, or null
+     * 
+     * @param out writer
+     * @param address address
+     * @throws IOException if the writer fails
+     */
+    static void writeAddress(Writer out, IAddress address) throws IOException {
+        
+        if (address == null) {
+            
+            out.write("null");
+            
+        } else {
+            
+            ((Address) address).writeJSONString(out);
+        }
     }
     
 }
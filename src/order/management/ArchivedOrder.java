@@ -0,0 +1,361 @@
+package order.management;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.ref.SoftReference;
+import java.nio.BufferUnderflowException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import order.base.ICustomer;
+import order.base.IPerson;
+import order.exceptions.ContainerException;
+import order.exceptions.OrderException;
+import order.exceptions.PositionException;
+import order.packing.IItem;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONStreamAware;
+
+/**
+ * Handle of a closed order moved to an OrderArchive. The handle keeps only
+ * the id and the customer of the order (to index it), and the position of
+ * its record in the archive: the rest of the order is decoded from the
+ * mapped record, into a new Order, when a call needs it. The decoded order
+ * is kept by a soft reference, so the calls that follow use it until the
+ * memory is needed.
+ * 
+ * An archived order can't be changed: the setters and the methods that add
+ * or remove items or shippings throw an exception, its items, addresses and
+ * destination are frozen, and the changes to the shippings and containers
+ * returned (which are decoded from the record) aren't saved in the archive.
+ * Its shippings are RECEIVED or CANCELLED, so they can't change either.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+final class ArchivedOrder implements IOrder, IExporter, JSONAware, JSONStreamAware {
+    
+    private final OrderArchive archive;
+    private final long offset;
+    private final int length, id;
+    private final ICustomer customer;
+    
+    // The order decoded, released when the memory is needed
+    private volatile SoftReference<Order> decoded;
+    
+    ArchivedOrder(OrderArchive archive, long offset, int length, int id, ICustomer customer) {
+        
+        this.archive = archive;
+        this.offset = offset;
+        this.length = length;
+        this.id = id;
+        this.customer = customer;
+        this.decoded = null;
+    }
+    
+    /**
+     * Returns the order decoded from the archive, decoding it again if it
+     * was released
+     * 
+     * @return the order, with its shippings, containers and packed items
+     * @throws IllegalStateException if the record of the order isn't valid
+     */
+    Order materialize() {
+        
+        SoftReference<Order> reference = this.decoded;
+        Order order = reference != null ? reference.get() : null;
+        
+        if (order != null) return order;
+        
+        try {
+            
+            // Two threads may decode it at once, each gets an equal order
+            order = this.archive.read(this);
+            this.decoded = new SoftReference<>(order);
+            
+            return order;
+            
+        } catch (IOException | OrderException | ContainerException | PositionException |
+                BufferUnderflowException | IndexOutOfBoundsException e) {
+            
+            throw new IllegalStateException("Invalid archived order " + this.id, e);
+        }
+    }
+    
+    /**
+     * Getter for the position of the order record in the archive file
+     * 
+     * @return position of the record, after its length
+     */
+    long getOffset() {
+        
+        return this.offset;
+    }
+    
+    /**
+     * Getter for the length of the order record
+     * 
+     * @return length of the record
+     */
+    int getLength() {
+        
+        return this.length;
+    }
+    
+    @Override
+    public IPerson getDestination() {
+        
+        return this.materialize().getDestination();
+    }
+    
+    @Override
+    public void setDestination(IPerson person) {
+        
+        throw this.readOnly();
+    }
+    
+    @Override
+    public ICustomer getCustomer() {
+        
+        return this.customer;
+    }
+    
+    @Override
+    public void setCustomer(ICustomer customer) {
+        
+        throw this.readOnly();
+    }
+    
+    @Override
+    public IItem[] getItems() {
+        
+        return this.materialize().getItems();
+    }
+    
+    @Override
+    public void setId(int id) {
+        
+        throw this.readOnly();
+    }
+    
+    @Override
+    public int getId() {
+        
+        return this.id;
+    }
+    
+    @Override
+    public void setDate(int day, int month, int year) {
+        
+        throw this.readOnly();
+    }
+    
+    @Override
+    public LocalDate getDate() {
+        
+        return this.materialize().getDate();
+    }
+    
+    /**
+     * An item can't be added to an archived order
+     * 
+     * @param item item
+     * @return never returns
+     * @throws OrderException always
+     */
+    @Override
+    public boolean add(IItem item) throws OrderException {
+        
+        throw ArchivedOrder.archived();
+    }
+    
+    /**
+     * Get a copy of the shippings from the order, decoded from the archive
+     * 
+     * @return shipping details from the order
+     */
+    @Override
+    public IShipping[] getShippings() {
+        
+        return this.materialize().getShippings();
+    }
+    
+    /**
+     * A shipping can't be added to an archived order
+     * 
+     * @param shipping shipping
+     * @return never returns
+     * @throws OrderException always
+     */
+    @Override
+    public boolean addShipping(IShipping shipping) throws OrderException {
+        
+        throw ArchivedOrder.archived();
+    }
+    
+    /**
+     * A shipping can't be removed from an archived order
+     * 
+     * @param shipping shipping
+     * @return never returns
+     * @throws OrderException always
+     */
+    @Override
+    public boolean removeShipping(IShipping shipping) throws OrderException {
+        
+        throw ArchivedOrder.archived();
+    }
+    
+    /**
+     * The cancelled shippings of an archived order can't be removed
+     * 
+     * @return never returns
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public int clean() {
+        
+        throw this.readOnly();
+    }
+    
+    @Override
+    public void validate() throws OrderException, ContainerException, PositionException {
+        
+        this.materialize().validate();
+    }
+    
+    /**
+     * Validates the order. The order is already closed: its shippings are
+     * RECEIVED or CANCELLED, so there's nothing to cancel.
+     */
+    @Override
+    public void close() throws OrderException, ContainerException, PositionException {
+        
+        this.validate();
+    }
+    
+    /**
+     * Return the closed status of the order, true since only closed orders
+     * are archived
+     * 
+     * @return true
+     */
+    @Override
+    public boolean isClosed() {
+        
+        return true;
+    }
+    
+    @Override
+    public double getCost() {
+        
+        return this.materialize().getCost();
+    }
+    
+    @Override
+    public String summary() {
+        
+        return this.materialize().summary();
+    }
+    
+    @Override
+    public int getNumberOfItems() {
+        
+        return this.materialize().getNumberOfItems();
+    }
+    
+    /**
+     * Returns the number of items not sent, 0 since the order is closed
+     * 
+     * @return 0
+     */
+    @Override
+    public int getNumberOfRemaingItemsToSend() {
+        
+        return 0;
+    }
+    
+    @Override
+    public IItem[] getRemainingItemsToSend() {
+        
+        return new IItem[0];
+    }
+    
+    @Override
+    public String toJSONString() {
+        
+        return this.materialize().toJSONString();
+    }
+    
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
+        
+        this.materialize().writeJSONString(out);
+    }
+    
+    /**
+     * Create the order's export JSON notation representation, in a single line
+     * 
+     * @return order's export JSON notation representation
+     */
+    public String toExportJSONString() {
+        
+        return this.materialize().toExportJSONString();
+    }
+    
+    /**
+     * Write the order's export JSON notation representation, in a single line
+     * 
+     * @param out writer
+     * @throws IOException if the writer fails
+     */
+    public void writeExportJSONString(Writer out) throws IOException {
+        
+        this.materialize().writeExportJSONString(out);
+    }
+    
+    @Override
+    public void export() throws IOException {
+        
+        this.materialize().export();
+    }
+    
+    /**
+     * Export the order (export.json) and its charts to a directory
+     * 
+     * @param directory target directory
+     * @throws IOException if the files can't be written
+     */
+    public void export(Path directory) throws IOException {
+        
+        this.materialize().export(directory);
+    }
+    
+    /**
+     * Export the order (export.json) and its charts to an OutputStream, as a
+     * zip with the three files
+     * 
+     * @param out target stream
+     * @throws IOException if the stream can't be written
+     */
+    public void export(OutputStream out) throws IOException {
+        
+        this.materialize().export(out);
+    }
+    
+    private UnsupportedOperationException readOnly() {
+        
+        return new UnsupportedOperationException("The order " + this.id + " is archived");
+    }
+    
+    private static OrderException archived() {
+        
+        return new OrderException() {
+            
+            @Override
+            public String getMessage() {
+                return "The order is archived";
+            }
+        };
+    }
+    
+}
@@ -0,0 +1,308 @@
+package order.management;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import order.base.CustomerRegistry;
+import order.base.ICustomer;
+import order.exceptions.ContainerException;
+import order.exceptions.OrderException;
+import order.exceptions.PositionException;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Management module that can be used by several threads at once, for
+ * instance by several intake threads adding orders. The orders are kept in
+ * a concurrent map keyed by id, and the orders of each customer in a
+ * concurrent set. An order is added and removed, together with its entry in
+ * the customer index, while holding the lock of its id's bin of the map
+ * only, so add and remove are atomic without a global lock.
+ * 
+ * The arrays returned by getOrders are weakly consistent snapshots: they
+ * hold the orders added before the call, and may or may not hold the orders
+ * added or removed during the call. They aren't in insertion order.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class ConcurrentManagement implements IManagement, IOrderImporter {
+    
+    private final ConcurrentHashMap<Integer, IOrder> orders;
+    private final ConcurrentHashMap<Integer, Set<IOrder>> customerOrders;
+    private final CustomerRegistry customers;
+    
+    public ConcurrentManagement() {
+        
+        this.orders = new ConcurrentHashMap<>();
+        this.customerOrders = new ConcurrentHashMap<>();
+        this.customers = new CustomerRegistry();
+    }
+    
+    /**
+     * Adds a new IOrder to the order manager
+     * 
+     * @param order order to be added
+     * 
+     * @return
+     * <ol>
+     * <li>true if the order is inserted.</li>
+     * <li>false if an order with the same id already exists in the manager</li>
+     * </ol>
+     * The orders are found by the id they had when added, so the id of an
+     * order must not change while it's in the manager.
+     * 
+     * @throws OrderException if order is null, or has no id (the id -1 of
+     * a new order)
+     */
+    @Override
+    public boolean add(IOrder order) throws OrderException {
+        
+        if (order == null) {
+            
+            throw new OrderException() {
+                
+                @Override
+                public String getMessage() {
+                    return "Order object is null";
+                }
+            };
+        }
+        
+        // Every new order has the id -1, the second one would be refused
+        // as a duplicate of the first
+        if (order.getId() == -1) {
+            
+            throw new OrderException() {
+                
+                @Override
+                public String getMessage() {
+                    return "The order has no id";
+                }
+            };
+        }
+        
+        boolean[] added = { false };
+        
+        this.orders.compute(order.getId(), (id, existing) -> {
+            
+            if (existing != null) return existing;
+            
+            this.index(order);
+            added[0] = true;
+            
+            return order;
+        });
+        
+        return added[0];
+    }
+    
+    /**
+     * Removes an IOrder from the order manager
+     * 
+     * @param order order to be removed
+     * 
+     * @return
+     * <ol>
+     * <li>true if the order with the same id is removed.</li>
+     * <li>false if there isn't an order with the same id in the manager</li>
+     * </ol>
+     * 
+     * @throws OrderException if order is null
+     */
+    @Override
+    public boolean remove(IOrder order) throws OrderException {
+        
+        if (order == null) {
+            
+            throw new OrderException() {
+                
+                @Override
+                public String getMessage() {
+                    return "Order object is null";
+                }
+            };
+        }
+        
+        boolean[] removed = { false };
+        
+        this.orders.computeIfPresent(order.getId(), (id, existing) -> {
+            
+            this.unindex(existing);
+            removed[0] = true;
+            
+            return null;
+        });
+        
+        return removed[0];
+    }
+    
+    /**
+     * Adds an order to the index of its customer
+     */
+    private void index(IOrder order) {
+        
+        if (order.getCustomer() == null) return;
+        
+        this.customerOrders.compute(order.getCustomer().getCustomerId(), (id, set) -> {
+            
+            if (set == null) set = ConcurrentHashMap.newKeySet();
+            
+            set.add(order);
+            
+            return set;
+        });
+    }
+    
+    /**
+     * Removes an order from the index of its customer
+     */
+    private void unindex(IOrder order) {
+        
+        if (order.getCustomer() == null) return;
+        
+        this.customerOrders.computeIfPresent(order.getCustomer().getCustomerId(), (id, set) -> {
+            
+            set.remove(order);
+            
+            return set.isEmpty() ? null : set;
+        });
+    }
+    
+    /**
+     * Checks if an order with the same id exists in the order manager
+     * 
+     * @param order order to check existence
+     * 
+     * @return true if the order exists, false if the order doesn't exist
+     */
+    public boolean contains(IOrder order) {
+        
+        return order != null && this.orders.containsKey(order.getId());
+    }
+    
+    /**
+     * Searches for a given order based on its id
+     * 
+     * @param id order id
+     * 
+     * @return the order with a given id. Returns null if the order does not exists.
+     */
+    public IOrder getOrder(int id) {
+        
+        return this.orders.get(id);
+    }
+    
+    /**
+     * Returns a snapshot of the orders of a given customer. The orders are
+     * indexed by the customer they had when they were added, so the customer
+     * of a registered order shouldn't be changed.
+     * 
+     * @param customer customer of the orders
+     * 
+     * @return the orders of the customer
+     */
+    @Override
+    public IOrder[] getOrders(ICustomer customer) {
+        
+        Set<IOrder> set = this.customerOrders.get(customer.getCustomerId());
+        
+        return set != null ? set.toArray(new IOrder[0]) : new IOrder[0];
+    }
+    
+    /**
+     * Returns a snapshot of the orders
+     * 
+     * @return the orders
+     */
+    @Override
+    public IOrder[] getOrders() {
+        
+        return this.orders.values().toArray(new IOrder[0]);
+    }
+    
+    /**
+     * Getter for the number of orders
+     * 
+     * @return number of orders
+     */
+    public int size() {
+        
+        return this.orders.size();
+    }
+    
+    /**
+     * Writes a binary snapshot of the orders (with their shippings,
+     * containers and packed items) and the customers to a file, to restart
+     * with {@link #readSnapshot(Path)} instead of importing the orders again
+     * 
+     * @param path path of the snapshot file
+     * 
+     * @throws IOException if the file can't be written
+     */
+    public void writeSnapshot(Path path) throws IOException {
+        
+        Snapshot.write(path, this.customers.customers(), this.getOrders());
+    }
+    
+    /**
+     * Adds the orders of a snapshot written by {@link #writeSnapshot(Path)},
+     * and registers its customers. The orders with an id already registered
+     * aren't added. A customer of the snapshot that is already registered
+     * (with the same VAT) is used instead, and the others keep their saved
+     * ids unless the ids were already given to other customers.
+     * 
+     * @param path path of the snapshot file
+     * 
+     * @return the number of orders added
+     * 
+     * @throws IOException if the file can't be read or isn't a valid snapshot
+     */
+    public int readSnapshot(Path path) throws IOException {
+        
+        int added = 0;
+        
+        for (Order order : Snapshot.read(path, this.customers)) {
+            
+            try {
+                
+                if (this.add(order)) added++;
+                
+            } catch (OrderException e) {
+                
+                // The orders read aren't null
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        return added;
+    }
+    
+    /**
+     * Getter for the registry of the imported customers
+     * 
+     * @return the customer registry
+     */
+    public CustomerRegistry getCustomerRegistry() {
+        
+        return this.customers;
+    }
+    
+    /**
+     * Imports an order from a JSON file, as {@link Management#importData(IOrder, String)},
+     * reusing the customers already imported. Several threads can import at
+     * once: the registry of the customers is concurrent.
+     * 
+     * @param order order to be filled
+     * @param path path of the JSON file
+     * 
+     * @throws IOException if the file can't be read
+     * @throws ParseException if the file isn't valid JSON
+     * @throws OrderException if an item can't be added to the order
+     */
+    @Override
+    public void importData(IOrder order, String path) throws IOException, ParseException, ContainerException, OrderException, PositionException {
+        
+        Management.importData(order, path, this.customers);
+    }
+    
+}
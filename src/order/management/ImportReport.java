@@ -0,0 +1,168 @@
+package order.management;
+
+import java.nio.file.Path;
+import order.util.DinArray;
+
+/**
+ * Result of a bulk import: the number of orders imported, the files that
+ * failed and the throughput achieved.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class ImportReport {
+    
+    private int imported, duplicated;
+    private long bytes;
+    private long elapsedNanos;
+    private final DinArray<Failure> failures;
+    
+    ImportReport() {
+        
+        this.imported = 0;
+        this.duplicated = 0;
+        this.bytes = 0;
+        this.elapsedNanos = 0;
+        this.failures = new DinArray<>(Failure.class, 0);
+    }
+    
+    void imported(long bytes) {
+        
+        this.imported++;
+        this.bytes += bytes;
+    }
+    
+    void duplicated() {
+        
+        this.duplicated++;
+    }
+    
+    void failed(Path path, Exception cause) {
+        
+        this.failures.add(new Failure(path, 0, cause));
+    }
+    
+    void failed(Path path, long line, Exception cause) {
+        
+        this.failures.add(new Failure(path, line, cause));
+    }
+    
+    void setElapsedNanos(long elapsedNanos) {
+        
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    /**
+     * Getter for the number of orders imported and added to the manager
+     * 
+     * @return number of orders imported
+     */
+    public int getImported() {
+        
+        return this.imported;
+    }
+    
+    /**
+     * Getter for the number of orders parsed but not added, because an order
+     * with the same id already exists in the manager
+     * 
+     * @return number of duplicated orders
+     */
+    public int getDuplicated() {
+        
+        return this.duplicated;
+    }
+    
+    /**
+     * Getter for the files that couldn't be imported
+     * 
+     * @return the failures, one for each file
+     */
+    public Failure[] getFailures() {
+        
+        return this.failures.toArray();
+    }
+    
+    /**
+     * Getter for the number of bytes of the imported files
+     * 
+     * @return number of bytes read
+     */
+    public long getBytes() {
+        
+        return this.bytes;
+    }
+    
+    /**
+     * Getter for the time spent by the import
+     * 
+     * @return elapsed time, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        
+        return this.elapsedNanos;
+    }
+    
+    /**
+     * Returns the number of orders (imported, duplicated or failed) processed per second
+     * 
+     * @return orders per second
+     */
+    public double getThroughput() {
+        
+        int orders = this.imported + this.duplicated + this.failures.size();
+        
+        return this.elapsedNanos > 0 ? orders * 1e9 / this.elapsedNanos : 0;
+    }
+    
+    /**
+     * Returns a string representation with a summary of the import
+     * 
+     * @return a string representation with a summary
+     */
+    public String summary() {
+        
+        return "Imported: " + this.imported +
+               ", Duplicated: " + this.duplicated +
+               ", Failed: " + this.failures.size() +
+               ", Orders/s: " + String.format("%.1f", this.getThroughput()) +
+               ", MB/s: " + String.format("%.1f", this.elapsedNanos > 0 ? this.bytes * 1e3 / this.elapsedNanos : 0);
+    }
+    
+    /**
+     * A file (or a line of a JSON Lines file) that couldn't be imported and the cause
+     */
+    public static class Failure {
+        
+        private final Path path;
+        private final long line;
+        private final Exception cause;
+        
+        Failure(Path path, long line, Exception cause) {
+            
+            this.path = path;
+            this.line = line;
+            this.cause = cause;
+        }
+        
+        public Path getPath() {
+            
+            return this.path;
+        }
+        
+        /**
+         * Getter for the line of the failed order
+         * 
+         * @return line number (starting at 1), or 0 if the failure is about the whole file
+         */
+        public long getLine() {
+            
+            return this.line;
+        }
+        
+        public Exception getCause() {
+            
+            return this.cause;
+        }
+    }
+    
+}
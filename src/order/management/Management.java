@@ -1,21 +1,33 @@
 package order.management;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
-import order.base.Address;
-import order.base.Customer;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import order.base.CustomerRegistry;
 import order.base.ICustomer;
-import order.base.Person;
 import order.exceptions.ContainerException;
 import order.exceptions.OrderException;
 import order.exceptions.PositionException;
-import order.packing.Item;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
+import order.util.DinArray;
+import order.util.DinMap;
+import order.util.JSON;
+import order.util.Metrics;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
@@ -26,11 +38,26 @@ import org.json.simple.parser.ParseException;
  */
 public class Management implements IManagement, IOrderImporter {
     
-    private Order[] orders;
+    private static final int IMPORT_BATCH = 256;
+    
+    private static final Metrics.Timer IMPORT_TIMER = Metrics.getDefault().timer("management.importData");
+    
+    // The orders, and the handles of the archived orders
+    private DinMap<Integer, IOrder> orders;
+    private DinMap<Integer, DinArray<IOrder>> customerOrders;
+    
+    // Imported customers, by VAT (or by name, for customers without VAT)
+    private final CustomerRegistry customers;
+    
+    // Archive of the closed orders, null until it's opened
+    private OrderArchive archive;
     
     public Management() {
         
-        this.orders = new Order[0];
+        this.orders = new DinMap<>();
+        this.customerOrders = new DinMap<>();
+        this.customers = new CustomerRegistry();
+        this.archive = null;
     }
     
 
@@ -42,10 +69,13 @@ public class Management implements IManagement, IOrderImporter {
      * @return
      * <ol>
      * <li>true if the order is inserted.</li>
-     * <li>false if the order already exists in the container</li>
+     * <li>false if an order with the same id already exists in the container</li>
      * </ol>
+     * The orders are found by the id they had when added, so the id of an
+     * order must not change while it's in the manager.
      * 
-     * @throws OrderException if order is null
+     * @throws OrderException if order is null, or has no id (the id -1 of
+     * a new order)
      */
     @Override
     public boolean add(IOrder order) throws OrderException {
@@ -61,20 +91,57 @@ public class Management implements IManagement, IOrderImporter {
             };
         }
         
-        for (Order o : this.orders) {
+        // Every new order has the id -1, the second one would be refused
+        // as a duplicate of the first
+        if (order.getId() == -1) {
             
-            if (o.equals(order)) {
+            throw new OrderException() {
                 
-                return false;
+                @Override
+                public String getMessage() {
+                    return "The order has no id";
+                }
+            };
+        }
+        
+        // The orders are indexed by id, so an order with an id already
+        // registered is a duplicate
+        if (!this.orders.putIfAbsent(order.getId(), order)) {
+            
+            return false;
+        }
+        
+        // Index the order by its customer
+        if (order.getCustomer() != null) {
+            
+            int customerId = order.getCustomer().getCustomerId();
+            DinArray<IOrder> list = this.customerOrders.get(customerId);
+            
+            if (list == null) {
+                
+                list = new DinArray<>(IOrder.class, 4);
+                this.customerOrders.put(customerId, list);
             }
+            
+            list.add(order);
         }
         
-        this.orders = Arrays.copyOf(this.orders, this.orders.length + 1);
-        this.orders[this.orders.length - 1] = (Order) order;
-
-        return true;   
+        return true;
     }
 
+    /**
+     * Removes an IOrder from the order manager
+     * 
+     * @param order order to be removed
+     * 
+     * @return
+     * <ol>
+     * <li>true if the order with the same id is removed.</li>
+     * <li>false if there isn't an order with the same id in the container</li>
+     * </ol>
+     * 
+     * @throws OrderException if order is null
+     */
     @Override
     public boolean remove(IOrder order) throws OrderException {
         
@@ -89,196 +156,619 @@ public class Management implements IManagement, IOrderImporter {
             };
         }
         
-        int i;
-        
-        for (i = 0; i < this.orders.length && !order.equals(this.orders[i]); i++);
+        IOrder removed = this.orders.remove(order.getId());
         
-        if (i >= this.orders.length) return false;
+        if (removed == null) return false;
         
-        for (int j = i; i < this.orders.length - 1; j++)
-            this.orders[j] = this.orders[j+1];
+        // Remove the order from its customer index
+        if (removed.getCustomer() != null) {
+            
+            int customerId = removed.getCustomer().getCustomerId();
+            DinArray<IOrder> list = this.customerOrders.get(customerId);
+            
+            if (list != null) {
+                
+                list.remove(removed);
+                
+                if (list.size() == 0) {
+                    
+                    this.customerOrders.remove(customerId);
+                }
+            }
+        }
         
-        this.orders = Arrays.copyOf(this.orders, this.orders.length - 1);
         return true;
     }
+    
+    /**
+     * Checks if an order with the same id exists in the order manager
+     * 
+     * @param order order to check existence
+     * 
+     * @return true if the order exists, false if the order doesn't exist
+     */
+    public boolean contains(IOrder order) {
+        
+        return order != null && this.orders.containsKey(order.getId());
+    }
+    
+    /**
+     * Searches for a given order based on its id
+     * 
+     * @param id order id
+     * 
+     * @return the order with a given id. Returns null if the order does not exists.
+     */
+    public IOrder getOrder(int id) {
+        
+        return this.orders.get(id);
+    }
 
+    /**
+     * Returns the orders of a given customer, in insertion order. The orders
+     * are indexed by the customer they had when they were added, so the
+     * customer of a registered order shouldn't be changed.
+     * 
+     * @param customer customer of the orders
+     * 
+     * @return the orders of the customer
+     */
     @Override
     public IOrder[] getOrders(ICustomer customer) {
         
-        Order[] r = new Order[this.orders.length];
-        int pos = 0;
+        DinArray<IOrder> list = this.customerOrders.get(customer.getCustomerId());
         
-        for (Order o : this.orders) {
-            
-            if (o.getCustomer().getCustomerId() == customer.getCustomerId()) {
-                r[pos++] = o;
-            }
-            
-        }
+        if (list == null) return new IOrder[0];
         
-        return Arrays.copyOf(r, pos);
+        return list.toArray();
     }
 
+    /**
+     * Searches for an imported customer by VAT, or by name if the VAT is null
+     * 
+     * @param vat customer's VAT
+     * @param name customer's name
+     * 
+     * @return the customer, or null if no order of the customer was imported
+     */
+    public ICustomer getCustomer(String vat, String name) {
+        
+        return this.customers.get(vat, name);
+    }
+    
+    /**
+     * Getter for the registry of the imported customers
+     * 
+     * @return the customer registry
+     */
+    public CustomerRegistry getCustomerRegistry() {
+        
+        return this.customers;
+    }
+    
     @Override
     public IOrder[] getOrders() {
         
-        return Arrays.copyOf(this.orders, this.orders.length);
+        IOrder[] r = new IOrder[this.orders.size()];
+        int pos = 0;
+        
+        // The orders are returned in insertion order
+        for (IOrder o : this.orders.values()) {
+            
+            r[pos++] = o;
+        }
+        
+        return r;
     }
 
+    /**
+     * Imports an order from a JSON file. The file is parsed as a stream, the
+     * order is filled as the tokens are read, without building the JSON tree.
+     * 
+     * @param order order to be filled
+     * @param path path of the JSON file
+     * 
+     * @throws IOException if the file can't be read
+     * @throws ParseException if the file isn't valid JSON
+     * @throws OrderException if an item can't be added to the order
+     */
     @Override
     public void importData(IOrder order, String path) throws IOException, ParseException, ContainerException, OrderException, PositionException {
         
-        JSONParser parser = new JSONParser();
+        Management.importData(order, path, this.customers);
+    }
+    
+    /**
+     * Imports an order from a JSON file, reusing the customers of a registry
+     * (the import of Management and ConcurrentManagement)
+     * 
+     * @param order order to be filled
+     * @param path path of the JSON file
+     * @param customers registry of the imported customers
+     * 
+     * @throws IOException if the file can't be read
+     * @throws ParseException if the file isn't valid JSON
+     * @throws OrderException if an item can't be added to the order
+     */
+    static void importData(IOrder order, String path, CustomerRegistry customers) throws IOException, ParseException, OrderException {
+        
+        try (Reader reader = new BufferedReader(new FileReader(path))) {
+            
+            Management.read(new JSONParser(), order, reader, new File(path).length(), customers);
+        }
+    }
+    
+    /**
+     * Imports all the order files (*.json) of a directory, using as many
+     * threads as available processors
+     * 
+     * @param directory directory of the order files
+     * 
+     * @return the report of the import
+     * 
+     * @throws IOException if the directory can't be listed
+     */
+    public ImportReport importAll(Path directory) throws IOException {
         
-        Reader reader = new FileReader(path);
-        JSONObject jsonOrder = (JSONObject) parser.parse(reader);
+        return this.importAll(directory, "*.json", Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Imports all the order files of a directory matching a glob pattern. The
+     * files are parsed in parallel by a bounded pool of threads, and the parsed
+     * orders are added to the manager in batches by the calling thread. A file
+     * that can't be imported is reported as a failure without stopping the others.
+     * 
+     * @param directory directory of the order files
+     * @param glob glob pattern of the file names (for example: "*.json")
+     * @param threads number of threads parsing files
+     * 
+     * @return the report of the import
+     * 
+     * @throws IOException if the directory can't be listed
+     * @throws IllegalArgumentException if threads is lower than 1
+     */
+    public ImportReport importAll(Path directory, String glob, int threads) throws IOException {
         
-        // Get the orderID
-        int orderId =  (int)(long)jsonOrder.get("id");
+        if (threads < 1) {
+            
+            throw new IllegalArgumentException("Illegal number of threads: " + threads);
+        }
         
-        order.setId(orderId);
+        ImportReport report = new ImportReport();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
         
-        // Get the order date
-        JSONObject jsonDate = (JSONObject) jsonOrder.get("date");
-        int day = (int)(long)jsonDate.get("day"),
-            month = (int)(long)jsonDate.get("month"),
-            year = (int)(long)jsonDate.get("year");
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+            
+            Iterator<Path> it = files.iterator();
+            
+            // While a batch is being parsed, the previous one is added
+            Path[] pendingPaths = null;
+            Future<Order>[] pending = null;
+            
+            while (it.hasNext()) {
+                
+                Path[] paths = new Path[Management.IMPORT_BATCH];
+                
+                // An array of a generic type is created as an array of its wildcard type
+                @SuppressWarnings("unchecked")
+                Future<Order>[] parsed = (Future<Order>[]) new Future<?>[Management.IMPORT_BATCH];
+                
+                for (int i = 0; i < paths.length && it.hasNext(); i++) {
+                    
+                    Path path = it.next();
+                    
+                    paths[i] = path;
+                    parsed[i] = executor.submit(() -> Management.parse(path, this.customers));
+                }
+                
+                if (pending != null) {
+                    
+                    this.register(pendingPaths, pending, report);
+                }
+                
+                pendingPaths = paths;
+                pending = parsed;
+            }
+            
+            if (pending != null) {
+                
+                this.register(pendingPaths, pending, report);
+            }
+            
+        } finally {
+            
+            executor.shutdownNow();
+        }
         
-        order.setDate(day, month, year);
+        report.setElapsedNanos(System.nanoTime() - start);
         
-        // Get destination
-        JSONObject jsonDestination = (JSONObject) jsonOrder.get("destination");
-        JSONObject jsonAddress = (JSONObject) jsonDestination.get("address");
-        Address address = new Address(
-                (String)jsonAddress.get("street"),
-                (String)jsonAddress.get("city"),
-                (String)jsonAddress.get("country"),
-                (String)jsonAddress.get("state"),
-                (int)(long)jsonAddress.get("number")
-            );
+        return report;
+    }
+    
+    /**
+     * Imports the orders of a JSON Lines file, one order per line. The file
+     * is read sequentially through a buffer; a line that can't be imported
+     * is reported as a failure without stopping the others, and blank lines
+     * are skipped.
+     * 
+     * @param path path of the JSON Lines file
+     * 
+     * @return the report of the import
+     * 
+     * @throws IOException if the file can't be read
+     */
+    public ImportReport importLines(Path path) throws IOException {
         
-        Person destination = new Person((String)jsonDestination.get("name"), address);
+        ImportReport report = new ImportReport();
+        JSONParser parser = new JSONParser();
+        long start = System.nanoTime();
         
-        order.setDestination(destination);
-
-     
-        // Get Customer
-        JSONObject jsonCustomer = (JSONObject) jsonOrder.get("customer");
-        
-        // Parse Address from customer
-        jsonAddress = (JSONObject) jsonCustomer.get("address");
-        address = new Address(
-                (String)jsonAddress.get("street"),
-                (String)jsonAddress.get("city"),
-                (String)jsonAddress.get("country"),
-                (String)jsonAddress.get("state"),
-                (int)(long)jsonAddress.get("number")
-            );
-        
-        // Parse the Billing Address
-        JSONObject jsonBillingAddress = (JSONObject) jsonCustomer.get("billingAddress");
-        Address billingAddress = new Address(
-                (String)jsonBillingAddress.get("street"),
-                (String)jsonBillingAddress.get("city"),
-                (String)jsonBillingAddress.get("country"),
-                (String)jsonBillingAddress.get("state"),
-                (int)(long)jsonBillingAddress.get("number")
-            );
-        
-        Customer customer = new Customer(
-                (String)jsonCustomer.get("name"),
-                address,
-                billingAddress
-            );
-        
-        order.setCustomer(customer);
-        
-        // Get items        
-        JSONArray jsonItems = (JSONArray) jsonOrder.get("items");
-        
-        for (int i = 0; i < jsonItems.size(); i++) {
-            
-            JSONObject jsonItem = (JSONObject) jsonItems.get(i);
-            
-            String reference =  (String) jsonItem.get("reference");
-            String description =  (String) jsonItem.get("decription");
-            int depth = (int)(long) jsonItem.get("depth"),
-                length = (int)(long) jsonItem.get("length"),
-                height = (int)(long) jsonItem.get("height");
-           
-            order.add(new Item(reference, description, depth, height, length));
-
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            
+            String line;
+            long number = 0;
+            
+            while ((line = reader.readLine()) != null) {
+                
+                number++;
+                
+                if (line.isBlank()) continue;
+                
+                try {
+                    
+                    Order order = new Order();
+                    
+                    Management.read(parser, order, new StringReader(line), line.length() + 1, this.customers);
+                    
+                    if (this.add(order)) {
+                        
+                        report.imported(line.length() + 1);
+                        
+                    } else {
+                        
+                        report.duplicated();
+                    }
+                    
+                } catch (ParseException | OrderException | RuntimeException e) {
+                    
+                    // An invalid value (a date out of range, a string
+                    // instead of a number, a missing field...) fails only
+                    // its line
+                    report.failed(path, number, e);
+                }
+            }
+        }
+        
+        report.setElapsedNanos(System.nanoTime() - start);
+        
+        return report;
+    }
+    
+    /**
+     * Exports all the orders to a JSON Lines file, one order per line, in the
+     * format of the order files (id, date, customer, destination and items),
+     * so the file can be imported again with {@link #importLines(Path)}. The
+     * shippings aren't written: to keep them, use {@link #writeSnapshot(Path)}.
+     * 
+     * @param path path of the JSON Lines file
+     * @param append true to append the orders to the end of the file, false to replace it
+     * 
+     * @throws IOException if the file can't be written
+     */
+    public void exportLines(Path path, boolean append) throws IOException {
+        
+        OpenOption[] options = append ?
+                new OpenOption[] { StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE } :
+                new OpenOption[] { StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE };
+                
+        try (BufferedWriter writer = Files.newBufferedWriter(path, options)) {
+            
+            for (IOrder order : this.orders.values()) {
+                
+                Management.materialize(order).writeOrderJSONString(writer);
+                writer.write('\n');
+            }
         }
+    }
+    
+    /**
+     * Writes a binary snapshot of the orders (with their shippings,
+     * containers and packed items) and the customers to a file, to restart
+     * with {@link #readSnapshot(Path)} instead of importing the orders again
+     * 
+     * @param path path of the snapshot file
+     * 
+     * @throws IOException if the file can't be written
+     */
+    public void writeSnapshot(Path path) throws IOException {
         
+        Snapshot.write(path, this.customers.customers(), this.getOrders());
     }
     
-    public void ExportCustomersChart() throws IOException {
+    /**
+     * Adds the orders of a snapshot written by {@link #writeSnapshot(Path)},
+     * and registers its customers. The orders with an id already registered
+     * aren't added. A customer of the snapshot that is already registered
+     * (with the same VAT) is used instead, and the others keep their saved
+     * ids unless the ids were already given to other customers.
+     * 
+     * @param path path of the snapshot file
+     * 
+     * @return the number of orders added
+     * 
+     * @throws IOException if the file can't be read or isn't a valid snapshot
+     */
+    public int readSnapshot(Path path) throws IOException {
         
-        BufferedWriter writer;
+        int added = 0;
         
-        String[] customerNames = new String[0];
-        int[] customerOrders = new int[0];
-         
-        for (Order order: this.orders) {
+        for (Order order : Snapshot.read(path, this.customers)) {
             
-            int id = order.getCustomer().getCustomerId();
-            String name = order.getCustomer().getName();
+            try {
+                
+                if (this.add(order)) added++;
+                
+            } catch (OrderException e) {
+                
+                // The orders read aren't null
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        return added;
+    }
+    
+    /**
+     * Opens an archive of closed orders, creating the file if it doesn't
+     * exist, where {@link #archiveClosed()} moves the closed orders. The
+     * orders already in the archive are added (as archived orders, see
+     * archiveClosed) and their customers are registered. The orders with an
+     * id already registered aren't added.
+     * 
+     * The archive keeps every order archived, even if it's removed from the
+     * manager afterwards.
+     * 
+     * @param path path of the archive file
+     * 
+     * @return the number of archived orders added
+     * 
+     * @throws IOException if the file can't be read or isn't an archive
+     * @throws IllegalStateException if an archive is already open
+     */
+    public int openArchive(Path path) throws IOException {
+        
+        if (this.archive != null) {
             
-            if (id >= customerOrders.length) {
+            throw new IllegalStateException("An archive is already open");
+        }
+        
+        OrderArchive opened = new OrderArchive(path);
+        int added = 0;
+        
+        for (ArchivedOrder order : opened.open(this.customers)) {
+            
+            try {
                 
-                customerOrders = Arrays.copyOf(customerOrders, id + 1);
-                customerNames = Arrays.copyOf(customerNames, id + 1);
-                customerOrders[id] = 1;
-                customerNames[id] = name;
+                if (this.add(order)) added++;
                 
-            } else {
+            } catch (OrderException e) {
+                
+                // The orders read aren't null
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        this.archive = opened;
+        
+        return added;
+    }
+    
+    /**
+     * Moves the closed orders (closed by {@link Order#close()}, with all
+     * their shippings RECEIVED or CANCELLED) to the archive. Each one is
+     * replaced in the manager by a handle, in the same place, so only the
+     * open orders are kept in the heap. An archived order is decoded from
+     * the archive (mapped in memory) when its content is used, and can't be
+     * changed.
+     * 
+     * @return the number of orders archived
+     * 
+     * @throws IOException if the archive can't be written
+     * @throws IllegalStateException if no archive is open
+     */
+    public int archiveClosed() throws IOException {
+        
+        if (this.archive == null) {
+            
+            throw new IllegalStateException("No archive is open");
+        }
+        
+        DinArray<IOrder> closed = new DinArray<>(IOrder.class);
+        
+        for (IOrder order : this.orders.values()) {
+            
+            if (order instanceof Order && Management.isArchivable(order)) {
                 
-                customerOrders[id]++;
-            }       
+                closed.add(order);
+            }
         }
         
+        IOrder[] orders = closed.toArray();
+        ArchivedOrder[] handles = this.archive.append(orders, this.customers);
         
-        String chartC =   "{\n" + 
-                "\"type\":\"bar\", \n" +
-                "\"data\": {\n" + 
-                "    \"labels\":[";
+        for (int i = 0; i < orders.length; i++) {
+            
+            this.orders.put(orders[i].getId(), handles[i]);
+            
+            if (orders[i].getCustomer() != null) {
                 
+                DinArray<IOrder> list = this.customerOrders.get(orders[i].getCustomer().getCustomerId());
+                int index = list != null ? list.indexOf(orders[i]) : -1;
                 
-        String separador = "";
-
-        for (int i = 0; i < customerOrders.length; i++) {
-
-            if (customerOrders[i]>0)
-               chartC += separador + "\"" + customerNames[i] + "\"";
-
-            separador = ", ";
-
-        }           
-                 
-        chartC += "],\n"+
-                "    \"datasets\":[{\"label\":\"Número de encomendas\", \"data\":["; 
+                if (index >= 0) list.set(index, handles[i]);
+            }
+        }
+        
+        return orders.length;
+    }
+    
+    private static boolean isArchivable(IOrder order) {
         
+        // An order without items left to send isn't archived until it's closed
+        if (!(order instanceof Order) || !((Order) order).wasClosed()) return false;
+        
+        for (IShipping shipping : order.getShippings()) {
+            
+            ShipmentStatus status = shipping.getShipmentStatus();
+            
+            if (status != ShipmentStatus.RECEIVED && status != ShipmentStatus.CANCELLED) return false;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Returns the order, or the order decoded from the archive for an
+     * archived order
+     */
+    private static Order materialize(IOrder order) {
+        
+        return order instanceof ArchivedOrder ? ((ArchivedOrder) order).materialize() : (Order) order;
+    }
+    
+    private void register(Path[] paths, Future<Order>[] parsed, ImportReport report) {
+        
+        for (int i = 0; i < paths.length && paths[i] != null; i++) {
+            
+            try {
                 
-        separador = "";
-
-        for (int i = 0; i < customerOrders.length; i++) {
-
-            if (customerOrders[i]>0)
-               chartC += separador + customerOrders[i];
-
-            separador = ", ";
-
-        }  
-                       
-        chartC += "]}]}, \n"+
-            "\"title\": \"Encomendas por cliente\"" + 
-            "}" ;
-
-        // Save JSON to file
-        writer = new BufferedWriter(new FileWriter("chartC.json"));
-        writer.write(chartC);
-        writer.close();
+                Order order = parsed[i].get();
+                
+                if (this.add(order)) {
+                    
+                    report.imported(Files.size(paths[i]));
+                    
+                } else {
+                    
+                    report.duplicated();
+                }
+                
+            } catch (ExecutionException e) {
+                
+                report.failed(paths[i], e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                
+            } catch (InterruptedException e) {
+                
+                Thread.currentThread().interrupt();
+                report.failed(paths[i], e);
+                
+            } catch (IOException | OrderException e) {
+                
+                report.failed(paths[i], e);
+            }
+        }
+    }
+    
+    private static Order parse(Path path, CustomerRegistry customers) throws IOException, ParseException, OrderException {
+        
+        Order order = new Order();
+        
+        try (Reader reader = Files.newBufferedReader(path)) {
+            
+            Management.read(new JSONParser(), order, reader, Files.size(path), customers);
+        }
         
+        return order;
+    }
+    
+    /**
+     * Parses an order from a reader, recording the time and the size of the
+     * input in the import timer
+     * 
+     * @param parser JSON parser
+     * @param order order to be filled
+     * @param reader reader of the order's JSON notation
+     * @param bytes size of the input
+     * @param customers registry of the imported customers
+     * 
+     * @throws IOException if the reader fails
+     * @throws ParseException if the input isn't valid JSON
+     * @throws OrderException if an item can't be added to the order, a
+     * field is missing (the id, a part of the date, the reference or a size
+     * of an item) or a value has the wrong type
+     */
+    static void read(JSONParser parser, IOrder order, Reader reader, long bytes, CustomerRegistry customers) throws IOException, ParseException, OrderException {
+        
+        long start = IMPORT_TIMER.start();
+        boolean failed = true;
+        
+        try {
+            
+            OrderContentHandler handler = new OrderContentHandler(order, customers);
+            
+            parser.parse(reader, handler);
+            handler.checkError();
+            failed = false;
+            
+        } finally {
+            
+            IMPORT_TIMER.stop(start, bytes, failed);
+        }
+    }
+    
+    /**
+     * Export the chart with the number of orders of each customer (chartC.json)
+     * 
+     * @throws IOException if the file can't be written
+     */
+    public void ExportCustomersChart() throws IOException {
+        
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter("chartC.json"))) {
+            
+            writer.write("{\n" + 
+                    "\"type\":\"bar\", \n" +
+                    "\"data\": {\n" + 
+                    "    \"labels\":[");
+            
+            // The customer index holds the orders of each customer, in the
+            // order they were added: the chart lists them by customer id
+            DinArray<Integer> ids = new DinArray<>(Integer.class);
+            
+            for (Integer id : this.customerOrders.keys()) {
+                
+                ids.add(id);
+            }
+            
+            Integer[] customers = ids.toArray();
+            Arrays.sort(customers);
+            
+            String separador = "";
+            
+            for (Integer id : customers) {
+                
+                writer.write(separador);
+                JSON.writeString(writer, this.customerOrders.get(id).get(0).getCustomer().getName());
+                separador = ", ";
+            }
+            
+            writer.write("],\n"+
+                    "    \"datasets\":[{\"label\":\"Número de encomendas\", \"data\":["); 
+                    
+            separador = "";
+            
+            for (Integer id : customers) {
+                
+                writer.write(separador);
+                writer.write(Integer.toString(this.customerOrders.get(id).size()));
+                separador = ", ";
+            }
+            
+            writer.write("]}]}, \n"+
+                "\"title\": \"Encomendas por cliente\"" + 
+                "}");
+        }
     }
     
 }
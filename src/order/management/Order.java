@@ -1,36 +1,71 @@
 package order.management;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import order.base.Address;
 import order.base.Customer;
+import order.base.IAddress;
 import order.base.ICustomer;
 import order.base.IPerson;
 import order.base.Person;
 import order.exceptions.ContainerException;
 import order.exceptions.OrderException;
 import order.exceptions.PositionException;
-import order.packing.Container;
 import order.packing.IContainer;
 import order.packing.IItem;
+import order.packing.IItemPacked;
 import order.packing.Item;
 import order.util.DinArray;
+import order.util.DinMap;
+import order.util.JSON;
+import order.util.Metrics;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONStreamAware;
 
 /**
  * Represent's an Order
  * 
  * @author Filipe Certal (filipe.certal@gmail.com)
  */
-public class Order implements IOrder, IExporter {
+public class Order implements IOrder, IExporter, JSONAware, JSONStreamAware {
+    
+    private static final Metrics.Timer CLOSE_TIMER = Metrics.getDefault().timer("order.close"),
+                                       EXPORT_TIMER = Metrics.getDefault().timer("order.export");
     
     private int orderId;
     private Person destination;
     private DinArray<Item> items;
     private LocalDate orderdate;
-    private DinArray<Shipping> shippings;
+    private volatile DinArray<Shipping> shippings;
     private Customer customer;
     
+    // Items by reference, and the shipping and container in which each item
+    // is placed, kept up to date when shippings, containers and statuses change.
+    // They're changed and read holding the lock of the order, which the
+    // shippings hold while they notify it (a shipping is locked before its
+    // order, never after), and the list of shippings is replaced, not changed.
+    private DinMap<String, Item> itemIndex;
+    private DinMap<String, Placement> placements;
+    private final AtomicInteger remaining;
+    
+    // Set by close(): the items of the cancelled shippings are still remaining
+    private volatile boolean closed;
+    
     public Order() {
 
         this.orderId = -1;
@@ -38,10 +73,16 @@ public class Order implements IOrder, IExporter {
         this.items = new DinArray<>(Item.class);
         this.orderdate = null;
         this.shippings = new DinArray<>(Shipping.class);
+        this.itemIndex = new DinMap<>();
+        this.placements = new DinMap<>();
+        this.remaining = new AtomicInteger();
+        this.closed = false;
     }    
 
     /**
-     * Getter for destination
+     * Getter for destination. The destination of an imported order is frozen
+     * (shared by the address pool) and its setters throw an
+     * UnsupportedOperationException: to change it, set a new destination.
      * 
      * @return destination - person
      */
@@ -85,18 +126,22 @@ public class Order implements IOrder, IExporter {
     }
 
     /**
-     * Getter for a copy of the collection of items in the order
+     * Getter for a copy of the collection of items in the order. The items of
+     * an imported order are frozen (shared by the item catalog), so their
+     * description can't be changed.
      * 
      * @return items from the order. The returned items should be a copy
      */
     @Override
-    public IItem[] getItems() {
+    public synchronized IItem[] getItems() {
         
         return (IItem[]) this.items.toArray();
     }
 
     /**
-     * Setter for order id
+     * Setter for order id. A new order has the id -1, and can't be added to
+     * a manager until it gets one; the id of an order in a manager must not
+     * change, it's found by the id it had when added.
      * 
      * @param id order id
      */
@@ -155,7 +200,7 @@ public class Order implements IOrder, IExporter {
      * @throws OrderException if item is null
      */
     @Override
-    public boolean add(IItem item) throws OrderException {
+    public synchronized boolean add(IItem item) throws OrderException {
         
         if (item == null) {
             
@@ -170,16 +215,18 @@ public class Order implements IOrder, IExporter {
         }
         
         // Verify if the item was already inserted
-        for (Item i : this.items) {
+        if (this.itemIndex.containsKey(item.getReference())) {
             
-            if (i.getReference().equals(item.getReference())) {
-                
-                return false;
-            }
+            return false;
         }
         
         // Insert the item into the order list
         this.items.add((Item) item);
+        this.itemIndex.put(item.getReference(), (Item) item);
+        this.remaining.incrementAndGet();
+        
+        // The item may already be packed in one of the shippings
+        this.resolve(item.getReference());
         
         return true;
     }
@@ -225,10 +272,62 @@ public class Order implements IOrder, IExporter {
         
         //TODO: Limit the number os shippings?
         
-        // Insert the shipping     
-        this.shippings.add((Shipping) shipping);
+        this.attach((Shipping) shipping);
+        
         return true;
     }
+    
+    /**
+     * Inserts a shipping in the order and places the order items packed in
+     * its containers, without checking if the order is closed (a restored
+     * order may be closed before its last shippings are attached)
+     * 
+     * @param shipping shipping to be inserted
+     */
+    void attach(Shipping shipping) {
+        
+        shipping.attach(this);
+    }
+    
+    /**
+     * Inserts a shipping in a new list of shippings, and places the order
+     * items packed in its containers, holding the lock of the shipping
+     * 
+     * @param shipping shipping inserted
+     */
+    synchronized void shippingAttached(Shipping shipping) {
+        
+        DinArray<Shipping> shippings = new DinArray<>(Shipping.class, this.shippings.size() + 1);
+        
+        shippings.addAll(this.shippings);
+        shippings.add(shipping);
+        this.shippings = shippings;
+        
+        for (IContainer container : shipping.containers()) {
+            
+            this.containerAdded(shipping, container);
+        }
+    }
+    
+    /**
+     * Removes a shipping from a new list of shippings, and the placements of
+     * the items packed in its containers, holding the lock of the shipping
+     * 
+     * @param shipping shipping removed
+     */
+    synchronized void shippingDetached(Shipping shipping) {
+        
+        DinArray<Shipping> shippings = new DinArray<>(Shipping.class, this.shippings.size());
+        
+        shippings.addAll(this.shippings);
+        shippings.remove(shipping);
+        this.shippings = shippings;
+        
+        for (IContainer container : shipping.containers()) {
+            
+            this.containerRemoved(shipping, container);
+        }
+    }
 
     /**
      * Remove a shipping from the order
@@ -259,17 +358,7 @@ public class Order implements IOrder, IExporter {
             };
         }
         
-        for (IShipping s : this.shippings) {
-            
-            if (s.equals(shipping)) {
-                this.shippings.remove((Shipping) shipping);
-                
-                return true;
-            }
-            
-        }
-        
-        return false;
+        return ((Shipping) shipping).detach(this);
     }
 
     /**
@@ -284,9 +373,8 @@ public class Order implements IOrder, IExporter {
         
         for (Shipping shipping : this.shippings) {
             
-            if (shipping.getShipmentStatus() == ShipmentStatus.CANCELLED) {
+            if (shipping.getShipmentStatus() == ShipmentStatus.CANCELLED && shipping.detach(this)) {
                  
-                this.shippings.remove(shipping);
                 count++;
             }
         }
@@ -311,7 +399,7 @@ public class Order implements IOrder, IExporter {
             
             for(IContainer container : shipping.getContainers()) {
                 
-                ((Container) container).validate();
+                container.validate();
             }
         }
     }
@@ -328,24 +416,58 @@ public class Order implements IOrder, IExporter {
     @Override
     public void close() throws OrderException, ContainerException, PositionException {
         
-        this.validate();
+        long start = CLOSE_TIMER.start();
+        boolean failed = true;
         
-        for (Shipping shipping : this.shippings) {
+        try {
+            
+            this.validate();
+            
+            for (Shipping shipping : this.shippings) {
+                
+                if (shipping.getShipmentStatus() != ShipmentStatus.RECEIVED)
+                    shipping.setShipmentStatus(ShipmentStatus.CANCELLED);
+            }
+            
+            this.closed = true;
+            failed = false;
+            
+        } finally {
             
-            if (shipping.getShipmentStatus() != ShipmentStatus.RECEIVED)
-                shipping.setShipmentStatus(ShipmentStatus.CANCELLED);
-        }    
+            CLOSE_TIMER.stop(start, 0, failed);
+        }
     }
 
     /**
-     * Return the closed status of the order
+     * Return the closed status of the order: closed by {@link #close()}, or
+     * with every item sent
      * 
      * @return true if the order is closed, false if the order is not closed
      */
     @Override
     public boolean isClosed() {
         
-        return this.getNumberOfRemaingItemsToSend() == 0;
+        return this.closed || this.getNumberOfRemaingItemsToSend() == 0;
+    }
+    
+    /**
+     * Returns if the order was closed by {@link #close()}, even if the items
+     * of its cancelled shippings weren't sent
+     * 
+     * @return true if the order was closed
+     */
+    boolean wasClosed() {
+        
+        return this.closed;
+    }
+    
+    /**
+     * Marks a restored order as closed by {@link #close()}, without
+     * validating it or cancelling its shippings again
+     */
+    void restoreClosed() {
+        
+        this.closed = true;
     }
 
     /**
@@ -392,166 +514,555 @@ public class Order implements IOrder, IExporter {
      * @return Returns the number of items
      */
     @Override
-    public int getNumberOfItems() {
+    public synchronized int getNumberOfItems() {
         
         return this.items.size();
     }
 
+    /**
+     * Returns the number of items that weren't placed in a shipping yet, or
+     * whose shipping wasn't SHIPPED or RECEIVED
+     * 
+     * @return Returns the number of remaining items
+     */
     @Override
     public int getNumberOfRemaingItemsToSend() {
         
-        int count = 0;
+        return this.remaining.get();
+    }
 
+    /**
+     * Returns the items that weren't placed in a shipping yet, or whose
+     * shipping wasn't SHIPPED or RECEIVED
+     * 
+     * @return Returns the remaining items
+     */
+    @Override
+    public synchronized IItem[] getRemainingItemsToSend() {
+        
+        DinArray<IItem> a = new DinArray<>(IItem.class, this.remaining.get());
+        
         for (Item item : this.items) {
             
-            boolean in = false;
+            Placement placement = this.placements.get(item.getReference());
             
-            for (Shipping shipping : this.shippings) {
-                for (IContainer container : shipping.getContainers()) { 
-                    
-                    in = container.getItem(item.getReference()) != null;
-                    if (in) break;
-                }
+            if (placement == null || !Order.isSent(placement.shipping)) {
+                
+                a.add(item);
+            }
+        }
 
-                if (in) {
-                    
-                    if (shipping.getShipmentStatus() != ShipmentStatus.RECEIVED &&
-                            shipping.getShipmentStatus() != ShipmentStatus.SHIPPED) {
-                        
-                        count++;  
-                    }
-                    
-                    break;
-                }  
+        return a.toArray();    
+    }
+    
+    /**
+     * Returns the items that aren't packed in a container of any shipping of
+     * the order, the ones still to be packed
+     * 
+     * @return the unplaced items
+     */
+    synchronized IItem[] getUnplacedItems() {
+        
+        DinArray<IItem> a = new DinArray<>(IItem.class, this.items.size() - this.placements.size());
+        
+        for (Item item : this.items) {
+            
+            if (!this.placements.containsKey(item.getReference())) {
+                
+                a.add(item);
             }
+        }
+        
+        return a.toArray();
+    }
+    
+    /**
+     * Places the order items packed in a container added to a shipping of the
+     * order. An item already placed keeps its first placement.
+     * 
+     * @param shipping shipping of the order
+     * @param container container added to the shipping
+     */
+    synchronized void containerAdded(Shipping shipping, IContainer container) {
+        
+        boolean sent = Order.isSent(shipping);
+        
+        for (IItemPacked packed : container.getPackedItems()) {
+            
+            String reference = packed.getItem().getReference();
+            
+            if (this.itemIndex.containsKey(reference) && !this.placements.containsKey(reference)) {
                 
-            if (!in) count++;
+                this.placements.put(reference, new Placement(shipping, container));
+                
+                if (sent) this.remaining.decrementAndGet();
+            }
         }
-
-        return count;
     }
-
-    @Override
-    public IItem[] getRemainingItemsToSend() {
+    
+    /**
+     * Removes the placements of the order items packed in a container removed
+     * from a shipping of the order, placing them again in other shippings
+     * 
+     * @param shipping shipping of the order
+     * @param container container removed from the shipping
+     */
+    synchronized void containerRemoved(Shipping shipping, IContainer container) {
         
-        DinArray<IItem> a = new DinArray<>(IItem.class);
+        boolean sent = Order.isSent(shipping);
         
-                for (Item item : this.items) {
+        for (IItemPacked packed : container.getPackedItems()) {
             
-            boolean in = false;
+            String reference = packed.getItem().getReference();
+            Placement placement = this.placements.get(reference);
             
-            for (Shipping shipping : this.shippings) {
-                for (IContainer container : shipping.getContainers()) { 
+            if (placement != null && placement.shipping == shipping && placement.container == container) {
+                
+                this.placements.remove(reference);
+                
+                if (sent) this.remaining.incrementAndGet();
+                
+                this.resolve(reference);
+            }
+        }
+    }
+    
+    /**
+     * Updates the number of remaining items when the status of a shipping of
+     * the order changes
+     * 
+     * @param shipping shipping of the order
+     * @param previous previous status
+     * @param status new status
+     */
+    synchronized void statusChanged(Shipping shipping, ShipmentStatus previous, ShipmentStatus status) {
+        
+        boolean wasSent = Order.isSent(previous), sent = Order.isSent(status);
+        
+        if (wasSent == sent) return;
+        
+        for (IContainer container : shipping.containers()) {
+            
+            for (IItemPacked packed : container.getPackedItems()) {
+                
+                Placement placement = this.placements.get(packed.getItem().getReference());
+                
+                if (placement != null && placement.shipping == shipping && placement.container == container) {
                     
-                    in = container.getItem(item.getReference()) != null;
-                    if (in) break;
+                    this.remaining.addAndGet(sent ? -1 : 1);
                 }
-
-                if (in) {
+            }
+        }
+    }
+    
+    private void resolve(String reference) {
+        
+        for (Shipping shipping : this.shippings) {
+            for (IContainer container : shipping.containers()) {
+                
+                if (container.getItem(reference) != null) {
+                    
+                    this.placements.put(reference, new Placement(shipping, container));
                     
-                    if (shipping.getShipmentStatus() != ShipmentStatus.RECEIVED &&
-                            shipping.getShipmentStatus() != ShipmentStatus.SHIPPED) {
-                        
-                        a.add(item);
-                    }
+                    if (Order.isSent(shipping)) this.remaining.decrementAndGet();
                     
-                    break;
-                }  
+                    return;
+                }
             }
-                
-            if (!in) a.add(item);
         }
-
-        return a.toArray();    
     }
     
-    public String toJSONString() {
+    private static boolean isSent(Shipping shipping) {
         
-        if (this.orderId == -1) return "{}";
+        return Order.isSent(shipping.getShipmentStatus());
+    }
+    
+    private static boolean isSent(ShipmentStatus status) {
         
-        String json = "{ \"orderId\": " + this.orderId + ", " +
-               "\"destination\": " + this.destination.toJSONString() + ", " +
-               "\"customer\": " + this.customer.toJSONString() +                
-               " }";
+        return status == ShipmentStatus.RECEIVED || status == ShipmentStatus.SHIPPED;
+    }
+    
+    /**
+     * Create the order's JSON notation representation
+     * 
+     * @return order's JSON notation representation
+     */
+    @Override
+    public String toJSONString() {
         
-        return json;
+        return JSON.toJSONString(this);
     }
     
+    /**
+     * Write the order's JSON notation representation
+     * 
+     * @param out writer
+     * @throws IOException if the writer fails
+     */
     @Override
-    public void export() throws IOException {
+    public void writeJSONString(Writer out) throws IOException {
         
-        String export = "{";
+        if (this.orderId == -1) {
+            
+            out.write("{}");
+            return;
+        }
         
-        // Order Date
+        out.write("{ \"orderId\": ");
+        out.write(Integer.toString(this.orderId));
+        out.write(", \"destination\": ");
+        this.destination.writeJSONString(out);
+        out.write(", \"customer\": ");
+        this.customer.writeJSONString(out);
+        out.write(" }");
+    }
+    
+    /**
+     * Create the order's export JSON notation representation, in a single line
+     * 
+     * @return order's export JSON notation representation
+     */
+    public String toExportJSONString() {
         
-        export += "\"date\": { \"month\": " + this.orderdate.getMonthValue() + 
-                  ", \"year\": " + this.orderdate.getYear() + ", \"day\": " +
-                  this.orderdate.getDayOfMonth() + "}, ";
+        return JSON.toJSONString(this::writeExportJSONString);
+    }
+    
+    /**
+     * Write the order's export JSON notation representation, in a single line,
+     * streaming the shippings to the writer
+     * 
+     * @param out writer
+     * @throws IOException if the writer fails
+     */
+    public void writeExportJSONString(Writer out) throws IOException {
+        
+        // Order Date
+        out.write("{\"date\": { \"month\": ");
+        out.write(Integer.toString(this.orderdate.getMonthValue()));
+        out.write(", \"year\": ");
+        out.write(Integer.toString(this.orderdate.getYear()));
+        out.write(", \"day\": ");
+        out.write(Integer.toString(this.orderdate.getDayOfMonth()));
+        out.write("}, ");
         
         // Shippings  
-        export += "\"shippings\": [";
+        out.write("\"shippings\": [");
             
         String separador = "";
         
         for (Shipping shipping : this.shippings) {
             
-            export += separador + "{\"shipping\": " + shipping.toJSONString() + "}";
+            out.write(separador);
+            out.write("{\"shipping\": ");
+            shipping.writeJSONString(out);
+            out.write("}");
             separador = ", ";
         }
   
-        export += "], ";
+        out.write("], ");
         
         // Destination
-        
-        export += "\"destination\": " + this.destination.toJSONString() + ", ";
+        out.write("\"destination\": ");
+        this.destination.writeJSONString(out);
+        out.write(", ");
         
         // Order ID
-        export += "\"id\": " + this.orderId + ", ";
+        out.write("\"id\": ");
+        out.write(Integer.toString(this.orderId));
+        out.write(", ");
         
         // Customer
+        out.write("\"customer\": ");
+        this.customer.writeJSONString(out);
+        
+        out.write("}");
+    }
+    
+    /**
+     * Write the order in the format of the order files read by
+     * {@link Management#importData(IOrder, String)} (id, date, customer,
+     * destination and items), in a single line. The shippings aren't written.
+     * 
+     * @param out writer
+     * @throws IOException if the writer fails
+     */
+    public void writeOrderJSONString(Writer out) throws IOException {
         
-        export += "\"customer\": " + this.customer.toJSONString();
+        out.write("{\"id\": ");
+        out.write(Integer.toString(this.orderId));
         
-        export +="}";
+        if (this.orderdate != null) {
+            
+            out.write(", \"date\": { \"day\": ");
+            out.write(Integer.toString(this.orderdate.getDayOfMonth()));
+            out.write(", \"month\": ");
+            out.write(Integer.toString(this.orderdate.getMonthValue()));
+            out.write(", \"year\": ");
+            out.write(Integer.toString(this.orderdate.getYear()));
+            out.write(" }");
+        }
         
+        // Customer, with the VAT used to find it when it's imported
+        if (this.customer != null) {
+            
+            out.write(", \"customer\": { \"name\": ");
+            JSON.writeString(out, this.customer.getName());
+            out.write(", \"vat\": ");
+            JSON.writeString(out, this.customer.getVat());
+            out.write(", \"address\": ");
+            Order.writeAddress(out, this.customer.getAddress());
+            out.write(", \"billingAddress\": ");
+            Order.writeAddress(out, this.customer.getBillingAddress());
+            out.write(" }");
+        }
+        
+        // Destination
+        if (this.destination != null) {
+            
+            out.write(", \"destination\": ");
+            this.destination.writeJSONString(out);
+        }
         
-        // Save JSON to file
-        BufferedWriter writer = new BufferedWriter(new FileWriter("export.json"));
-        writer.write(export);
-        writer.close();
+        // Items
+        out.write(", \"items\": [");
+        
+        String separador = "";
+        
+        for (Item item : this.items) {
+            
+            out.write(separador);
+            out.write("{ \"reference\": ");
+            JSON.writeString(out, item.getReference());
+            out.write(", \"description\": ");
+            JSON.writeString(out, item.getDescription());
+            out.write(", \"depth\": ");
+            out.write(Integer.toString(item.getDepth()));
+            out.write(", \"height\": ");
+            out.write(Integer.toString(item.getHeight()));
+            out.write(", \"length\": ");
+            out.write(Integer.toString(item.getLenght()));
+            out.write(" }");
+            separador = ", ";
+        }
+        
+        out.write("]}");
+    }
+    
+    /**
+     * Export the order (export.json) and its charts (chartA.json and
+     * chartB.json) to the working directory
+     * 
+     * @throws IOException if the files can't be written
+     */
+    @Override
+    public void export() throws IOException {
+        
+        this.export(Paths.get(""));
+    }
+    
+    /**
+     * Export the order (export.json) and its charts (chartA.json and
+     * chartB.json) to a directory. Each file is written to a temporary file
+     * that is then renamed, so a file is never seen half written, and the
+     * remaining items are counted once for both charts.
+     * 
+     * @param directory target directory
+     * 
+     * @throws IOException if the files can't be written
+     */
+    public void export(Path directory) throws IOException {
+        
+        long start = EXPORT_TIMER.start(), bytes = 0;
+        boolean failed = true;
+        
+        try {
+            
+            int totalItems = this.getNumberOfItems();
+            int itemsNaoEnviados = this.getNumberOfRemaingItemsToSend();
+            
+            bytes += Order.writeAtomically(directory.resolve("export.json"), this::writeExportJSONString);
+            
+            bytes += Order.writeAtomically(directory.resolve("chartA.json"), out -> Order.writeItemsChart(out, totalItems, itemsNaoEnviados));
+            bytes += Order.writeAtomically(directory.resolve("chartB.json"), out -> Order.writeStatusChart(out, totalItems, itemsNaoEnviados));
+            
+            failed = false;
+            
+        } finally {
+            
+            EXPORT_TIMER.stop(start, bytes, failed);
+        }
+    }
+    
+    /**
+     * Export the order (export.json) and its charts (chartA.json and
+     * chartB.json) to an OutputStream, as a zip with the three files, in
+     * UTF-8. The zip is finished and the stream flushed, but not closed.
+     * 
+     * @param out target stream
+     * 
+     * @throws IOException if the stream can't be written
+     */
+    public void export(OutputStream out) throws IOException {
         
-        //System.out.println(export);
+        long start = EXPORT_TIMER.start();
+        boolean failed = true;
+        CountingOutputStream counter = new CountingOutputStream(out);
         
-        int totalItems = this.getNumberOfItems();
-        int itemsNaoEnviados = this.getNumberOfRemaingItemsToSend();
+        try {
+            
+            int totalItems = this.getNumberOfItems();
+            int itemsNaoEnviados = this.getNumberOfRemaingItemsToSend();
+            
+            ZipOutputStream zip = new ZipOutputStream(counter, StandardCharsets.UTF_8);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+            
+            // The export is written as it's compressed, the fastest level keeps it cheap
+            zip.setLevel(Deflater.BEST_SPEED);
+            
+            Order.writeEntry(zip, writer, "export.json", this::writeExportJSONString);
+            Order.writeEntry(zip, writer, "chartA.json", w -> Order.writeItemsChart(w, totalItems, itemsNaoEnviados));
+            Order.writeEntry(zip, writer, "chartB.json", w -> Order.writeStatusChart(w, totalItems, itemsNaoEnviados));
+            
+            zip.finish();
+            zip.flush();
+            failed = false;
+            
+        } finally {
+            
+            EXPORT_TIMER.stop(start, counter.count, failed);
+        }
+    }
+    
+    /**
+     * Writes the chart with the percentages of items sent and not sent (chartA.json)
+     */
+    private static void writeItemsChart(Writer out, int totalItems, int itemsNaoEnviados) throws IOException {
         
-        String chartA = "{\n" + 
+        out.write("{\n" + 
                 "\"type\":\"pie\", \n" +
                 "\"data\": {\n" + 
                 "    \"labels\":[\"Percentagem de items não enviados\",\"Percentagem de items enviados\"],\n"+
                 "    \"datasets\":[{\"data\":["+ ((double)itemsNaoEnviados/totalItems) + ","+ (1 - (double)itemsNaoEnviados/totalItems) + "]}]}, \n"+
                 "\"title\": \"Items enviados\"" + 
-                "}" ;
-
-        // Save JSON to file
-        writer = new BufferedWriter(new FileWriter("chartA.json"));
-        writer.write(chartA);
-        writer.close();
+                "}");
+    }
+    
+    /**
+     * Writes the chart with the number of items open and closed (chartB.json)
+     */
+    private static void writeStatusChart(Writer out, int totalItems, int itemsNaoEnviados) throws IOException {
         
-        String chartB =  "{\n" + 
+        out.write("{\n" + 
                 "\"type\":\"bar\", \n" +
                 "\"data\": {\n" + 
                 "    \"labels\":[\"Em aberto\",\"Fechadas\"],\n"+
                 "    \"datasets\":[{\"label\":\"Número de encomendas\", \"data\":["+ (itemsNaoEnviados) + ","+ (totalItems - itemsNaoEnviados) + "]}]}, \n"+
                 "\"title\": \"Encomendas por estado\"" + 
-                "}" ;
-
-        // Save JSON to file
-        writer = new BufferedWriter(new FileWriter("chartB.json"));
-        writer.write(chartB);
-        writer.close();
+                "}");
+    }
+    
+    /**
+     * Writes a file of the zip, through the writer over the zip
+     */
+    private static void writeEntry(ZipOutputStream zip, Writer writer, String name, JSONStreamAware content) throws IOException {
+        
+        zip.putNextEntry(new ZipEntry(name));
+        content.writeJSONString(writer);
+        writer.flush();
+        zip.closeEntry();
+    }
+    
+    /**
+     * Writes a file through a temporary file that is then renamed
+     * 
+     * @return the size of the file
+     */
+    private static long writeAtomically(Path target, JSONStreamAware content) throws IOException {
         
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
         
+        try {
+            
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                
+                content.writeJSONString(writer);
+            }
+            
+            long size = Files.size(temp);
+            
+            try {
+                
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                
+            } catch (AtomicMoveNotSupportedException e) {
+                
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            
+            return size;
+            
+        } finally {
+            
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * Writes an address's JSON notation representation, or null
+     */
+    private static void writeAddress(Writer out, IAddress address) throws IOException {
+        
+        if (address == null) {
+            
+            out.write("null");
+            
+        } else {
+            
+            ((Address) address).writeJSONString(out);
+        }
+    }
+    
+    /**
+     * Stream that counts the bytes written to another stream
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        
+        private long count;
+        
+        CountingOutputStream(OutputStream out) {
+            
+            super(out);
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            
+            this.out.write(b);
+            this.count++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+    }
+    
+    /**
+     * Shipping and container in which an item of the order is placed
+     */
+    private static final class Placement {
+        
+        private final Shipping shipping;
+        private final IContainer container;
+        
+        Placement(Shipping shipping, IContainer container) {
+            
+            this.shipping = shipping;
+            this.container = container;
+        }
     }
     
 }
@@ -0,0 +1,180 @@
+package order.management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import order.base.CustomerRegistry;
+import order.exceptions.ContainerException;
+import order.exceptions.OrderException;
+import order.exceptions.PositionException;
+import order.util.DinArray;
+
+/**
+ * Append-only archive of closed orders, in a file mapped in memory.
+ * 
+ * Each order is appended as a record in the snapshot format (see Snapshot),
+ * after a record of its customer, and is represented by a handle with the
+ * position of its record. The file is mapped read only, in regions of whole
+ * records (a region is mapped after each append, with the records
+ * appended), so a record is decoded from the memory of the region, without
+ * reading the file. The pages of the mapped file are kept by the operating
+ * system, not in the heap.
+ * 
+ * The file is only open while appending: the mapped regions stay valid
+ * after the channel is closed.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+final class OrderArchive {
+    
+    // A mapped region is limited to 2GB, the regions are split at 1GB
+    private static final long REGION = 1L << 30;
+    
+    private final Path path;
+    
+    // Regions of the file mapped, and their positions in the file
+    private MappedByteBuffer[] regions;
+    private long[] starts;
+    private int count;
+    
+    // End of the mapped regions, and end of the last whole entry
+    private long mapped, end;
+    
+    OrderArchive(Path path) {
+        
+        this.path = path;
+        this.regions = new MappedByteBuffer[4];
+        this.starts = new long[4];
+        this.count = 0;
+        this.mapped = 0;
+        this.end = 0;
+    }
+    
+    /**
+     * Opens the archive file, creating it if it doesn't exist, and reads the
+     * handles of the orders already archived. An entry partially written
+     * (if the manager stopped while appending it) is discarded.
+     * 
+     * @param registry registry of the customers of the manager
+     * @return the handles of the orders archived, in the archived order
+     * @throws IOException if the file can't be read or isn't an archive
+     */
+    ArchivedOrder[] open(CustomerRegistry registry) throws IOException {
+        
+        try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            
+            if (channel.size() == 0) {
+                
+                Snapshot.create(channel);
+                channel.force(false);
+                
+                this.end = channel.position();
+                
+                return new ArchivedOrder[0];
+            }
+            
+            DinArray<ArchivedOrder> orders = new DinArray<>(ArchivedOrder.class, 1024);
+            
+            this.end = Snapshot.scan(channel, this, registry, orders);
+            
+            if (channel.size() > this.end) channel.truncate(this.end);
+            
+            ArchivedOrder[] r = orders.toArray();
+            
+            this.map(channel, r);
+            
+            return r;
+        }
+    }
+    
+    /**
+     * Appends orders to the archive
+     * 
+     * @param orders orders to be archived
+     * @param registry registry of the customers of the manager
+     * @return the handles of the orders
+     * @throws IOException if the file can't be written
+     */
+    ArchivedOrder[] append(IOrder[] orders, CustomerRegistry registry) throws IOException {
+        
+        try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            
+            // Discard the part of an append that failed
+            channel.truncate(this.end);
+            channel.position(this.end);
+            
+            ArchivedOrder[] r = Snapshot.append(channel, this, orders, registry);
+            
+            channel.force(false);
+            
+            this.end = channel.position();
+            this.map(channel, r);
+            
+            return r;
+        }
+    }
+    
+    /**
+     * Decodes an archived order from its mapped record
+     * 
+     * @param order handle of the order
+     * @return a new order, with its shippings, containers and packed items
+     */
+    Order read(ArchivedOrder order) throws IOException, OrderException, ContainerException, PositionException {
+        
+        int i = Arrays.binarySearch(this.starts, 0, this.count, order.getOffset());
+        
+        if (i < 0) i = -i - 2;
+        
+        // A duplicate, so each decoding has its own position and limit
+        ByteBuffer record = this.regions[i].duplicate();
+        int position = (int) (order.getOffset() - this.starts[i]);
+        
+        record.position(position).limit(position + order.getLength());
+        
+        return Snapshot.decode(record, order.getCustomer());
+    }
+    
+    /**
+     * Maps the records of the handles, after the regions already mapped, in
+     * regions of whole records
+     */
+    private void map(FileChannel channel, ArchivedOrder[] orders) throws IOException {
+        
+        long from = this.mapped, to = this.mapped;
+        
+        for (ArchivedOrder order : orders) {
+            
+            long end = order.getOffset() + order.getLength();
+            
+            if (end - from > REGION && to > from) {
+                
+                this.region(channel, from, to);
+                from = to;
+            }
+            
+            to = end;
+        }
+        
+        if (to > from) this.region(channel, from, to);
+    }
+    
+    private void region(FileChannel channel, long from, long to) throws IOException {
+        
+        if (this.count == this.regions.length) {
+            
+            this.regions = Arrays.copyOf(this.regions, this.count * 2);
+            this.starts = Arrays.copyOf(this.starts, this.count * 2);
+        }
+        
+        this.regions[this.count] = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        this.starts[this.count] = from;
+        this.count++;
+        this.mapped = to;
+    }
+    
+}
@@ -0,0 +1,396 @@
+package order.management;
+
+import java.io.IOException;
+import order.base.Address;
+import order.base.Customer;
+import order.base.CustomerRegistry;
+import order.base.AddressPool;
+import order.exceptions.OrderException;
+import order.packing.ItemCatalog;
+import order.util.DinArray;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Streaming (SAX-like) handler that builds an order as the JSON tokens of
+ * an order file arrive, without loading the whole document in memory. Only
+ * the fields of the current address, customer, destination or item are kept
+ * until the object ends. The items, addresses and destinations are taken
+ * from the item catalog and the address pool, so equal ones are shared by
+ * all the orders.
+ * 
+ * An order without id, a date without day, month or year, an item without
+ * reference or size, and a value of the wrong type (a string instead of a
+ * number, ...) stop the parsing, and are thrown by checkError() as an
+ * OrderException.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+class OrderContentHandler implements ContentHandler {
+    
+    private final IOrder order;
+    private final CustomerRegistry customers;
+    
+    // Keys of the entries from the root to the current value
+    private final DinArray<String> path;
+    
+    private boolean identified;
+    private Integer day, month, year;
+    private String destinationName;
+    private Address destinationAddress;
+    private String customerName, customerVat;
+    private Address customerAddress, billingAddress;
+    private String street, city, country, state;
+    private int number;
+    private String reference, description;
+    private Integer depth, height, length;
+    
+    private OrderException error;
+    
+    /**
+     * OrderContentHandler's instance constructor
+     * 
+     * @param order order to be filled with the parsed data
+     * @param customers registry whose customers are reused, or null to
+     * create a new customer
+     */
+    OrderContentHandler(IOrder order, CustomerRegistry customers) {
+        
+        this.order = order;
+        this.customers = customers;
+        this.path = new DinArray<>(String.class, 4);
+    }
+    
+    /**
+     * Throws the OrderException raised while the order was being built, if
+     * any, or if the order has no id
+     * 
+     * @throws OrderException if an item couldn't be added to the order, a
+     * field is missing or a value has the wrong type
+     */
+    void checkError() throws OrderException {
+        
+        if (this.error != null) {
+            
+            throw this.error;
+        }
+        
+        if (!this.identified) {
+            
+            throw OrderContentHandler.invalid("the order has no id");
+        }
+    }
+    
+    @Override
+    public void startJSON() throws ParseException, IOException {
+        
+        this.path.clear();
+        this.error = null;
+        this.identified = false;
+    }
+    
+    @Override
+    public void endJSON() throws ParseException, IOException {
+    }
+    
+    @Override
+    public boolean startObject() throws ParseException, IOException {
+        
+        if (this.at("items")) {
+            
+            this.reference = null;
+            this.description = null;
+            this.depth = null;
+            this.height = null;
+            this.length = null;
+            
+        } else if (this.at("date")) {
+            
+            this.day = null;
+            this.month = null;
+            this.year = null;
+            
+        } else if (this.at("destination", "address") || this.at("customer", "address") || this.at("customer", "billingAddress")) {
+            
+            this.street = null;
+            this.city = null;
+            this.country = null;
+            this.state = null;
+            this.number = 0;
+        }
+        
+        return true;
+    }
+    
+    @Override
+    public boolean endObject() throws ParseException, IOException {
+        
+        try {
+            
+            this.end();
+            
+        } catch (OrderException e) {
+            
+            // Stop the parsing, the error is thrown by checkError()
+            this.error = e;
+            return false;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Builds the object that ended from its fields
+     */
+    private void end() throws OrderException {
+        
+        if (this.at("items")) {
+            
+            if (this.reference == null) {
+                
+                throw OrderContentHandler.invalid("an item of the order has no reference");
+            }
+            
+            OrderContentHandler.required(this.depth, "depth of the item " + this.reference);
+            OrderContentHandler.required(this.height, "height of the item " + this.reference);
+            OrderContentHandler.required(this.length, "length of the item " + this.reference);
+            
+            this.order.add(ItemCatalog.getDefault().get(this.reference, this.description, this.depth, this.height, this.length));
+            
+        } else if (this.at("date")) {
+            
+            OrderContentHandler.required(this.day, "day of the date");
+            OrderContentHandler.required(this.month, "month of the date");
+            OrderContentHandler.required(this.year, "year of the date");
+            
+            this.order.setDate(this.day, this.month, this.year);
+            
+        } else if (this.at("destination", "address")) {
+            
+            this.destinationAddress = this.address();
+            
+        } else if (this.at("destination")) {
+            
+            this.order.setDestination(AddressPool.getDefault().person(this.destinationName, this.destinationAddress));
+            
+        } else if (this.at("customer", "address")) {
+            
+            this.customerAddress = this.address();
+            
+        } else if (this.at("customer", "billingAddress")) {
+            
+            this.billingAddress = this.address();
+            
+        } else if (this.at("customer")) {
+            
+            Customer customer;
+            
+            if (this.customers != null) {
+                
+                customer = this.customers.resolve(this.customerName, this.customerVat, this.customerAddress, this.billingAddress);
+                
+            } else {
+                
+                customer = new Customer(this.customerName, this.customerAddress, this.billingAddress);
+                customer.setVat(this.customerVat);
+            }
+            
+            this.order.setCustomer(customer);
+        }
+    }
+    
+    @Override
+    public boolean startObjectEntry(String key) throws ParseException, IOException {
+        
+        this.path.add(key);
+        
+        return true;
+    }
+    
+    @Override
+    public boolean endObjectEntry() throws ParseException, IOException {
+        
+        this.path.removeAt(this.path.size() - 1);
+        
+        return true;
+    }
+    
+    @Override
+    public boolean startArray() throws ParseException, IOException {
+        
+        return true;
+    }
+    
+    @Override
+    public boolean endArray() throws ParseException, IOException {
+        
+        return true;
+    }
+    
+    @Override
+    public boolean primitive(Object value) throws ParseException, IOException {
+        
+        try {
+            
+            this.value(value);
+            
+        } catch (OrderException e) {
+            
+            // Stop the parsing, the error is thrown by checkError()
+            this.error = e;
+            return false;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Keeps a value in the field of its key
+     */
+    private void value(Object value) throws OrderException {
+        
+        int size = this.path.size();
+        
+        if (size == 0) return;
+        
+        String key = this.path.get(size - 1);
+        
+        if (size == 1) {
+            
+            if (key.equals("id")) {
+                
+                this.order.setId(OrderContentHandler.toInt(value, key));
+                this.identified = true;
+            }
+            
+        } else if (this.in("date")) {
+            
+            switch (key) {
+                case "day": this.day = OrderContentHandler.toInt(value, key); break;
+                case "month": this.month = OrderContentHandler.toInt(value, key); break;
+                case "year": this.year = OrderContentHandler.toInt(value, key); break;
+            }
+            
+        } else if (this.in("items")) {
+            
+            switch (key) {
+                case "reference": this.reference = OrderContentHandler.string(value, key); break;
+                case "description": this.description = OrderContentHandler.string(value, key); break;
+                case "depth": this.depth = OrderContentHandler.toInt(value, key); break;
+                case "height": this.height = OrderContentHandler.toInt(value, key); break;
+                case "length": this.length = OrderContentHandler.toInt(value, key); break;
+            }
+            
+        } else if (this.in("destination") || this.in("customer")) {
+            
+            if (this.in("destination", "name")) {
+                
+                this.destinationName = OrderContentHandler.string(value, key);
+                
+            } else if (this.in("customer", "name")) {
+                
+                this.customerName = OrderContentHandler.string(value, key);
+                
+            } else if (this.in("customer", "vat")) {
+                
+                this.customerVat = OrderContentHandler.string(value, key);
+                
+            } else if (size == 3) {
+                
+                // Field of an address
+                switch (key) {
+                    case "street": this.street = OrderContentHandler.string(value, key); break;
+                    case "city": this.city = OrderContentHandler.string(value, key); break;
+                    case "country": this.country = OrderContentHandler.string(value, key); break;
+                    case "state": this.state = OrderContentHandler.string(value, key); break;
+                    case "number": this.number = OrderContentHandler.toInt(value, key); break;
+                }
+            }
+        }
+    }
+    
+    private Address address() {
+        
+        return AddressPool.getDefault().address(this.street, this.city, this.country, this.state, this.number);
+    }
+    
+    /**
+     * Checks if the path of the current value is exactly the given keys
+     */
+    private boolean at(String... keys) {
+        
+        return this.path.size() == keys.length && this.in(keys);
+    }
+    
+    /**
+     * Checks if the path of the current value starts with the given keys
+     */
+    private boolean in(String... keys) {
+        
+        if (this.path.size() < keys.length) return false;
+        
+        for (int i = 0; i < keys.length; i++) {
+            
+            if (!keys[i].equals(this.path.get(i))) return false;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Returns an integer value
+     * 
+     * @throws OrderException if the value isn't an integer number
+     */
+    private static int toInt(Object value, String key) throws OrderException {
+        
+        // The parser reads the integer numbers as Long, the others as Double
+        if (!(value instanceof Long) || (Long) value != ((Long) value).intValue()) {
+            
+            throw OrderContentHandler.invalid("the " + key + " " + value + " isn't an integer number");
+        }
+        
+        return ((Long) value).intValue();
+    }
+    
+    /**
+     * Returns a string value, or null
+     * 
+     * @throws OrderException if the value isn't a string nor null
+     */
+    private static String string(Object value, String key) throws OrderException {
+        
+        if (value != null && !(value instanceof String)) {
+            
+            throw OrderContentHandler.invalid("the " + key + " " + value + " isn't a string");
+        }
+        
+        return (String) value;
+    }
+    
+    /**
+     * Checks that a field was in the object
+     * 
+     * @throws OrderException if the field is missing
+     */
+    private static void required(Integer field, String name) throws OrderException {
+        
+        if (field == null) {
+            
+            throw OrderContentHandler.invalid("the " + name + " is missing");
+        }
+    }
+    
+    private static OrderException invalid(String message) {
+        
+        return new OrderException() {
+            
+            @Override
+            public String getMessage() {
+                
+                return message;
+            }
+        };
+    }
+    
+}
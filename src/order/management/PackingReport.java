@@ -0,0 +1,77 @@
+package order.management;
+
+/**
+ * Result of the packing of a batch of orders: the shipping and the error of
+ * each order, in the positions of the orders packed. A failed order doesn't
+ * stop the packing of the others.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class PackingReport {
+    
+    private final IShipping[] shippings;
+    private final Exception[] errors;
+    
+    PackingReport(IShipping[] shippings, Exception[] errors) {
+        
+        this.shippings = shippings;
+        this.errors = errors;
+    }
+    
+    /**
+     * Getter for the shippings IN_TREATMENT, one for each order
+     * 
+     * @return the shippings, or null for the orders with nothing to pack
+     * (closed orders included) and for the failed orders
+     */
+    public IShipping[] getShippings() {
+        
+        return this.shippings.clone();
+    }
+    
+    /**
+     * Getter for the errors that stopped the packing, one for each order
+     * 
+     * @return the errors (a ContainerException, a PositionException or an
+     * unexpected RuntimeException), or null for the orders packed
+     */
+    public Exception[] getErrors() {
+        
+        return this.errors.clone();
+    }
+    
+    /**
+     * Getter for the number of orders that couldn't be packed
+     * 
+     * @return number of failed orders
+     */
+    public int getFailed() {
+        
+        int failed = 0;
+        
+        for (Exception error : this.errors) {
+            
+            if (error != null) failed++;
+        }
+        
+        return failed;
+    }
+    
+    /**
+     * Returns a string representation with a summary of the packing
+     * 
+     * @return a string representation with a summary
+     */
+    public String summary() {
+        
+        int packed = 0;
+        
+        for (IShipping shipping : this.shippings) {
+            
+            if (shipping != null) packed++;
+        }
+        
+        return "Orders: " + this.shippings.length + ", Packed: " + packed + ", Failed: " + this.getFailed();
+    }
+    
+}
@@ -0,0 +1,307 @@
+package order.management;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import order.exceptions.ContainerException;
+import order.exceptions.OrderException;
+import order.exceptions.PositionException;
+import order.packing.Container;
+import order.packing.IItem;
+import order.packing.Packer;
+
+/**
+ * Packs batches of orders in parallel on a fork/join pool. The orders are
+ * independent, so each one is a task, and the items of a large order are
+ * split in chunks packed by independent tasks. Each order gets a shipping
+ * IN_TREATMENT with the closed containers, ready to be added to the order.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class PackingService implements AutoCloseable {
+    
+    // Items packed by a single task
+    private static final int CHUNK = 2048;
+    
+    private final ForkJoinPool pool;
+    
+    public PackingService() {
+        
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * PackingService's instance constructor
+     * 
+     * @param parallelism number of threads used to pack
+     */
+    public PackingService(int parallelism) {
+        
+        this.pool = new ForkJoinPool(parallelism);
+    }
+    
+    /**
+     * Packs the items of an order that aren't in a container of its shippings
+     * 
+     * @param order order to be packed
+     * @return a shipping IN_TREATMENT with the containers, or null if there
+     * is nothing to pack or the order is closed
+     * @throws ContainerException if an item has no volume or doesn't fit in an empty container
+     * @throws PositionException if a container fails the validation
+     */
+    public IShipping pack(IOrder order) throws ContainerException, PositionException {
+        
+        return this.pack(new IOrder[] { order })[0];
+    }
+    
+    /**
+     * Packs the items of the orders that aren't in a container of their
+     * shippings. The container references start with the order id.
+     * 
+     * @param orders orders to be packed (for instance, from {@link Management#getOrders()})
+     * @return the shippings IN_TREATMENT, one for each order (in the same
+     * positions), or null for the orders with nothing to pack (and for the
+     * closed orders, archived or not)
+     * @throws ContainerException if an item has no volume or doesn't fit in
+     * an empty container (the errors of the other orders are suppressed by
+     * the one thrown, use {@link #packAll(IOrder[])} to keep the shippings
+     * of the orders packed)
+     * @throws PositionException if a container fails the validation
+     */
+    public IShipping[] pack(IOrder[] orders) throws ContainerException, PositionException {
+        
+        PackingReport report = this.packAll(orders);
+        Exception first = null;
+        
+        for (Exception error : report.getErrors()) {
+            
+            if (error == null) continue;
+            
+            if (first == null) {
+                
+                first = error;
+                
+            } else {
+                
+                first.addSuppressed(error);
+            }
+        }
+        
+        if (first instanceof ContainerException) throw (ContainerException) first;
+        if (first instanceof PositionException) throw (PositionException) first;
+        if (first instanceof RuntimeException) throw (RuntimeException) first;
+        
+        return report.getShippings();
+    }
+    
+    /**
+     * Packs the items of the orders that aren't in a container of their
+     * shippings, like {@link #pack(IOrder[])}, but an order that fails
+     * doesn't stop the others: its error is kept in the report
+     * 
+     * @param orders orders to be packed
+     * @return the shippings and the errors of the orders, in the same positions
+     */
+    public PackingReport packAll(IOrder[] orders) {
+        
+        IShipping[] shippings = new IShipping[orders.length];
+        Exception[] errors = new Exception[orders.length];
+        
+        this.pool.invoke(new OrdersTask(orders, 0, orders.length, shippings, errors));
+        
+        return new PackingReport(shippings, errors);
+    }
+    
+    /**
+     * Shuts down the threads of the service
+     */
+    @Override
+    public void close() {
+        
+        this.pool.shutdown();
+    }
+    
+    private static IItem[] itemsToPack(IOrder order) {
+        
+        // A closed order isn't packed, so an archived order isn't decoded
+        if (order instanceof ArchivedOrder || order.isClosed()) {
+            
+            return new IItem[0];
+        }
+        
+        if (order instanceof Order) {
+            
+            return ((Order) order).getUnplacedItems();
+        }
+        
+        return order.getItems();
+    }
+    
+    /**
+     * Packs a range of orders, splitting it until each task has a single order
+     */
+    private static class OrdersTask extends RecursiveAction {
+        
+        // The tasks aren't serialized, but ForkJoinTask is Serializable
+        private static final long serialVersionUID = 1L;
+        
+        private final IOrder[] orders;
+        private final int from, to;
+        private final IShipping[] shippings;
+        private final Exception[] errors;
+        
+        OrdersTask(IOrder[] orders, int from, int to, IShipping[] shippings, Exception[] errors) {
+            
+            this.orders = orders;
+            this.from = from;
+            this.to = to;
+            this.shippings = shippings;
+            this.errors = errors;
+        }
+        
+        @Override
+        protected void compute() {
+            
+            if (this.to - this.from > 1) {
+                
+                int middle = (this.from + this.to) >>> 1;
+                
+                RecursiveAction.invokeAll(
+                    new OrdersTask(this.orders, this.from, middle, this.shippings, this.errors),
+                    new OrdersTask(this.orders, middle, this.to, this.shippings, this.errors));
+                    
+                return;
+            }
+            
+            for (int i = this.from; i < this.to; i++) {
+                
+                try {
+                    
+                    this.shippings[i] = OrdersTask.pack(this.orders[i]);
+                    
+                } catch (ContainerException | PositionException | RuntimeException e) {
+                    
+                    this.errors[i] = e;
+                }
+            }
+        }
+        
+        private static IShipping pack(IOrder order) throws ContainerException, PositionException {
+            
+            IItem[] items = PackingService.itemsToPack(order);
+            
+            if (items.length == 0) return null;
+            
+            Packed packed = new ItemsTask(items, 0, items.length, order.getId() + "-").compute();
+            
+            if (packed.error instanceof ContainerException) throw (ContainerException) packed.error;
+            if (packed.error instanceof PositionException) throw (PositionException) packed.error;
+            if (packed.error != null) throw (RuntimeException) packed.error;
+            
+            try {
+                
+                Shipping shipping = new Shipping();
+                shipping.setShipmentStatus(ShipmentStatus.IN_TREATMENT);
+                
+                for (Container container : packed.containers) {
+                    
+                    shipping.addContainer(container);
+                }
+                
+                return shipping;
+                
+            } catch (OrderException e) {
+                
+                // A new shipping is in treatment and the containers are closed
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+    
+    /**
+     * Packs a range of the items of an order, splitting it in chunks packed
+     * independently
+     */
+    private static class ItemsTask extends RecursiveTask<Packed> {
+        
+        // The tasks aren't serialized, but ForkJoinTask is Serializable
+        private static final long serialVersionUID = 1L;
+        
+        private final IItem[] items;
+        private final int from, to;
+        private final String prefix;
+        
+        ItemsTask(IItem[] items, int from, int to, String prefix) {
+            
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.prefix = prefix;
+        }
+        
+        @Override
+        protected Packed compute() {
+            
+            if (this.to - this.from > CHUNK) {
+                
+                // Split at a chunk boundary, so the chunks (and references) don't depend on the splitting
+                int middle = this.from + (this.to - this.from + CHUNK - 1) / CHUNK / 2 * CHUNK;
+                
+                ItemsTask right = new ItemsTask(this.items, middle, this.to, this.prefix);
+                right.fork();
+                
+                Packed left = new ItemsTask(this.items, this.from, middle, this.prefix).compute();
+                
+                return Packed.merge(left, right.join());
+            }
+            
+            IItem[] chunk = new IItem[this.to - this.from];
+            System.arraycopy(this.items, this.from, chunk, 0, chunk.length);
+            
+            try {
+                
+                return new Packed(new Packer(this.prefix + (this.from / CHUNK + 1) + "-").pack(chunk).getContainers(), null);
+                
+            } catch (ContainerException | PositionException | RuntimeException e) {
+                
+                return new Packed(null, e);
+            }
+        }
+    }
+    
+    /**
+     * Containers packed by a task, or the error that stopped it (with the
+     * errors of the other chunks of the order suppressed)
+     */
+    private static final class Packed {
+        
+        private final Container[] containers;
+        private final Exception error;
+        
+        Packed(Container[] containers, Exception error) {
+            
+            this.containers = containers;
+            this.error = error;
+        }
+        
+        static Packed merge(Packed left, Packed right) {
+            
+            if (left.error != null) {
+                
+                if (right.error != null) left.error.addSuppressed(right.error);
+                
+                return left;
+            }
+            
+            if (right.error != null) return right;
+            
+            Container[] containers = new Container[left.containers.length + right.containers.length];
+            
+            System.arraycopy(left.containers, 0, containers, 0, left.containers.length);
+            System.arraycopy(right.containers, 0, containers, left.containers.length, right.containers.length);
+            
+            return new Packed(containers, null);
+        }
+    }
+    
+}
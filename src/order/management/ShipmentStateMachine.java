@@ -0,0 +1,172 @@
+package order.management;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import order.exceptions.ContainerException;
+import order.exceptions.OrderException;
+import order.exceptions.PositionException;
+import order.util.Metrics;
+
+/**
+ * The shipment status state machine: the table of the allowed transitions
+ * and the listeners notified of every transition. A shipping changes its
+ * status holding its lock, so two threads can't both make a transition
+ * from the same status, nor change the containers while it's closed.
+ * <ol>
+ * <li>AWAITS_TREATMENT to IN_TREATMENT</li>
+ * <li>IN_TREATMENT to CLOSED (if the shipping has containers, and they're valid)</li>
+ * <li>CLOSED to SHIPPED</li>
+ * <li>SHIPPED to RECEIVED</li>
+ * <li>any status other than RECEIVED to CANCELLED</li>
+ * </ol>
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public final class ShipmentStateMachine {
+    
+    /**
+     * Listener of the status transitions of the shippings
+     */
+    public interface Listener {
+        
+        /**
+         * Called after a shipping changed its status, by the thread that
+         * changed it. An exception thrown here doesn't undo nor fail the
+         * transition: it's recorded by the "shipmentStateMachine.listener"
+         * timer of the metrics.
+         * 
+         * @param shipping shipping
+         * @param previous previous status
+         * @param status new status
+         */
+        void transitioned(IShipping shipping, ShipmentStatus previous, ShipmentStatus status);
+    }
+    
+    private static final EnumMap<ShipmentStatus, EnumSet<ShipmentStatus>> TRANSITIONS = new EnumMap<>(ShipmentStatus.class);
+    
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    
+    private static final Metrics.Timer LISTENER_TIMER = Metrics.getDefault().timer("shipmentStateMachine.listener");
+    
+    static {
+        
+        for (ShipmentStatus status : ShipmentStatus.values()) {
+            
+            TRANSITIONS.put(status, EnumSet.noneOf(ShipmentStatus.class));
+            
+            if (status != ShipmentStatus.RECEIVED) {
+                
+                TRANSITIONS.get(status).add(ShipmentStatus.CANCELLED);
+            }
+        }
+        
+        TRANSITIONS.get(ShipmentStatus.AWAITS_TREATMENT).add(ShipmentStatus.IN_TREATMENT);
+        TRANSITIONS.get(ShipmentStatus.IN_TREATMENT).add(ShipmentStatus.CLOSED);
+        TRANSITIONS.get(ShipmentStatus.CLOSED).add(ShipmentStatus.SHIPPED);
+        TRANSITIONS.get(ShipmentStatus.SHIPPED).add(ShipmentStatus.RECEIVED);
+    }
+    
+    private ShipmentStateMachine() {
+    }
+    
+    /**
+     * Checks if the transition between two statuses is in the table
+     * 
+     * @param from current status
+     * @param to new status
+     * @return true if the transition is allowed
+     */
+    public static boolean isAllowed(ShipmentStatus from, ShipmentStatus to) {
+        
+        return from != null && to != null && TRANSITIONS.get(from).contains(to);
+    }
+    
+    /**
+     * Adds a listener notified of the transitions of all the shippings
+     * 
+     * @param listener listener to be added
+     */
+    public static void addListener(Listener listener) {
+        
+        listeners.add(listener);
+    }
+    
+    /**
+     * Removes a listener
+     * 
+     * @param listener listener to be removed
+     * @return true if the listener was removed
+     */
+    public static boolean removeListener(Listener listener) {
+        
+        return listeners.remove(listener);
+    }
+    
+    /**
+     * Removes all the listeners (for the tests, which share the listeners of
+     * all the shippings)
+     */
+    static void clearListeners() {
+        
+        listeners.clear();
+    }
+    
+    /**
+     * Changes the status of many shippings, for instance the updates received
+     * from a carrier. The shippings that can't make the transition are skipped.
+     * 
+     * @param shippings shippings to be changed
+     * @param status new status
+     * @return the number of shippings that changed to the new status
+     */
+    public static int transitionAll(Collection<IShipping> shippings, ShipmentStatus status) {
+        
+        int count = 0;
+        
+        for (IShipping shipping : shippings) {
+            
+            // Skip without building an exception when the transition isn't allowed
+            if (!ShipmentStateMachine.isAllowed(shipping.getShipmentStatus(), status)) continue;
+            
+            try {
+                
+                shipping.setShipmentStatus(status);
+                count++;
+                
+            } catch (OrderException | ContainerException | PositionException e) {
+                
+                // The transition isn't allowed from the current status, or
+                // the containers aren't valid to close the shipping
+            }
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Notifies the listeners of a transition. The status already changed, so
+     * an exception of a listener doesn't fail the transition nor stop the
+     * other listeners: it's counted as a failure of the listener timer,
+     * which keeps the last one.
+     */
+    static void transitioned(IShipping shipping, ShipmentStatus previous, ShipmentStatus status) {
+        
+        for (Listener listener : listeners) {
+            
+            long start = LISTENER_TIMER.start();
+            
+            try {
+                
+                listener.transitioned(shipping, previous, status);
+                LISTENER_TIMER.stop(start);
+                
+            } catch (RuntimeException e) {
+                
+                LISTENER_TIMER.stop(start, e);
+            }
+        }
+    }
+    
+}
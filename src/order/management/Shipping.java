@@ -1,27 +1,55 @@
 package order.management;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicReference;
 import order.exceptions.ContainerException;
 import order.exceptions.OrderException;
 import order.exceptions.PositionException;
-import order.packing.Container;
 import order.packing.IContainer;
 import order.util.DinArray;
+import order.util.DinMap;
+import order.util.JSON;
+import order.util.Metrics;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONStreamAware;
 
 /**
  * Instance representing the Shipping order behaviour, this class stores a collection of containers.
+ * 
+ * A shipping can be changed by several threads (for instance, the status
+ * updates of a carrier and the scanners adding containers). The changes of
+ * the containers, of the order and of the status are made holding a lock of
+ * the shipping, and the order is notified while it's held. The containers
+ * are validated outside the lock, while the shipping is being closed, and
+ * can't change until it's closed (or the validation fails). The list of
+ * containers is replaced, not changed, so it's read without the lock.
  *
  * @author Filipe Certal (filipe.certal@gmail.com)
  */
-class Shipping implements IShipping {
+class Shipping implements IShipping, JSONAware, JSONStreamAware {
     
     private static final double cost = 31.25;
-    private ShipmentStatus status;
-    private DinArray<Container> containers;
+    
+    private static final Metrics.Timer STATUS_TIMER = Metrics.getDefault().timer("shipping.setShipmentStatus");
+    private final AtomicReference<ShipmentStatus> status;
+    private volatile DinArray<IContainer> containers;
+    // Position of each container in containers, by its reference
+    private final DinMap<String, Integer> index;
+    private volatile Order order;
+    
+    // Held to change the containers, the order or the status
+    private final Object lock;
+    // Set while the containers are validated to close the shipping
+    private boolean closing;
     
     public Shipping() {
         
-        this.status = ShipmentStatus.AWAITS_TREATMENT;
-        this.containers = new DinArray<>(Container.class);
+        this.status = new AtomicReference<>(ShipmentStatus.AWAITS_TREATMENT);
+        this.containers = new DinArray<>(IContainer.class);
+        this.index = new DinMap<>();
+        this.lock = new Object();
+        this.closing = false;
     }
 
     /**
@@ -31,7 +59,7 @@ class Shipping implements IShipping {
      * 
      * @return true if container is inserted in the shipping order. false if container already exists in the shipping order
      * 
-     * @throws OrderException if the shipping order status is not equal to IN_TREATMENT
+     * @throws OrderException if the shipping order status is not equal to IN_TREATMENT, or the shipping is being closed
      * 
      * @throws ContainerException
      * <ol>
@@ -68,32 +96,31 @@ class Shipping implements IShipping {
             };
         }
         
-        // Send a OrderException if the shipping status is not equal to IN_TREATMENT
-        if (this.status != ShipmentStatus.IN_TREATMENT) {
-                
-            throw new OrderException() {
-                
-                @Override
-                public String getMessage() {
-                    
-                    return "The shipment isn't in treatment";
-                }
-            };
-        }
-        
-        // Verify if the container isn't already inserted.
-        for (Container c : this.containers) {
+        synchronized (this.lock) {
             
-            if (c.getReference().equals(container.getReference())) {
+            this.checkChangeable();
+            
+            // Verify if the container isn't already inserted.
+            if (!this.index.putIfAbsent(container.getReference(), this.containers.size())) {
                 
                 return false;
             }
+            
+            // Insert the container in a new list of the shipping
+            DinArray<IContainer> containers = new DinArray<>(IContainer.class, this.containers.size() + 1);
+            
+            containers.addAll(this.containers);
+            containers.add(container);
+            this.containers = containers;
+            
+            // Keep the item placements of the order up to date
+            if (this.order != null) {
+                
+                this.order.containerAdded(this, container);
+            }
+            
+            return true;
         }
-        
-        // Insert the container in shipping
-        this.containers.add((Container)container);
-        
-        return true;
     }
 
     /**
@@ -107,7 +134,7 @@ class Shipping implements IShipping {
      * <li>false container doesn't exists in the shipping order.</li>
      * </ol>
      * 
-     * @throws OrderException if the shipping order status is not equal to IN_TREATMENT
+     * @throws OrderException if the shipping order status is not equal to IN_TREATMENT, or the shipping is being closed
      * @throws ContainerException if the parameter is null
      */
     @Override
@@ -126,8 +153,49 @@ class Shipping implements IShipping {
             };
         }
         
+        synchronized (this.lock) {
+            
+            this.checkChangeable();
+            
+            // Verify if the container is inserted.
+            Integer i = this.index.remove(container.getReference());
+            
+            if (i == null) {
+                
+                return false;
+            }
+            
+            // Remove the container from a new list, moving the last container to its position
+            DinArray<IContainer> containers = new DinArray<>(IContainer.class, this.containers.size());
+            
+            containers.addAll(this.containers);
+            
+            IContainer c = containers.swapRemove(i);
+            
+            if (i < containers.size()) {
+                
+                this.index.put(containers.get(i).getReference(), i);
+            }
+            
+            this.containers = containers;
+            
+            // Keep the item placements of the order up to date
+            if (this.order != null) {
+                
+                this.order.containerRemoved(this, c);
+            }
+            
+            return true;
+        }
+    }
+    
+    /**
+     * Checks if the containers can be changed, holding the lock
+     */
+    private void checkChangeable() throws OrderException {
+        
         // Send a OrderException if the shipping status is not equal to IN_TREATMENT
-        if (this.status != ShipmentStatus.IN_TREATMENT) {
+        if (this.status.get() != ShipmentStatus.IN_TREATMENT) {
                 
             throw new OrderException() {
                 
@@ -139,17 +207,18 @@ class Shipping implements IShipping {
             };
         }
         
-        // Verify if the container isn't already inserted.
-        for (Container c : this.containers) {
+        // The containers being validated can't change
+        if (this.closing) {
             
-            if (c.getReference().equals(container.getReference())) {
-                                 
-                // Insert the container in shipping
-                return this.containers.remove((Container) container);
-            }
+            throw new OrderException() {
+                
+                @Override
+                public String getMessage() {
+                    
+                    return "The shipment is being closed";
+                }
+            };
         }
-
-        return false; 
     }
 
     /**
@@ -162,16 +231,10 @@ class Shipping implements IShipping {
     @Override
     public boolean existsContainer(IContainer container) {
         
-        // Verify if the container isn't already inserted.
-        for (Container c : this.containers) {
+        synchronized (this.lock) {
             
-            if (c.getReference().equals(container.getReference())) {
-                                 
-                return true;
-            }
+            return this.index.containsKey(container.getReference());
         }
-        
-        return false;
     }
 
     /**
@@ -184,15 +247,12 @@ class Shipping implements IShipping {
     @Override
     public IContainer findContainer(String reference) {
         
-        for (Container c : this.containers) {
+        synchronized (this.lock) {
             
-            if (c.getReference().equals(reference)) {
-                                 
-                return c;
-            }
+            Integer i = this.index.get(reference);
+            
+            return i != null ? this.containers.get(i) : null;
         }
-
-        return null;
     }
 
     /**
@@ -203,7 +263,7 @@ class Shipping implements IShipping {
     @Override
     public ShipmentStatus getShipmentStatus() {
         
-        return this.status;
+        return this.status.get();
     }
 
     /**
@@ -216,6 +276,12 @@ class Shipping implements IShipping {
      * <li>if the @param status is CANCELLED then the order status any status other than RECEIVED</li>
      * </ol>
      * 
+     * The status is changed holding the lock of the shipping, so only one of
+     * several threads can make a transition from the same status, and the
+     * containers can't change while the shipping is closed. The listeners of
+     * {@link ShipmentStateMachine} are notified after the change, without
+     * the lock.
+     * 
      * @param status represents the order status to change the status
      * 
      * @throws OrderException if the current status is not compatible with the status @param status to change
@@ -226,29 +292,121 @@ class Shipping implements IShipping {
      */
     @Override
     public void setShipmentStatus(ShipmentStatus status) throws OrderException, ContainerException, PositionException {
-             
-        if ((this.status == ShipmentStatus.AWAITS_TREATMENT && status == ShipmentStatus.IN_TREATMENT) ||
-            (this.status == ShipmentStatus.IN_TREATMENT && status == ShipmentStatus.CLOSED && this.containers.size() > 0) ||
-            (this.status == ShipmentStatus.CLOSED && status == ShipmentStatus.SHIPPED) ||
-            (this.status == ShipmentStatus.SHIPPED && status == ShipmentStatus.RECEIVED) ||
-            (this.status != ShipmentStatus.RECEIVED && status == ShipmentStatus.CANCELLED)) {
-            
-            if (status == ShipmentStatus.CLOSED) {
+        
+        long start = STATUS_TIMER.start();
+        boolean failed = true;
+        
+        try {
+            
+            this.transition(status);
+            failed = false;
+            
+        } finally {
+            
+            STATUS_TIMER.stop(start, 0, failed);
+        }
+    }
+    
+    /**
+     * Changes the status holding the lock. To close the shipping, the
+     * containers are validated first, without the lock: the shipping is
+     * marked as closing, so the containers can't change meanwhile.
+     */
+    private void transition(ShipmentStatus status) throws OrderException, ContainerException, PositionException {
+        
+        boolean close = status == ShipmentStatus.CLOSED;
+        
+        if (close) {
+            
+            synchronized (this.lock) {
+                
+                // Another thread is already closing the shipping
+                if (this.closing) throw Shipping.incompatible();
+                
+                this.check(status);
+                this.closing = true;
+            }
+            
+            boolean valid = false;
+            
+            try {
+                
                 this.validate();
-            }            
+                valid = true;
+                
+            } finally {
+                
+                if (!valid) {
+                    
+                    synchronized (this.lock) {
+                        
+                        this.closing = false;
+                    }
+                }
+            }
+        }
+        
+        ShipmentStatus previous;
+        
+        synchronized (this.lock) {
             
-            this.status = status;
+            previous = this.status.get();
             
-        } else {
-            throw new OrderException () {
-              
-                @Override
-                public String getMessage() {
-                 
-                    return "New status is not compatible with current order status";
+            try {
+                
+                // The status may have changed (to CANCELLED) while validating
+                this.check(status);
+                
+            } finally {
+                
+                if (close) this.closing = false;
+            }
+            
+            Order order = this.order;
+            
+            if (order != null) {
+                
+                // The order is locked before the status changes, so it doesn't
+                // count the items of the shipping with the new status before
+                // it's notified
+                synchronized (order) {
+                    
+                    this.status.set(status);
+                    order.statusChanged(this, previous, status);
                 }
-            };
-        }     
+                
+            } else {
+                
+                this.status.set(status);
+            }
+        }
+        
+        ShipmentStateMachine.transitioned(this, previous, status);
+    }
+    
+    /**
+     * Checks if the transition from the current status is allowed, holding
+     * the lock
+     */
+    private void check(ShipmentStatus status) throws OrderException {
+        
+        if (!ShipmentStateMachine.isAllowed(this.status.get(), status) ||
+            (status == ShipmentStatus.CLOSED && this.containers.size() == 0)) {
+                
+            throw Shipping.incompatible();
+        }
+    }
+    
+    private static OrderException incompatible() {
+        
+        return new OrderException () {
+            
+            @Override
+            public String getMessage() {
+                
+                return "New status is not compatible with current order status";
+            }
+        };
     }
 
     /**
@@ -259,9 +417,78 @@ class Shipping implements IShipping {
     @Override
     public IContainer[] getContainers() {
         
-        return (IContainer[]) this.containers.toArray();
+        return this.containers.toArray();
     }
 
+    /**
+     * Iterates the containers without copying them. The list isn't changed
+     * afterwards (a change replaces it), so it can be iterated without the
+     * lock.
+     * 
+     * @return the containers in the shipping order
+     */
+    Iterable<IContainer> containers() {
+        
+        return this.containers;
+    }
+    
+    /**
+     * Getter for the order that holds the shipping
+     * 
+     * @return the order, or null if the shipping wasn't added to an order
+     */
+    Order getOrder() {
+        
+        return this.order;
+    }
+    
+    /**
+     * Inserts the shipping in an order, which places its items packed in the
+     * containers. A shipping belongs to one order, which is notified when its
+     * containers or status change.
+     * 
+     * @param order the order
+     */
+    void attach(Order order) {
+        
+        synchronized (this.lock) {
+            
+            this.order = order;
+            order.shippingAttached(this);
+        }
+    }
+    
+    /**
+     * Removes the shipping from its order, which removes the placements of
+     * the items packed in its containers
+     * 
+     * @param order the order
+     * @return true if the shipping was removed, false if it isn't in the order
+     */
+    boolean detach(Order order) {
+        
+        synchronized (this.lock) {
+            
+            if (this.order != order) return false;
+            
+            this.order = null;
+            order.shippingDetached(this);
+            
+            return true;
+        }
+    }
+    
+    /**
+     * Sets the status of a restored shipping, without checking the
+     * transition or notifying the order and the listeners
+     * 
+     * @param status the saved status
+     */
+    void restoreStatus(ShipmentStatus status) {
+        
+        this.status.set(status);
+    }
+    
     /**
      * Checks if any container is invalid
      * 
@@ -272,7 +499,7 @@ class Shipping implements IShipping {
     @Override
     public void validate() throws ContainerException, PositionException {
         
-        for (Container container : this.containers) {
+        for (IContainer container : this.containers) {
             
             container.validate();
         }
@@ -301,27 +528,42 @@ class Shipping implements IShipping {
     }
     
     /**
-     * Create the item's JSON notation representation
+     * Create the shipping's JSON notation representation
      * 
-     * @return item's JSON notation representation
+     * @return shipping's JSON notation representation
      */
+    @Override
     public String toJSONString() {
         
-        String json =   "{ " + 
-                        "\"cost\": " + this.getCost() + ", " +
-                        "\"containers\": [";
+        return JSON.toJSONString(this);
+    }
+    
+    /**
+     * Write the shipping's JSON notation representation, streaming the
+     * containers to the writer
+     * 
+     * @param out writer
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
+        
+        out.write("{ \"cost\": ");
+        out.write(Double.toString(this.getCost()));
+        out.write(", \"containers\": [");
         
         String separator = "";
         
-        for (Container container : this.containers) {
+        for (IContainer container : this.containers) {
             
-            json += separator + container.toJSONString();
+            out.write(separator);
+            ((JSONStreamAware) container).writeJSONString(out);
             separator = ", ";
         }
         
-        json += "], \"status\": \"" + this.status.toString() +"\"";
-        
-        return json + " }";
+        out.write("], \"status\": ");
+        JSON.writeString(out, this.status.get());
+        out.write(" }");
     }
     
 }
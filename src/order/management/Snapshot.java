@@ -0,0 +1,1089 @@
+package order.management;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Objects;
+import order.base.Address;
+import order.base.AddressPool;
+import order.base.Customer;
+import order.base.CustomerRegistry;
+import order.base.IAddress;
+import order.base.ICustomer;
+import order.base.IPerson;
+import order.exceptions.ContainerException;
+import order.exceptions.OrderException;
+import order.exceptions.PositionException;
+import order.packing.Color;
+import order.packing.CompactContainer;
+import order.packing.Container;
+import order.packing.IContainer;
+import order.packing.IItem;
+import order.packing.IItemPacked;
+import order.packing.IPosition;
+import order.packing.Item;
+import order.packing.ItemCatalog;
+import order.packing.Position;
+import order.util.DinArray;
+import order.util.DinMap;
+
+/**
+ * Binary snapshot of the orders and customers of a manager, to restart
+ * without importing the orders again.
+ * 
+ * The file starts with a magic number and a version, followed by records,
+ * each one prefixed by its length: a record for each customer (before the
+ * first order of the customer), a record for each order (with its items,
+ * shippings, containers and packed items) and an end record with the
+ * number of customers and orders. Numbers are written as varints (7 bits
+ * per byte), the signed ones (positions, ids and dates) in zigzag. Each
+ * string is written once, the first time it's used, and then referred to
+ * by its index in the string table.
+ * 
+ * The file is written and read through a FileChannel with a buffer, and
+ * the objects are built directly from the records: the statuses of the
+ * shippings are restored without replaying the transitions, and the items
+ * aren't searched in the shippings of their orders.
+ * 
+ * The archive of the closed orders (OrderArchive) has the same records,
+ * with a string table for each record, so an order can be decoded alone.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+final class Snapshot {
+    
+    private static final byte[] MAGIC = { 'O', 'R', 'D', 'S', 'N', 'A', 'P' };
+    private static final byte[] ARCHIVE = { 'O', 'R', 'D', 'A', 'R', 'C', 'H' };
+    private static final int VERSION = 1;
+    
+    private static final byte END = 0, CUSTOMER = 1, ORDER = 2;
+    private static final byte CONTAINER = 0, COMPACT_CONTAINER = 1;
+    
+    // Flags of an order record: with a date, and closed by Order.close()
+    private static final byte DATE = 1, CLOSED = 2;
+    
+    private static final int BUFFER = 1 << 20;
+    
+    private static final Color[] COLORS = Color.values();
+    private static final ShipmentStatus[] STATUSES = ShipmentStatus.values();
+    
+    private Snapshot() {
+    }
+    
+    /**
+     * Writes a snapshot to a file, through a temporary file that is then
+     * renamed, so a snapshot is never seen half written
+     * 
+     * @param path path of the snapshot file
+     * @param registered customers of the registry of the manager
+     * @param orders orders of the manager
+     * @throws IOException if the file can't be written
+     */
+    static void write(Path path, Customer[] registered, IOrder[] orders) throws IOException {
+        
+        Path target = path.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        
+        try {
+            
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                
+                new Encoder(channel).write(registered, orders);
+                channel.force(false);
+            }
+            
+            try {
+                
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                
+            } catch (AtomicMoveNotSupportedException e) {
+                
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            
+        } finally {
+            
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * Reads the orders of a snapshot. The customers saved from the registry
+     * are registered again (a customer already registered is used instead),
+     * and a customer whose saved id was already given to another customer
+     * gets a new id.
+     * 
+     * @param path path of the snapshot file
+     * @param registry registry of the customers of the manager
+     * @return the orders, in the saved order
+     * @throws IOException if the file can't be read or isn't a valid snapshot
+     */
+    static Order[] read(Path path, CustomerRegistry registry) throws IOException {
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            
+            return new Decoder(channel, registry).read();
+            
+        } catch (OrderException | ContainerException | PositionException e) {
+            
+            throw new IOException("Invalid snapshot " + path + ": " + e.getMessage(), e);
+            
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            
+            throw new IOException("Invalid snapshot " + path, e);
+        }
+    }
+    
+    /**
+     * Writes the header of a new archive of orders. An archive has the same
+     * records of a snapshot, but each order is in an entry that can be read
+     * alone, without the records before it.
+     * 
+     * @param channel channel of the empty archive file
+     * @throws IOException if the file can't be written
+     */
+    static void create(FileChannel channel) throws IOException {
+        
+        Encoder encoder = new Encoder(channel);
+        
+        encoder.header(ARCHIVE);
+        encoder.flush();
+    }
+    
+    /**
+     * Appends the orders to an archive, at the position of the channel
+     * 
+     * @param channel channel of the archive file
+     * @param archive archive of the handles
+     * @param orders orders to be appended
+     * @param registry registry of the customers of the manager
+     * @return the handles of the orders appended
+     * @throws IOException if the file can't be written
+     */
+    static ArchivedOrder[] append(FileChannel channel, OrderArchive archive, IOrder[] orders, CustomerRegistry registry) throws IOException {
+        
+        Encoder encoder = new Encoder(channel);
+        ArchivedOrder[] r = new ArchivedOrder[orders.length];
+        
+        for (int i = 0; i < orders.length; i++) {
+            
+            ICustomer customer = orders[i].getCustomer();
+            boolean registered = customer != null && registry.get(customer.getVat(), customer.getName()) == customer;
+            long position = encoder.entry(orders[i], registered);
+            
+            r[i] = new ArchivedOrder(archive, position, encoder.recordLength(), orders[i].getId(), customer);
+        }
+        
+        encoder.flush();
+        
+        return r;
+    }
+    
+    /**
+     * Reads the entries of an archive, from the start of the channel. The
+     * customers of the entries are registered again (a customer already
+     * registered is used instead), and a handle is created for each order.
+     * 
+     * @param channel channel of the archive file
+     * @param archive archive of the handles
+     * @param registry registry of the customers of the manager
+     * @param orders handles of the archived orders, in the archived order
+     * @return the position after the last whole entry (an entry may be
+     * partially written if the manager stopped while appending it)
+     * @throws IOException if the file can't be read or isn't an archive
+     */
+    static long scan(FileChannel channel, OrderArchive archive, CustomerRegistry registry, DinArray<ArchivedOrder> orders) throws IOException {
+        
+        try {
+            
+            Decoder decoder = new Decoder(channel, registry);
+            
+            decoder.header(ARCHIVE, "an archive");
+            
+            return decoder.scan(archive, orders);
+            
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            
+            throw new IOException("Invalid archive", e);
+        }
+    }
+    
+    /**
+     * Decodes an archived order. Its items, addresses and destination are
+     * frozen, but aren't added to the default catalog and pool, so they're
+     * collected with the order.
+     * 
+     * @param record buffer with the record of the order, after its length
+     * @param customer customer of the order
+     * @return a new order, with its shippings, containers and packed items
+     * @throws IOException if the record isn't valid
+     * @throws OrderException if the record isn't valid
+     * @throws ContainerException if the record isn't valid
+     * @throws PositionException if the record isn't valid
+     */
+    static Order decode(ByteBuffer record, ICustomer customer) throws IOException, OrderException, ContainerException, PositionException {
+        
+        return new Decoder(record).entry(customer);
+    }
+    
+    /**
+     * Encodes the records in a growing buffer, that is written to the channel
+     * when it's full
+     */
+    private static final class Encoder {
+        
+        private final FileChannel channel;
+        private final Bytes out, record;
+        
+        // Position of the channel when created, and the bytes written since
+        private final long start;
+        private long written;
+        
+        // Indexes of the strings written, and the customers written
+        private final DinMap<String, Integer> strings;
+        private final DinMap<Integer, Customer> customers;
+        
+        Encoder(FileChannel channel) throws IOException {
+            
+            this.channel = channel;
+            this.start = channel.position();
+            this.written = 0;
+            this.out = new Bytes(BUFFER);
+            this.record = new Bytes(1024);
+            this.strings = new DinMap<>();
+            this.customers = new DinMap<>();
+        }
+        
+        void write(Customer[] registered, IOrder[] orders) throws IOException {
+            
+            this.header(MAGIC);
+            
+            for (Customer customer : registered) {
+                
+                this.customer(customer, true);
+            }
+            
+            for (IOrder order : orders) {
+                
+                ICustomer customer = order.getCustomer();
+                
+                if (customer != null && !this.customers.containsKey(customer.getCustomerId())) {
+                    
+                    this.customer((Customer) customer, false);
+                }
+                
+                this.order(order);
+            }
+            
+            this.record.clear();
+            this.record.putByte(END);
+            this.record.putVarint(this.customers.size());
+            this.record.putVarint(orders.length);
+            this.flushRecord();
+            
+            this.flush();
+        }
+        
+        void header(byte[] magic) {
+            
+            this.out.putBytes(magic, magic.length);
+            this.out.putVarint(VERSION);
+        }
+        
+        /**
+         * Writes an archive entry: the customer of the order and the order,
+         * each record with its own string table, so the order can be read
+         * alone
+         * 
+         * @return the position of the order record, after its length
+         */
+        long entry(IOrder order, boolean registered) throws IOException {
+            
+            ICustomer customer = order.getCustomer();
+            
+            if (customer != null) {
+                
+                this.strings.clear();
+                this.customer((Customer) customer, registered);
+            }
+            
+            this.strings.clear();
+            
+            return this.order(order);
+        }
+        
+        /**
+         * Returns the length of the last record written
+         */
+        int recordLength() {
+            
+            return this.record.size;
+        }
+        
+        /**
+         * Returns the position in the channel of the next byte written
+         */
+        long position() {
+            
+            return this.start + this.written + this.out.size;
+        }
+        
+        private void customer(Customer customer, boolean registered) throws IOException {
+            
+            this.customers.put(customer.getCustomerId(), customer);
+            
+            this.record.clear();
+            this.record.putByte(CUSTOMER);
+            this.record.putVarint(customer.getCustomerId());
+            this.record.putByte(registered ? 1 : 0);
+            this.string(customer.getName());
+            this.string(customer.getVat());
+            this.address(customer.getAddress());
+            this.address(customer.getBillingAddress());
+            this.flushRecord();
+        }
+        
+        private long order(IOrder order) throws IOException {
+            
+            // An archived order is decoded once, instead of once for each getter
+            if (order instanceof ArchivedOrder) {
+                
+                order = ((ArchivedOrder) order).materialize();
+            }
+            
+            this.record.clear();
+            this.record.putByte(ORDER);
+            this.record.putSigned(order.getId());
+            
+            LocalDate date = order.getDate();
+            
+            boolean closed = order instanceof Order && ((Order) order).wasClosed();
+            
+            this.record.putByte((date != null ? DATE : 0) | (closed ? CLOSED : 0));
+            
+            if (date != null) this.record.putSigned(date.toEpochDay());
+            
+            ICustomer customer = order.getCustomer();
+            
+            this.record.putVarint(customer != null ? customer.getCustomerId() + 1L : 0);
+            
+            IPerson destination = order.getDestination();
+            
+            this.record.putByte(destination != null ? 1 : 0);
+            
+            if (destination != null) {
+                
+                this.string(destination.getName());
+                this.address(destination.getAddress());
+            }
+            
+            // The packed items of the order refer to their index in the items
+            IItem[] items = order.getItems();
+            DinMap<String, Integer> index = new DinMap<>(items.length);
+            
+            this.record.putVarint(items.length);
+            
+            for (int i = 0; i < items.length; i++) {
+                
+                this.item(items[i]);
+                index.put(items[i].getReference(), i);
+            }
+            
+            IShipping[] shippings = order.getShippings();
+            
+            this.record.putVarint(shippings.length);
+            
+            for (IShipping shipping : shippings) {
+                
+                IContainer[] containers = shipping.getContainers();
+                
+                this.record.putByte((byte) shipping.getShipmentStatus().ordinal());
+                this.record.putVarint(containers.length);
+                
+                for (IContainer container : containers) {
+                    
+                    this.container(container, items, index);
+                }
+            }
+            
+            return this.flushRecord();
+        }
+        
+        private void container(IContainer container, IItem[] items, DinMap<String, Integer> index) {
+            
+            IItemPacked[] packed = container.getPackedItems();
+            
+            this.record.putByte(container instanceof CompactContainer ? COMPACT_CONTAINER : CONTAINER);
+            this.string(container.getReference());
+            this.record.putByte((byte) container.getColor().ordinal());
+            this.record.putByte((byte) container.getColorEdge().ordinal());
+            this.record.putByte(container.isClosed() ? 1 : 0);
+            this.record.putVarint(packed.length);
+            
+            for (IItemPacked p : packed) {
+                
+                IItem item = p.getItem();
+                Integer i = index.get(item.getReference());
+                
+                // An item of the order is written as its index, other items in full
+                if (i != null && Snapshot.same(items[i], item)) {
+                    
+                    this.record.putVarint(i + 1L);
+                    
+                } else {
+                    
+                    this.record.putVarint(0);
+                    this.item(item);
+                }
+                
+                IPosition position = p.getPosition();
+                
+                this.record.putSigned(position.getX());
+                this.record.putSigned(position.getY());
+                this.record.putSigned(position.getZ());
+                this.record.putByte((byte) p.getColor().ordinal());
+                this.record.putByte((byte) p.getColorEdge().ordinal());
+            }
+        }
+        
+        private void item(IItem item) {
+            
+            this.string(item.getReference());
+            this.string(item.getDescription());
+            this.record.putVarint(item.getDepth());
+            this.record.putVarint(item.getHeight());
+            this.record.putVarint(item.getLenght());
+        }
+        
+        private void address(IAddress address) {
+            
+            this.record.putByte(address != null ? 1 : 0);
+            
+            if (address != null) {
+                
+                this.string(address.getStreet());
+                this.string(address.getCity());
+                this.string(address.getCountry());
+                this.string(address.getState());
+                this.record.putSigned(address.getNumber());
+            }
+        }
+        
+        /**
+         * Writes a string: 0 for null, 1 followed by the string the first time
+         * it's written, or its index in the string table plus 2
+         */
+        private void string(String s) {
+            
+            if (s == null) {
+                
+                this.record.putVarint(0);
+                return;
+            }
+            
+            Integer i = this.strings.get(s);
+            
+            if (i != null) {
+                
+                this.record.putVarint(i + 2L);
+                return;
+            }
+            
+            this.strings.put(s, this.strings.size());
+            
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            
+            this.record.putVarint(1);
+            this.record.putVarint(bytes.length);
+            this.record.putBytes(bytes, bytes.length);
+        }
+        
+        /**
+         * Writes the record with its length, and returns its position
+         */
+        private long flushRecord() throws IOException {
+            
+            this.out.putVarint(this.record.size);
+            
+            long position = this.position();
+            
+            this.out.putBytes(this.record.bytes, this.record.size);
+            
+            if (this.out.size >= BUFFER) this.flush();
+            
+            return position;
+        }
+        
+        void flush() throws IOException {
+            
+            ByteBuffer buffer = ByteBuffer.wrap(this.out.bytes, 0, this.out.size);
+            
+            while (buffer.hasRemaining()) {
+                
+                this.channel.write(buffer);
+            }
+            
+            this.written += this.out.size;
+            this.out.clear();
+        }
+    }
+    
+    /**
+     * Decodes the records from a buffer refilled from the channel, or from a
+     * buffer holding a single record (without a channel). A whole record is
+     * in the buffer before it's decoded.
+     */
+    private static final class Decoder {
+        
+        private final FileChannel channel;
+        private final CustomerRegistry registry;
+        private ByteBuffer buffer;
+        
+        // Bytes read from the channel
+        private long read;
+        
+        private final DinArray<String> strings;
+        private final DinMap<Integer, ICustomer> customers;
+        
+        // Catalog and pool of the items and addresses decoded
+        private final ItemCatalog catalog;
+        private final AddressPool pool;
+        
+        Decoder(FileChannel channel, CustomerRegistry registry) {
+            
+            this(channel, registry, ByteBuffer.allocate(BUFFER).flip(), ItemCatalog.getDefault(), AddressPool.getDefault());
+        }
+        
+        Decoder(ByteBuffer record) {
+            
+            // An archived order is decoded again when it's used, its items and addresses aren't kept by the defaults
+            this(null, null, record, new ItemCatalog(), new AddressPool());
+        }
+        
+        private Decoder(FileChannel channel, CustomerRegistry registry, ByteBuffer buffer, ItemCatalog catalog, AddressPool pool) {
+            
+            this.channel = channel;
+            this.registry = registry;
+            this.buffer = buffer;
+            this.read = 0;
+            this.strings = new DinArray<>(String.class, 1024);
+            this.customers = new DinMap<>();
+            this.catalog = catalog;
+            this.pool = pool;
+        }
+        
+        void header(byte[] magic, String kind) throws IOException {
+            
+            this.fill(magic.length);
+            
+            byte[] found = new byte[magic.length];
+            this.buffer.get(found);
+            
+            if (!Arrays.equals(found, magic)) {
+                
+                throw new IOException("Not " + kind + " file");
+            }
+            
+            this.fill(1);
+            
+            int version = (int) this.varint();
+            
+            if (version != VERSION) {
+                
+                throw new IOException("Unsupported " + kind + " version: " + version);
+            }
+        }
+        
+        Order[] read() throws IOException, OrderException, ContainerException, PositionException {
+            
+            this.header(MAGIC, "a snapshot");
+            
+            DinArray<Order> orders = new DinArray<>(Order.class, 1024);
+            
+            while (true) {
+                
+                int length = this.record();
+                
+                if (length < 0) {
+                    
+                    throw new IOException("Truncated snapshot");
+                }
+                
+                int end = this.buffer.position() + length;
+                byte type = this.buffer.get();
+                
+                if (type == END) {
+                    
+                    long customers = this.varint(), count = this.varint();
+                    
+                    if (customers != this.customers.size() || count != orders.size()) {
+                        
+                        throw new IOException("Snapshot with " + this.customers.size() + " customers and " + orders.size() +
+                                " orders, expected " + customers + " and " + count);
+                    }
+                    
+                    return orders.toArray();
+                    
+                } else if (type == CUSTOMER) {
+                    
+                    this.customer();
+                    
+                } else if (type == ORDER) {
+                    
+                    orders.add(this.order(null));
+                    
+                } else {
+                    
+                    throw new IOException("Unknown snapshot record: " + type);
+                }
+                
+                if (this.buffer.position() != end) {
+                    
+                    throw new IOException("Snapshot record with a wrong length");
+                }
+            }
+        }
+        
+        /**
+         * Reads the entries of an archive, registering their customers and
+         * creating a handle for each order (the orders aren't decoded)
+         * 
+         * @return the position after the last whole entry
+         */
+        long scan(OrderArchive archive, DinArray<ArchivedOrder> orders) throws IOException {
+            
+            // An entry ends with the record of its order, after the record of its customer
+            long entry = this.position();
+            
+            while (true) {
+                
+                int length = this.record();
+                
+                // The end of the archive, or an entry that wasn't fully written
+                if (length < 0) return entry;
+                
+                long position = this.position();
+                int end = this.buffer.position() + length;
+                byte type = this.buffer.get();
+                
+                this.strings.clear();
+                
+                if (type == CUSTOMER) {
+                    
+                    this.customer();
+                    
+                } else if (type == ORDER) {
+                    
+                    int id = (int) this.signed();
+                    
+                    if ((this.buffer.get() & DATE) != 0) this.signed();
+                    
+                    long customer = this.varint();
+                    ICustomer c = customer != 0 ? this.customers.get((int) (customer - 1)) : null;
+                    
+                    if (customer != 0 && c == null) {
+                        
+                        throw new IOException("Archived order " + id + " with an unknown customer");
+                    }
+                    
+                    orders.add(new ArchivedOrder(archive, position, length, id, c));
+                    this.buffer.position(end);
+                    
+                    entry = this.position();
+                    
+                } else {
+                    
+                    throw new IOException("Unknown archive record: " + type);
+                }
+                
+                if (this.buffer.position() != end) {
+                    
+                    throw new IOException("Archive record with a wrong length");
+                }
+            }
+        }
+        
+        /**
+         * Decodes an archived order, from its record
+         * 
+         * @param customer customer of the order, kept by its handle
+         */
+        Order entry(ICustomer customer) throws IOException, OrderException, ContainerException, PositionException {
+            
+            if (this.buffer.get() != ORDER) {
+                
+                throw new IOException("Not an archived order record");
+            }
+            
+            return this.order(customer);
+        }
+        
+        private void customer() throws IOException {
+            
+            int id = (int) this.varint();
+            boolean registered = this.buffer.get() != 0;
+            String name = this.string(), vat = this.string();
+            Address address = this.address(), billing = this.address();
+            
+            // An archive has a record of the customer for each of its orders
+            if (this.customers.containsKey(id)) return;
+            
+            // The saved id may have been given to another customer, then the customer gets a new one
+            Customer customer = Customer.restore(id, name, address, billing);
+            customer.setVat(vat);
+            
+            if (registered) {
+                
+                customer = this.registry.register(customer);
+            }
+            
+            this.customers.put(id, customer);
+        }
+        
+        /**
+         * Decodes an order record
+         * 
+         * @param known customer of the order, if it's already known (the
+         * customers are found by their saved ids, that may have changed)
+         */
+        private Order order(ICustomer known) throws IOException, OrderException, ContainerException, PositionException {
+            
+            Order order = new Order();
+            
+            order.setId((int) this.signed());
+            
+            byte flags = this.buffer.get();
+            
+            if ((flags & DATE) != 0) {
+                
+                LocalDate date = LocalDate.ofEpochDay(this.signed());
+                order.setDate(date.getDayOfMonth(), date.getMonthValue(), date.getYear());
+            }
+            
+            long customer = this.varint();
+            
+            if (customer != 0) {
+                
+                ICustomer c = known != null ? known : this.customers.get((int) (customer - 1));
+                
+                if (c == null) {
+                    
+                    throw new IOException("Snapshot order " + order.getId() + " with an unknown customer");
+                }
+                
+                order.setCustomer(c);
+            }
+            
+            if (this.buffer.get() != 0) {
+                
+                String name = this.string();
+                order.setDestination(this.pool.person(name, this.address()));
+            }
+            
+            // The items are added before the shippings, so they aren't searched in them
+            Item[] items = new Item[(int) this.varint()];
+            
+            for (int i = 0; i < items.length; i++) {
+                
+                items[i] = this.item();
+                order.add(items[i]);
+            }
+            
+            int shippings = (int) this.varint();
+            
+            for (int s = 0; s < shippings; s++) {
+                
+                ShipmentStatus status = STATUSES[this.buffer.get()];
+                int containers = (int) this.varint();
+                Shipping shipping = new Shipping();
+                
+                // The containers are added IN_TREATMENT, as when they were packed
+                shipping.restoreStatus(ShipmentStatus.IN_TREATMENT);
+                
+                for (int c = 0; c < containers; c++) {
+                    
+                    shipping.addContainer(this.container(items));
+                }
+                
+                shipping.restoreStatus(status);
+                order.attach(shipping);
+            }
+            
+            if ((flags & CLOSED) != 0) order.restoreClosed();
+            
+            return order;
+        }
+        
+        private IContainer container(Item[] items) throws IOException, ContainerException, PositionException {
+            
+            byte kind = this.buffer.get();
+            String reference = this.string();
+            Color color = COLORS[this.buffer.get()], colorEdge = COLORS[this.buffer.get()];
+            boolean closed = this.buffer.get() != 0;
+            int n = (int) this.varint();
+            
+            IContainer container = kind == COMPACT_CONTAINER ?
+                    new CompactContainer(reference, color, colorEdge) :
+                    new Container(reference, color, colorEdge);
+                    
+            Color[] edges = new Color[n];
+            
+            for (int i = 0; i < n; i++) {
+                
+                int index = (int) this.varint();
+                Item item = index > 0 ? items[index - 1] : this.item();
+                Position position = new Position((int) this.signed(), (int) this.signed(), (int) this.signed());
+                
+                container.addItem(item, position, COLORS[this.buffer.get()]);
+                edges[i] = COLORS[this.buffer.get()];
+            }
+            
+            // The packed items are added with the same edge color
+            IItemPacked[] packed = container.getPackedItems();
+            
+            for (int i = 0; i < packed.length; i++) {
+                
+                if (packed[i].getColorEdge() != edges[i]) packed[i].setColorEdge(edges[i]);
+            }
+            
+            if (closed) container.close();
+            
+            return container;
+        }
+        
+        private Item item() throws IOException {
+            
+            String reference = this.string(), description = this.string();
+            int depth = (int) this.varint(), height = (int) this.varint(), length = (int) this.varint();
+            
+            return this.catalog.get(reference, description, depth, height, length);
+        }
+        
+        private Address address() throws IOException {
+            
+            if (this.buffer.get() == 0) return null;
+            
+            String street = this.string(), city = this.string(), country = this.string(), state = this.string();
+            
+            return this.pool.address(street, city, country, state, (int) this.signed());
+        }
+        
+        private String string() throws IOException {
+            
+            long i = this.varint();
+            
+            if (i == 0) return null;
+            
+            if (i > 1) {
+                
+                if (i - 2 >= this.strings.size()) {
+                    
+                    throw new IOException("Snapshot string out of the table: " + (i - 2));
+                }
+                
+                return this.strings.get((int) (i - 2));
+            }
+            
+            int length = (int) this.varint();
+            String s;
+            
+            if (this.buffer.hasArray()) {
+                
+                s = new String(this.buffer.array(), this.buffer.arrayOffset() + this.buffer.position(), length, StandardCharsets.UTF_8);
+                this.buffer.position(this.buffer.position() + length);
+                
+            } else {
+                
+                // A mapped buffer
+                byte[] bytes = new byte[length];
+                this.buffer.get(bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+            }
+            
+            this.strings.add(s);
+            
+            return s;
+        }
+        
+        private long signed() {
+            
+            long v = this.varint();
+            
+            return (v >>> 1) ^ -(v & 1);
+        }
+        
+        private long varint() {
+            
+            long v = 0;
+            
+            for (int shift = 0; ; shift += 7) {
+                
+                byte b = this.buffer.get();
+                v |= (long) (b & 0x7F) << shift;
+                
+                if (b >= 0) return v;
+            }
+        }
+        
+        /**
+         * Reads the length of the next record, byte by byte (it may be at the
+         * end of the buffer), and fills the buffer with the record
+         * 
+         * @return the length of the record, or -1 if the channel ends before
+         * the end of the record
+         */
+        private int record() throws IOException {
+            
+            long v = 0;
+            
+            for (int shift = 0; shift < 35; shift += 7) {
+                
+                if (!this.load(1)) return -1;
+                
+                byte b = this.buffer.get();
+                v |= (long) (b & 0x7F) << shift;
+                
+                if (b >= 0) {
+                    
+                    if (v > Integer.MAX_VALUE - 8) break;
+                    
+                    return this.load((int) v) ? (int) v : -1;
+                }
+            }
+            
+            throw new IOException("Invalid record length");
+        }
+        
+        /**
+         * Returns the position in the channel of the next byte decoded
+         */
+        private long position() {
+            
+            return this.read - this.buffer.remaining();
+        }
+        
+        private void fill(int n) throws IOException {
+            
+            if (!this.load(n)) {
+                
+                throw new IOException("Truncated snapshot");
+            }
+        }
+        
+        /**
+         * Reads from the channel until the buffer has n bytes, growing it if
+         * a record is larger than the buffer
+         * 
+         * @return false if the channel ends before
+         */
+        private boolean load(int n) throws IOException {
+            
+            if (this.buffer.remaining() >= n) return true;
+            
+            if (this.channel == null) return false;
+            
+            if (this.buffer.capacity() < n) {
+                
+                ByteBuffer larger = ByteBuffer.allocate(n);
+                larger.put(this.buffer);
+                this.buffer = larger;
+                
+            } else {
+                
+                this.buffer.compact();
+            }
+            
+            while (this.buffer.position() < n) {
+                
+                int count = this.channel.read(this.buffer);
+                
+                if (count < 0) {
+                    
+                    this.buffer.flip();
+                    return false;
+                }
+                
+                this.read += count;
+            }
+            
+            this.buffer.flip();
+            
+            return true;
+        }
+    }
+    
+    /**
+     * Growing array of bytes, with the encoding of varints
+     */
+    private static final class Bytes {
+        
+        private byte[] bytes;
+        private int size;
+        
+        Bytes(int capacity) {
+            
+            this.bytes = new byte[capacity];
+            this.size = 0;
+        }
+        
+        void clear() {
+            
+            this.size = 0;
+        }
+        
+        void putByte(int b) {
+            
+            this.ensure(1);
+            this.bytes[this.size++] = (byte) b;
+        }
+        
+        void putBytes(byte[] b, int length) {
+            
+            this.ensure(length);
+            System.arraycopy(b, 0, this.bytes, this.size, length);
+            this.size += length;
+        }
+        
+        void putVarint(long v) {
+            
+            this.ensure(10);
+            
+            while ((v & ~0x7FL) != 0) {
+                
+                this.bytes[this.size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            
+            this.bytes[this.size++] = (byte) v;
+        }
+        
+        void putSigned(long v) {
+            
+            this.putVarint((v << 1) ^ (v >> 63));
+        }
+        
+        private void ensure(int n) {
+            
+            if (this.size + n > this.bytes.length) {
+                
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(this.size + n, this.bytes.length * 2));
+            }
+        }
+    }
+    
+    private static boolean same(IItem a, IItem b) {
+        
+        return a == b || (a.getDepth() == b.getDepth() && a.getHeight() == b.getHeight() && a.getLenght() == b.getLenght() &&
+                Objects.equals(a.getDescription(), b.getDescription()));
+    }
+    
+}
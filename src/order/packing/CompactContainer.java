@@ -0,0 +1,677 @@
+package order.packing;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import order.exceptions.ContainerException;
+import order.exceptions.PositionException;
+import order.util.DinMap;
+import order.util.JSON;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONStreamAware;
+
+/**
+ * A container, with the same size and behaviour of {@link Container}, that
+ * stores the packed items in parallel arrays of primitives (one array for
+ * each coordinate, size and color) instead of an ItemPacked object with an
+ * Item and a Position for each item. The references and descriptions are
+ * interned, so the strings of the same item are shared.
+ * 
+ * The packed items are exposed as IItemPacked views created on demand. When
+ * an item is removed, the last item takes its place, so the order of the
+ * items isn't kept. {@link Packer#packCompact(IItem[])} packs items into
+ * compact containers.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class CompactContainer implements Packable, JSONAware, JSONStreamAware {
+    
+    private static final Color[] COLORS = Color.values();
+    
+    private final String reference;
+    private boolean closed;
+    private Color color, colorEdge;
+    
+    // Packed items, in the positions 0 to size - 1 of the arrays
+    private int size;
+    private int[] x, y, z, length, height, depth;
+    private byte[] colors, colorEdges;
+    private String[] references, descriptions;
+    private final DinMap<String, Integer> index;
+    
+    // Cells occupied by the items and the sum of their volumes
+    private final OccupancyGrid grid;
+    private int occupied;
+    
+    public CompactContainer(String reference, Color color, Color colorEdge) {
+        
+        this.reference = reference;
+        this.closed = false;
+        this.color = color;
+        this.colorEdge = colorEdge;
+        
+        this.size = 0;
+        this.resize(8);
+        this.index = new DinMap<>();
+        
+        this.grid = new OccupancyGrid(Container.length, Container.height, Container.depth);
+        this.occupied = 0;
+    }
+    
+    /**
+     * Adds a new packed item to the container considering the given item, position and color
+     * 
+     * @param item item to be added
+     * @param position position in which the item will be placed
+     * @param color color used for the item
+     * @return true if the item is inserted in the container, false if the item
+     * already exists in the container
+     * @throws ContainerException if any parameter is null or the container is closed
+     */
+    @Override
+    public boolean addItem(IItem item, IPosition position, Color color) throws ContainerException {
+        
+        // Throw a ContainerException if there is a null parameter
+        if (item == null || position == null || color == null) {
+            
+            throw new ContainerException() {
+                
+                @Override
+                public String getMessage() {
+                    return "trying to add an item with null parameter";
+                }
+            };
+        }
+        
+        // Throw ContainerException if the container is closed
+        if (this.closed) {
+            
+            throw new ContainerException() {
+                
+                @Override
+                public String getMessage() {
+                    return "the container is closed";
+                }
+            };
+        }
+        
+        String reference = item.getReference().intern();
+        
+        if (!this.index.putIfAbsent(reference, this.size)) {
+            
+            return false;
+        }
+        
+        if (this.size == this.x.length) {
+            
+            this.resize(this.size + (this.size >> 1));
+        }
+        
+        int i = this.size++;
+        
+        this.x[i] = position.getX();
+        this.y[i] = position.getY();
+        this.z[i] = position.getZ();
+        this.length[i] = item.getLenght();
+        this.height[i] = item.getHeight();
+        this.depth[i] = item.getDepth();
+        this.colors[i] = (byte) color.ordinal();
+        this.colorEdges[i] = (byte) color.ordinal();
+        this.references[i] = reference;
+        this.descriptions[i] = item.getDescription() != null ? item.getDescription().intern() : null;
+        
+        this.grid.add(this.x[i], this.y[i], this.z[i], this.length[i], this.height[i], this.depth[i]);
+        this.occupied += this.volume(i);
+        
+        return true;
+    }
+    
+    /**
+     * Removes an item from the container. The last item takes its place.
+     * 
+     * @param item to be removed
+     * @return true if the item is removed from the container, false if the
+     * item doesn't exist in the container
+     * @throws ContainerException if the parameter is null or the container is closed
+     */
+    @Override
+    public boolean removeItem(IItem item) throws ContainerException {
+        
+        // Throw a ContainerException if there is a null parameter
+        if (item == null) {
+            
+            throw new ContainerException() {
+                
+                @Override
+                public String getMessage() {
+                    return "trying to remove an item with null parameter";
+                }
+            };
+        }
+        
+        // Throw ContainerException if the container is closed
+        if (this.closed) {
+            
+            throw new ContainerException() {
+                
+                @Override
+                public String getMessage() {
+                    return "the container is closed";
+                }
+            };
+        }
+        
+        Integer slot = this.index.remove(item.getReference());
+        
+        if (slot == null) {
+            
+            return false;
+        }
+        
+        int i = slot, last = --this.size;
+        
+        this.grid.remove(this.x[i], this.y[i], this.z[i], this.length[i], this.height[i], this.depth[i]);
+        this.occupied -= this.volume(i);
+        
+        // Move the last item to the free position
+        if (i != last) {
+            
+            this.x[i] = this.x[last];
+            this.y[i] = this.y[last];
+            this.z[i] = this.z[last];
+            this.length[i] = this.length[last];
+            this.height[i] = this.height[last];
+            this.depth[i] = this.depth[last];
+            this.colors[i] = this.colors[last];
+            this.colorEdges[i] = this.colorEdges[last];
+            this.references[i] = this.references[last];
+            this.descriptions[i] = this.descriptions[last];
+            
+            this.index.put(this.references[i], i);
+        }
+        
+        this.references[last] = null;
+        this.descriptions[last] = null;
+        
+        return true;
+    }
+    
+    /**
+     * Validates the container structure considering:
+     * <ol>
+     * <li>if the volume if lesser or equal to the current volume</li>
+     * <li>if all items are inside the container</li>
+     * <li>if none of the items inside the container are overlapping</li>
+     * </ol>
+     * 
+     * @throws ContainerException if the volume greater than the current volume
+     * @throws PositionException if some item is outside (or is overflowing) the container or if some item is overlapping with other item
+     */
+    @Override
+    public void validate() throws ContainerException, PositionException {
+        
+        long start = Container.VALIDATE_TIMER.start();
+        boolean failed = true;
+        
+        try {
+            
+            this.check();
+            failed = false;
+            
+        } finally {
+            
+            Container.VALIDATE_TIMER.stop(start, 0, failed);
+        }
+    }
+    
+    /**
+     * Checks the volume, the limits and the overlapping of the items
+     */
+    private void check() throws ContainerException, PositionException {
+        
+        // Validate occupied volume if is lesser than the container volume
+        if (this.occupied > Container.volume) {
+            
+            throw new ContainerException() {
+                
+                @Override
+                public String getMessage() {
+                    return "the occupied volume is greater than the container's volume";
+                }
+            };
+        }
+        
+        // Validate if all items are inside the container, considering their size
+        for (int i = 0; i < this.size; i++) {
+            
+            if (this.x[i] < 0 || this.y[i] < 0 || this.z[i] < 0 ||
+                this.x[i] + this.length[i] > Container.length ||
+                this.y[i] + this.height[i] > Container.height ||
+                this.z[i] + this.depth[i] > Container.depth) {
+                    
+                String reference = this.references[i];
+                
+                throw new PositionException() {
+                    
+                    @Override
+                    public String getMessage() {
+                        return "the item " + reference + " is outside the container's limits";
+                    }
+                };
+            }
+        }
+        
+        // Validate if there aren't overlapped items in the container
+        int[] overlap = Overlap.find(this.size, this.x, this.y, this.z, this.length, this.height, this.depth);
+        
+        if (overlap != null) {
+            
+            String first = this.references[overlap[0]], second = this.references[overlap[1]];
+            
+            throw new PositionException() {
+                
+                @Override
+                public String getMessage() {
+                    return "the items " + first + " and " + second + " are overlapping";
+                }
+            };
+        }
+    }
+    
+    /**
+     * Close the container. Before closing the container, a validation procedure is performed.
+     * 
+     * @throws ContainerException if the volume greater than the current volume
+     * @throws PositionException if some item is outside (or is overflowing) the container or if some item is overlapping with other item
+     */
+    @Override
+    public void close() throws ContainerException, PositionException {
+        
+        this.validate();
+        this.closed = true;
+    }
+    
+    /**
+     * Returns a item with a given reference
+     * 
+     * @param reference (unique identifier) of the item
+     * @return the shared item with a given reference or null if doesn't exist
+     */
+    @Override
+    public IItem getItem(String reference) {
+        
+        Integer slot = this.index.get(reference);
+        
+        return slot != null ? this.item(slot) : null;
+    }
+    
+    /**
+     * Finds a free space for a box, as {@link Container#findFreeSpace(int, int, int)}
+     * 
+     * @param length size of the box on the x axis
+     * @param height size of the box on the y axis
+     * @param depth size of the box on the z axis
+     * @return the position, or null if there isn't free space for the box
+     */
+    @Override
+    public IPosition findFreeSpace(int length, int height, int depth) {
+        
+        int[] p = this.grid().find(length, height, depth);
+        
+        return p != null ? new Position(p[0], p[1], p[2]) : null;
+    }
+    
+    /**
+     * Checks if a box placed at a position is inside the container and
+     * doesn't overlap any item
+     * 
+     * @param position position of the box
+     * @param length size of the box on the x axis
+     * @param height size of the box on the y axis
+     * @param depth size of the box on the z axis
+     * @return true if the space of the box is free
+     */
+    public boolean isFree(IPosition position, int length, int height, int depth) {
+        
+        return this.grid().isFree(position.getX(), position.getY(), position.getZ(), length, height, depth);
+    }
+    
+    @Override
+    public int getOccupiedVolume() {
+        
+        return this.occupied;
+    }
+    
+    /**
+     * Returns views of the items packed in the container. The views read and
+     * write the arrays of the container, until the item is removed.
+     * 
+     * @return the items packed in the container
+     */
+    @Override
+    public IItemPacked[] getPackedItems() {
+        
+        IItemPacked[] packed = new IItemPacked[this.size];
+        
+        for (int i = 0; i < this.size; i++) {
+            
+            packed[i] = new Packed(this.references[i], i);
+        }
+        
+        return packed;
+    }
+    
+    @Override
+    public String getReference() {
+        
+        return this.reference;
+    }
+    
+    @Override
+    public int getNumberOfItems() {
+        
+        return this.size;
+    }
+    
+    @Override
+    public int getRemainingVolume() {
+        
+        return Container.volume - this.occupied;
+    }
+    
+    @Override
+    public boolean isClosed() {
+        
+        return this.closed;
+    }
+    
+    @Override
+    public int getDepth() {
+        
+        return Container.depth;
+    }
+    
+    @Override
+    public int getHeight() {
+        
+        return Container.height;
+    }
+    
+    @Override
+    public int getLenght() {
+        
+        return Container.length;
+    }
+    
+    @Override
+    public int getVolume() {
+        
+        return Container.volume;
+    }
+    
+    @Override
+    public Color getColor() {
+        
+        return this.color;
+    }
+    
+    @Override
+    public Color getColorEdge() {
+        
+        return this.colorEdge;
+    }
+    
+    @Override
+    public void setColor(Color color) {
+        
+        this.color = color;
+    }
+    
+    @Override
+    public void setColorEdge(Color color) {
+        
+        this.colorEdge = color;
+    }
+    
+    /**
+     * Create the container's JSON notation representation
+     * 
+     * @return container's JSON notation representation
+     */
+    @Override
+    public String toJSONString() {
+        
+        return JSON.toJSONString(this);
+    }
+    
+    /**
+     * Write the container's JSON notation representation, in the same format
+     * of {@link Container}
+     * 
+     * @param out writer
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
+        
+        out.write("{ \"volume\": ");
+        out.write(Integer.toString(Container.volume));
+        out.write(", \"reference\": ");
+        JSON.writeString(out, this.reference);
+        out.write(", \"depth\": ");
+        out.write(Integer.toString(Container.depth));
+        out.write(", \"color\": ");
+        JSON.writeString(out, this.color);
+        out.write(", \"length\": ");
+        out.write(Integer.toString(Container.length));
+        out.write(", \"closed\": ");
+        out.write(Boolean.toString(this.closed));
+        out.write(", \"colorEdge\": ");
+        JSON.writeString(out, this.colorEdge);
+        out.write(", \"items\": [ ");
+        
+        for (int i = 0; i < this.size; i++) {
+            
+            if (i > 0) out.write(", ");
+            
+            out.write("{ \"reference\": ");
+            JSON.writeString(out, this.references[i]);
+            out.write(", \"depth\": ");
+            out.write(Integer.toString(this.depth[i]));
+            out.write(", \"color\": ");
+            JSON.writeString(out, COLORS[this.colors[i]]);
+            out.write(", \"x\": ");
+            out.write(Integer.toString(this.x[i]));
+            out.write(", \"length\": ");
+            out.write(Integer.toString(this.length[i]));
+            out.write(", \"y\": ");
+            out.write(Integer.toString(this.y[i]));
+            out.write(", \"description\": ");
+            JSON.writeString(out, this.descriptions[i]);
+            out.write(", \"z\": ");
+            out.write(Integer.toString(this.z[i]));
+            out.write(", \"colorEdge\": ");
+            JSON.writeString(out, COLORS[this.colorEdges[i]]);
+            out.write(", \"height\": ");
+            out.write(Integer.toString(this.height[i]));
+            out.write(" }");
+        }
+        
+        out.write(" ], \"height\": ");
+        out.write(Integer.toString(Container.height));
+        out.write(", \"occupiedVolume\": ");
+        out.write(Integer.toString(this.occupied));
+        out.write(" }");
+    }
+    
+    private int volume(int i) {
+        
+        return this.length[i] * this.height[i] * this.depth[i];
+    }
+    
+    /**
+     * Returns the item of a slot: the shared one if it's in the catalog (an
+     * imported item), a new item otherwise. A read doesn't add items to the
+     * catalog.
+     */
+    private Item item(int i) {
+        
+        Item item = ItemCatalog.getDefault().find(this.references[i], this.descriptions[i], this.depth[i], this.height[i], this.length[i]);
+        
+        return item != null ? item : new Item(this.references[i], this.descriptions[i], this.depth[i], this.height[i], this.length[i]);
+    }
+    
+    private void resize(int capacity) {
+        
+        if (this.x == null) {
+            
+            this.x = new int[capacity];
+            this.y = new int[capacity];
+            this.z = new int[capacity];
+            this.length = new int[capacity];
+            this.height = new int[capacity];
+            this.depth = new int[capacity];
+            this.colors = new byte[capacity];
+            this.colorEdges = new byte[capacity];
+            this.references = new String[capacity];
+            this.descriptions = new String[capacity];
+            
+        } else {
+            
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.z = Arrays.copyOf(this.z, capacity);
+            this.length = Arrays.copyOf(this.length, capacity);
+            this.height = Arrays.copyOf(this.height, capacity);
+            this.depth = Arrays.copyOf(this.depth, capacity);
+            this.colors = Arrays.copyOf(this.colors, capacity);
+            this.colorEdges = Arrays.copyOf(this.colorEdges, capacity);
+            this.references = Arrays.copyOf(this.references, capacity);
+            this.descriptions = Arrays.copyOf(this.descriptions, capacity);
+        }
+    }
+    
+    /**
+     * Returns the occupancy grid, filling it again if it doesn't match the
+     * items (when an item overlapping other was removed or moved)
+     */
+    private OccupancyGrid grid() {
+        
+        if (!this.grid.isValid()) {
+            
+            this.grid.clear();
+            
+            for (int i = 0; i < this.size; i++) {
+                
+                this.grid.add(this.x[i], this.y[i], this.z[i], this.length[i], this.height[i], this.depth[i]);
+            }
+        }
+        
+        return this.grid;
+    }
+    
+    /**
+     * View of a packed item, that finds the item in the arrays by its reference
+     */
+    private final class Packed implements IItemPacked {
+        
+        private final String reference;
+        private int slot;
+        
+        Packed(String reference, int slot) {
+            
+            this.reference = reference;
+            this.slot = slot;
+        }
+        
+        /**
+         * Returns the position of the item in the arrays, which changes when
+         * other item is removed
+         * 
+         * @throws IllegalStateException if the item was removed from the container
+         */
+        private int slot() {
+            
+            CompactContainer c = CompactContainer.this;
+            
+            if (this.slot >= c.size || c.references[this.slot] != this.reference) {
+                
+                Integer slot = c.index.get(this.reference);
+                
+                if (slot == null || c.references[slot] != this.reference) {
+                    
+                    throw new IllegalStateException("The item " + this.reference + " was removed from the container");
+                }
+                
+                this.slot = slot;
+            }
+            
+            return this.slot;
+        }
+        
+        /**
+         * Getter for the item, the one shared by the item catalog if it's there
+         * 
+         * @return the item
+         */
+        @Override
+        public IItem getItem() {
+            
+            return CompactContainer.this.item(this.slot());
+        }
+        
+        /**
+         * Getter for a copy of the position, use setPosition to move the item
+         * 
+         * @return the position
+         */
+        @Override
+        public IPosition getPosition() {
+            
+            int i = this.slot();
+            CompactContainer c = CompactContainer.this;
+            
+            return new Position(c.x[i], c.y[i], c.z[i]);
+        }
+        
+        @Override
+        public void setPosition(IPosition position) {
+            
+            int i = this.slot();
+            CompactContainer c = CompactContainer.this;
+            
+            c.grid.remove(c.x[i], c.y[i], c.z[i], c.length[i], c.height[i], c.depth[i]);
+            
+            c.x[i] = position.getX();
+            c.y[i] = position.getY();
+            c.z[i] = position.getZ();
+            
+            c.grid.add(c.x[i], c.y[i], c.z[i], c.length[i], c.height[i], c.depth[i]);
+        }
+        
+        @Override
+        public Color getColor() {
+            
+            return COLORS[CompactContainer.this.colors[this.slot()]];
+        }
+        
+        @Override
+        public Color getColorEdge() {
+            
+            return COLORS[CompactContainer.this.colorEdges[this.slot()]];
+        }
+        
+        @Override
+        public void setColor(Color color) {
+            
+            CompactContainer.this.colors[this.slot()] = (byte) color.ordinal();
+        }
+        
+        @Override
+        public void setColorEdge(Color color) {
+            
+            CompactContainer.this.colorEdges[this.slot()] = (byte) color.ordinal();
+        }
+    }
+    
+}
@@ -1,20 +1,36 @@
 package order.packing;
 
+import java.io.IOException;
+import java.io.Writer;
 import order.exceptions.ContainerException;
 import order.exceptions.PositionException;
 import order.util.DinArray;
+import order.util.DinMap;
+import order.util.JSON;
+import order.util.Metrics;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONStreamAware;
 
 /**
  * Represent's a container for shipment
  * 
  * @author Filipe Certal (filipe.certal@gmail.com)
  */
-public class Container implements IContainer {
+public class Container implements Packable, JSONAware, JSONStreamAware {
     
             
-    private static final int depth = 5, height = 5, length = 5, volume = 5;
+    static final int depth = 5, height = 5, length = 5, volume = depth * height * length;
+    
+    // Shared with CompactContainer
+    static final Metrics.Timer VALIDATE_TIMER = Metrics.getDefault().timer("container.validate");
         
     private DinArray<ItemPacked> items;
+    // Position of each packed item in items, by the reference of the item
+    private DinMap<String, Integer> index;
+    
+    // Cells occupied by the items and the sum of their volumes
+    private final OccupancyGrid grid;
+    private int occupied;
     
     private final String reference;
     private boolean closed;
@@ -27,6 +43,10 @@ public class Container implements IContainer {
         this.colorEdge = colorEdge;
         
         this.items = new DinArray<>(ItemPacked.class);
+        this.index = new DinMap<>();
+        
+        this.grid = new OccupancyGrid(Container.length, Container.height, Container.depth);
+        this.occupied = 0;
         
         this.reference = reference;
         this.closed = false;
@@ -56,7 +76,7 @@ public class Container implements IContainer {
         // Throw a ContainerException if there is a null parameter
         if (item == null || position == null || color == null ) {
             
-            new ContainerException() {
+            throw new ContainerException() {
         
                 @Override
                 public String getMessage() {
@@ -68,7 +88,7 @@ public class Container implements IContainer {
         // Throw ContainerException if the container is closed
         if (this.isClosed()) {
             
-            new ContainerException() {
+            throw new ContainerException() {
         
                 @Override
                 public String getMessage() {
@@ -78,17 +98,20 @@ public class Container implements IContainer {
         }
         
         // Verify if the item doesn't exists in the container,
-        // comparing it's reference with the other item's references
-        for (ItemPacked ip : this.items) {
-               
-            if (ip.getItem().getReference().equals(item.getReference())) {
-                
-                return false;
-            }
+        // looking up it's reference in the items index
+        if (this.index.containsKey(item.getReference())) {
+            
+            return false;
         }
         
         // Insert the item packed in the container
-        this.items.add( new ItemPacked((Item)item, (Position)position, color, color) );
+        ItemPacked ip = new ItemPacked((Item)item, (Position)position, color, color);
+        
+        this.index.put(item.getReference(), this.items.size());
+        this.items.add(ip);
+        
+        ip.addTo(this.grid);
+        this.occupied += ip.getItem().getVolume();
         
         return true; 
     }
@@ -114,7 +137,7 @@ public class Container implements IContainer {
         // Throw a ContainerException if there is a null parameter
         if (item == null) {
             
-            new ContainerException() {
+            throw new ContainerException() {
         
                 @Override
                 public String getMessage() {
@@ -126,7 +149,7 @@ public class Container implements IContainer {
         // Throw ContainerException if the container is closed
         if (this.isClosed()) {
             
-            new ContainerException() {
+            throw new ContainerException() {
         
                 @Override
                 public String getMessage() {
@@ -136,17 +159,26 @@ public class Container implements IContainer {
         }
         
         // Verify if the item does exists in the container,
-        // comparing it's reference with the other item's reference
-        for (ItemPacked ip : this.items) {
-               
-            if (ip.getItem().getReference().equals(item.getReference())) {
-                
-                // Remove the item from list.
-                return this.items.remove(ip);
-            }
+        // looking up it's reference in the items index
+        Integer i = this.index.remove(item.getReference());
+        
+        if (i == null) {
+            
+            return false;
+        }
+        
+        // Remove the item from list, moving the last item to its position
+        ItemPacked ip = this.items.swapRemove(i);
+        
+        if (i < this.items.size()) {
+            
+            this.index.put(this.items.get(i).getItem().getReference(), i);
         }
         
-        return false;
+        ip.removeFrom(this.grid);
+        this.occupied -= ip.getItem().getVolume();
+        
+        return true;
     }
 
     /**
@@ -163,10 +195,29 @@ public class Container implements IContainer {
     @Override
     public void validate() throws ContainerException, PositionException {
         
+        long start = Container.VALIDATE_TIMER.start();
+        boolean failed = true;
+        
+        try {
+            
+            this.check();
+            failed = false;
+            
+        } finally {
+            
+            Container.VALIDATE_TIMER.stop(start, 0, failed);
+        }
+    }
+    
+    /**
+     * Checks the volume, the limits and the overlapping of the items
+     */
+    private void check() throws ContainerException, PositionException {
+        
         // Validate occupied volume if is lesser than the container volume
         if (this.getOccupiedVolume() > Container.volume) {
             
-            new ContainerException() {
+            throw new ContainerException() {
         
                 @Override
                 public String getMessage() {
@@ -175,43 +226,55 @@ public class Container implements IContainer {
             };    
         }
         
-        // Validate if all items are inside the container
-        
-        int maxX = 0, maxY = 0, maxZ = 0;
+        // Validate if all items are inside the container, considering their size
+        int n = this.items.size();
+        int[] x = new int[n], y = new int[n], z = new int[n],
+              l = new int[n], h = new int[n], d = new int[n];
         
-        for (ItemPacked item : this.items) {
+        for (int i = 0; i < n; i++) {
             
-            if (item.getPosition().getX() > maxX) {
-                
-                maxX = item.getPosition().getX();
-            }
+            ItemPacked item = this.items.get(i);
+            Position position = item.position();
+            IItem box = item.getItem();
             
-            if (item.getPosition().getY() > maxY) {
-                
-                maxY = item.getPosition().getY();
-            }
+            x[i] = position.getX();
+            y[i] = position.getY();
+            z[i] = position.getZ();
+            l[i] = box.getLenght();
+            h[i] = box.getHeight();
+            d[i] = box.getDepth();
             
-            if (item.getPosition().getZ() > maxZ) {
+            if (x[i] < 0 || y[i] < 0 || z[i] < 0 ||
+                x[i] + l[i] > Container.length || y[i] + h[i] > Container.height || z[i] + d[i] > Container.depth) {
+                
+                String reference = box.getReference();
                 
-                maxZ = item.getPosition().getZ();
+                throw new PositionException() {
+                    
+                    @Override
+                    public String getMessage() {
+                        return "the item " + reference + " is outside the container's limits";
+                    }
+                }; 
             }
         }
         
-        if (maxX > Container.length || maxY > Container.height || maxZ > Container.depth) {
+        // Validate if theren't overlaped items in the container
+        int[] overlap = Overlap.find(n, x, y, z, l, h, d);
+        
+        if (overlap != null) {
             
-            new PositionException() {
+            String first = this.items.get(overlap[0]).getItem().getReference(),
+                   second = this.items.get(overlap[1]).getItem().getReference();
+                   
+            throw new PositionException() {
         
                 @Override
                 public String getMessage() {
-                    return "some item is outside the container's limits";
+                    return "the items " + first + " and " + second + " are overlapping";
                 }
-            }; 
+            };
         }
-             
-        // Validate if theren't overlaped items in the container
-        // TODO: overlaping validation
-        
-        
     }
 
     /**
@@ -236,15 +299,9 @@ public class Container implements IContainer {
     @Override
     public IItem getItem(String reference) {
 
-        for (ItemPacked item : this.items) {
-            
-            if (item.getItem().getReference().equals(reference)) {
-                
-                return item.getItem();
-            }       
-        }
+        Integer i = this.index.get(reference);
         
-        return null;
+        return i != null ? this.items.get(i).getItem() : null;
     }
 
     /**
@@ -254,14 +311,61 @@ public class Container implements IContainer {
      */
     @Override
     public int getOccupiedVolume() {
-        int occupied = 0;
         
-        for (ItemPacked item : this.items) {
+        return this.occupied;
+    }
+    
+    /**
+     * Finds a free space for a box: the lowest position (then the most
+     * backward and leftmost) where the box is inside the container and
+     * doesn't overlap any item
+     * 
+     * @param length size of the box on the x axis
+     * @param height size of the box on the y axis
+     * @param depth size of the box on the z axis
+     * @return the position, or null if there isn't free space for the box
+     */
+    @Override
+    public IPosition findFreeSpace(int length, int height, int depth) {
+        
+        int[] p = this.grid().find(length, height, depth);
+        
+        return p != null ? new Position(p[0], p[1], p[2]) : null;
+    }
+    
+    /**
+     * Checks if a box placed at a position is inside the container and
+     * doesn't overlap any item
+     * 
+     * @param position position of the box
+     * @param length size of the box on the x axis
+     * @param height size of the box on the y axis
+     * @param depth size of the box on the z axis
+     * @return true if the space of the box is free
+     */
+    public boolean isFree(IPosition position, int length, int height, int depth) {
+        
+        return this.grid().isFree(position.getX(), position.getY(), position.getZ(), length, height, depth);
+    }
+    
+    /**
+     * Returns the occupancy grid, filling it again if it doesn't match the
+     * items (when an item overlapping other was removed or moved). The items
+     * are moved in the grid by ItemPacked.setPosition.
+     */
+    private OccupancyGrid grid() {
+        
+        if (!this.grid.isValid()) {
             
-            occupied += item.getItem().getVolume();
+            this.grid.clear();
+            
+            for (ItemPacked item : this.items) {
+                
+                item.addTo(this.grid);
+            }
         }
         
-        return occupied;
+        return this.grid;
     }
 
     /**
@@ -370,7 +474,8 @@ public class Container implements IContainer {
      */
     @Override
     public Color getColor() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        
+        return this.color;
     }
     
     /**
@@ -380,7 +485,8 @@ public class Container implements IContainer {
      */
     @Override
     public Color getColorEdge() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        
+        return this.colorEdge;
     }
 
     /**
@@ -408,30 +514,52 @@ public class Container implements IContainer {
      * 
      * @return container's packed JSON notation representation
      */
+    @Override
     public String toJSONString() {
+        
+        return JSON.toJSONString(this);
+    }
+    
+    /**
+     * Write the container's packed JSON notation representation, streaming
+     * the packed items to the writer
+     * 
+     * @param out writer
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
        
-        String json =  "{ " +
-                "\"volume\": " + Container.volume + ", " +   
-                "\"reference\": \"" + this.reference + "\", " +
-                "\"depth\": " + Container.depth + ", " +
-                "\"color\": \"" + this.color + "\", " +
-                "\"length\": " + Container.length + ", " +
-                "\"closed\": " + this.closed + ", " +
-                "\"colorEdge\": \"" + this.colorEdge + "\", " +
-                "\"items\": [ ";
+        out.write("{ \"volume\": ");
+        out.write(Integer.toString(Container.volume));
+        out.write(", \"reference\": ");
+        JSON.writeString(out, this.reference);
+        out.write(", \"depth\": ");
+        out.write(Integer.toString(Container.depth));
+        out.write(", \"color\": ");
+        JSON.writeString(out, this.color);
+        out.write(", \"length\": ");
+        out.write(Integer.toString(Container.length));
+        out.write(", \"closed\": ");
+        out.write(Boolean.toString(this.closed));
+        out.write(", \"colorEdge\": ");
+        JSON.writeString(out, this.colorEdge);
+        out.write(", \"items\": [ ");
         
         String separator = "";
         
         for (ItemPacked item : this.items) {
             
-            json += separator + item.toJSONString();
+            out.write(separator);
+            item.writeJSONString(out);
             
             separator = ", ";
         }
-                
-        return json + " ], " +
-                "\"height\": " + Container.height + ", " +
-                "\"occupiedVolume\": " + this.getOccupiedVolume() +
-                " }";
+        
+        out.write(" ], \"height\": ");
+        out.write(Integer.toString(Container.height));
+        out.write(", \"occupiedVolume\": ");
+        out.write(Integer.toString(this.getOccupiedVolume()));
+        out.write(" }");
     }
 }
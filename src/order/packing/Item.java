@@ -1,15 +1,24 @@
 package order.packing;
 
+import java.io.IOException;
+import java.io.Writer;
+import order.util.JSON;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONStreamAware;
+
 /**
  * Represents an item on the system
  * 
  * @author Filipe Certal (filipe.certal@gmail.com)
  */
-public class Item implements IItem {
+public class Item implements IItem, JSONAware, JSONStreamAware {
     
     private String reference, description;
     private int depth, height, length, volume;
     
+    // Shared by the item catalog, so the description can't be changed
+    private final boolean frozen;
+    
     /**
      * Item's instance constructor
      * 
@@ -21,12 +30,18 @@ public class Item implements IItem {
      */
     public Item(String reference, String description, int depth, int height, int length) {
         
+        this(reference, description, depth, height, length, false);
+    }
+    
+    Item(String reference, String description, int depth, int height, int length, boolean frozen) {
+        
         this.reference = reference;
         this.description = description;
         this.depth = depth;
         this.height = height;
         this.length = length;
         this.volume = depth * height * length;
+        this.frozen = frozen;
     }
     
     
@@ -56,12 +71,29 @@ public class Item implements IItem {
      * Setter for the item description
      * 
      * @param description a textual description for the item 
+     * @throws UnsupportedOperationException if the item is frozen (shared by
+     * the item catalog, as the items of the imported orders)
      */
     @Override
     public void setDescription(String description) {
         
+        if (this.frozen) {
+            
+            throw new UnsupportedOperationException("The item " + this.reference + " is shared and can't be changed");
+        }
+        
         this.description = description;
     }
+    
+    /**
+     * Checks if the item is shared by the item catalog, and can't be changed
+     * 
+     * @return true if the item is frozen
+     */
+    public boolean isFrozen() {
+        
+        return this.frozen;
+    }
 
     /**
      * Getter of depth
@@ -112,14 +144,31 @@ public class Item implements IItem {
      * 
      * @return item's JSON notation representation
      */
+    @Override
     public String toJSONString() {
         
-        return "{\n" +
-               "\"reference\": \"" + this.reference + "\",\n" +
-               "\"depth\": " + this.depth + ",\n" +
-               "\"length\": " + this.length + ",\n" +
-               "\"description\": \"" + this.description + "\",\n" +
-               "\"height\": " + this.height + ",\n" +
-                "}";
+        return JSON.toJSONString(this);
+    }
+    
+    /**
+     * Write the item's JSON notation representation
+     * 
+     * @param out writer
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
+        
+        out.write("{\n\"reference\": ");
+        JSON.writeString(out, this.reference);
+        out.write(",\n\"depth\": ");
+        out.write(Integer.toString(this.depth));
+        out.write(",\n\"length\": ");
+        out.write(Integer.toString(this.length));
+        out.write(",\n\"description\": ");
+        JSON.writeString(out, this.description);
+        out.write(",\n\"height\": ");
+        out.write(Integer.toString(this.height));
+        out.write("\n}");
     }
 }
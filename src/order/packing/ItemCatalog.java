@@ -0,0 +1,124 @@
+package order.packing;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Catalog of shared items, keyed by reference. The same item (reference,
+ * description and sizes) appears in many orders and containers, so the
+ * catalog hands out a single frozen instance of it instead of a new copy
+ * each time. The description of a frozen item can't be changed, so it can
+ * be shared safely (also between threads).
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public final class ItemCatalog {
+    
+    private static final ItemCatalog DEFAULT = new ItemCatalog();
+    
+    private final ConcurrentHashMap<String, Item> items;
+    
+    public ItemCatalog() {
+        
+        this.items = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Getter for the catalog used by the importers and the containers
+     * 
+     * @return the default catalog
+     */
+    public static ItemCatalog getDefault() {
+        
+        return ItemCatalog.DEFAULT;
+    }
+    
+    /**
+     * Returns the shared item with the given fields. If an item with the
+     * same reference but other description or sizes is already in the
+     * catalog, a new frozen item is returned (and not shared).
+     * 
+     * @param reference item's reference
+     * @param description item's description
+     * @param depth item's depth
+     * @param height item's height
+     * @param length item's length
+     * @return a frozen item with the given fields
+     */
+    public Item get(String reference, String description, int depth, int height, int length) {
+        
+        // Look up first, most items are already in the catalog
+        Item item = this.items.get(reference);
+        
+        if (item == null) {
+            
+            item = this.items.computeIfAbsent(reference, r -> new Item(r, description, depth, height, length, true));
+        }
+        
+        if (ItemCatalog.matches(item, description, depth, height, length)) {
+            
+            return item;
+        }
+        
+        return new Item(reference, description, depth, height, length, true);
+    }
+    
+    /**
+     * Returns the shared item with the given fields, without adding it to
+     * the catalog if it isn't there (for the items rebuilt to be read)
+     * 
+     * @param reference item's reference
+     * @param description item's description
+     * @param depth item's depth
+     * @param height item's height
+     * @param length item's length
+     * @return the frozen item with the given fields, or null if it isn't in the catalog
+     */
+    public Item find(String reference, String description, int depth, int height, int length) {
+        
+        Item item = this.items.get(reference);
+        
+        return item != null && ItemCatalog.matches(item, description, depth, height, length) ? item : null;
+    }
+    
+    /**
+     * Returns the shared item equal to the given one, or the item itself if
+     * it's already frozen
+     * 
+     * @param item item to be shared
+     * @return a frozen item equal to the given item
+     */
+    public Item intern(IItem item) {
+        
+        if (item instanceof Item && ((Item) item).isFrozen()) {
+            
+            return (Item) item;
+        }
+        
+        return this.get(item.getReference(), item.getDescription(), item.getDepth(), item.getHeight(), item.getLenght());
+    }
+    
+    /**
+     * Getter for the number of items in the catalog
+     * 
+     * @return number of items
+     */
+    public int size() {
+        
+        return this.items.size();
+    }
+    
+    /**
+     * Removes all the items from the catalog. The items handed out remain frozen.
+     */
+    public void clear() {
+        
+        this.items.clear();
+    }
+    
+    private static boolean matches(Item item, String description, int depth, int height, int length) {
+        
+        return item.getDepth() == depth && item.getHeight() == height && item.getLenght() == length &&
+               (item.getDescription() == null ? description == null : item.getDescription().equals(description));
+    }
+    
+}
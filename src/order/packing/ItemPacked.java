@@ -1,16 +1,26 @@
 package order.packing;
 
+import java.io.IOException;
+import java.io.Writer;
+import order.util.JSON;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONStreamAware;
+
 /**
  * Represent's an Item Packed on a Container, with a Position, Color and ColorEdge
  * 
  * @author Filipe Certal (filipe.certal@gmail.com)
  */
-public class ItemPacked implements IItemPacked {
+public class ItemPacked implements IItemPacked, JSONAware, JSONStreamAware {
     
     private final Item item;
     private Position position;
     private Color color, colorEdge;
     
+    // Occupancy grid of the container where the item is marked, updated
+    // when the item is moved
+    private OccupancyGrid grid;
+    
     /**
      * 
      * Item's Packed instance constructor
@@ -22,7 +32,9 @@ public class ItemPacked implements IItemPacked {
      */
     public ItemPacked(Item item, Position position, Color color, Color colorEdge) {
         
-        this.item = new Item(item.getReference(), item.getDescription(), item.getDepth(), item.getHeight(), item.getLenght());
+        // A frozen item (imported) is shared, any other is copied, so the
+        // item of the container can be changed as before
+        this.item = item.isFrozen() ? item : new Item(item.getReference(), item.getDescription(), item.getDepth(), item.getHeight(), item.getLenght());
         this.position = new Position(position.getX(), position.getY(), position.getZ());
         this.color = color;
         this.colorEdge = colorEdge;
@@ -40,25 +52,47 @@ public class ItemPacked implements IItemPacked {
     }
 
     /**
-     * Getter for the packing Position
+     * Getter for a copy of the packing Position, use setPosition to move the
+     * item (the occupancy grid of the container is updated by setPosition)
      * 
      * @return packing Position
      */
     @Override
     public IPosition getPosition() {
         
-        return this.position;
+        return new Position(this.position.getX(), this.position.getY(), this.position.getZ());
     }
 
     /**
-     * Setter for the packing Position
+     * Setter for the packing Position, that moves the item in the occupancy
+     * grid of its container
      * 
      * @param position packing Position
      */
     @Override
     public void setPosition(IPosition position) {
         
-        this.position = (Position) position;
+        if (this.grid != null) {
+            
+            this.grid.remove(this.position.getX(), this.position.getY(), this.position.getZ(), this.item.getLenght(), this.item.getHeight(), this.item.getDepth());
+        }
+        
+        this.position = new Position(position.getX(), position.getY(), position.getZ());
+        
+        if (this.grid != null) {
+            
+            this.grid.add(this.position.getX(), this.position.getY(), this.position.getZ(), this.item.getLenght(), this.item.getHeight(), this.item.getDepth());
+        }
+    }
+    
+    /**
+     * Getter for the packing Position itself, read by the container
+     * 
+     * @return packing Position
+     */
+    Position position() {
+        
+        return this.position;
     }
 
     /**
@@ -104,24 +138,69 @@ public class ItemPacked implements IItemPacked {
         this.colorEdge = color;
     }
     
+    /**
+     * Marks the item in the occupancy grid of its container, at its current
+     * position, and keeps the grid to move the item in it
+     * 
+     * @param grid occupancy grid of the container
+     */
+    void addTo(OccupancyGrid grid) {
+        
+        this.grid = grid;
+        grid.add(this.position.getX(), this.position.getY(), this.position.getZ(), this.item.getLenght(), this.item.getHeight(), this.item.getDepth());
+    }
+    
+    /**
+     * Frees the cells of the item in the occupancy grid of its container
+     * 
+     * @param grid occupancy grid of the container
+     */
+    void removeFrom(OccupancyGrid grid) {
+        
+        grid.remove(this.position.getX(), this.position.getY(), this.position.getZ(), this.item.getLenght(), this.item.getHeight(), this.item.getDepth());
+        this.grid = null;
+    }
+    
     /**
      * Create the item's packed JSON notation representation
      * 
      * @return item's packed JSON notation representation
      */
+    @Override
     public String toJSONString() {
         
-        return "{ " +
-               "\"reference\": \"" + this.item.getReference() + "\", " +
-               "\"depth\": " + this.item.getDepth() + ", " +
-               "\"color\": \"" + this.color.toString() + "\", " +
-               "\"x\": " + this.position.getX() + ", " +
-               "\"length\": " + this.item.getLenght() + ", " +
-               "\"y\": " + this.position.getY() + ", " +  
-               "\"description\": \"" + this.item.getDescription() + "\", " +
-               "\"z\": " + this.position.getZ() + ", " +
-               "\"colorEdge\": \"" + this.colorEdge.toString() + "\", " +
-               "\"height\": " + this.item.getHeight() + 
-                " }";
+        return JSON.toJSONString(this);
+    }
+    
+    /**
+     * Write the item's packed JSON notation representation
+     * 
+     * @param out writer
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
+        
+        out.write("{ \"reference\": ");
+        JSON.writeString(out, this.item.getReference());
+        out.write(", \"depth\": ");
+        out.write(Integer.toString(this.item.getDepth()));
+        out.write(", \"color\": ");
+        JSON.writeString(out, this.color);
+        out.write(", \"x\": ");
+        out.write(Integer.toString(this.position.getX()));
+        out.write(", \"length\": ");
+        out.write(Integer.toString(this.item.getLenght()));
+        out.write(", \"y\": ");
+        out.write(Integer.toString(this.position.getY()));
+        out.write(", \"description\": ");
+        JSON.writeString(out, this.item.getDescription());
+        out.write(", \"z\": ");
+        out.write(Integer.toString(this.position.getZ()));
+        out.write(", \"colorEdge\": ");
+        JSON.writeString(out, this.colorEdge);
+        out.write(", \"height\": ");
+        out.write(Integer.toString(this.item.getHeight()));
+        out.write(" }");
     }  
 }
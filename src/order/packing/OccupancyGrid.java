@@ -0,0 +1,207 @@
+package order.packing;
+
+import java.util.Arrays;
+
+/**
+ * Voxel grid of the occupied space of a container, one bit per unit cube.
+ * Each row of cells along the x axis is a long, so a row is tested or
+ * filled with a mask instead of cell by cell.
+ * 
+ * The grid is updated when boxes are added and removed. Boxes outside the
+ * grid are clipped, and overlapping boxes can't be removed by clearing
+ * their cells (the other box still covers them), so in that case the grid
+ * becomes invalid and must be cleared and filled again before a query.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+final class OccupancyGrid {
+    
+    private final int length, height, depth;
+    private final long[] rows;
+    
+    // If two boxes share cells, and if the cells match the boxes added
+    private boolean shared, valid;
+    
+    /**
+     * OccupancyGrid's instance constructor
+     * 
+     * @param length size on the x axis (up to 64)
+     * @param height size on the y axis
+     * @param depth size on the z axis
+     */
+    OccupancyGrid(int length, int height, int depth) {
+        
+        if (length < 1 || length > Long.SIZE || height < 1 || depth < 1) {
+            
+            throw new IllegalArgumentException("Illegal grid size: " + length + "x" + height + "x" + depth);
+        }
+        
+        this.length = length;
+        this.height = height;
+        this.depth = depth;
+        this.rows = new long[height * depth];
+        this.shared = false;
+        this.valid = true;
+    }
+    
+    /**
+     * Marks the cells covered by a box as occupied
+     */
+    void add(int x, int y, int z, int l, int h, int d) {
+        
+        if (this.fill(x, y, z, l, h, d, true)) {
+            
+            this.shared = true;
+        }
+    }
+    
+    /**
+     * Marks the cells covered by a box as free, if no other box covers them
+     */
+    void remove(int x, int y, int z, int l, int h, int d) {
+        
+        if (this.shared) {
+            
+            this.valid = false;
+            
+        } else if (this.valid) {
+            
+            this.fill(x, y, z, l, h, d, false);
+        }
+    }
+    
+    /**
+     * Checks if the cells match the boxes added, which is false after
+     * removing a box that overlapped other
+     */
+    boolean isValid() {
+        
+        return this.valid;
+    }
+    
+    /**
+     * Frees all the cells, making the grid valid
+     */
+    void clear() {
+        
+        Arrays.fill(this.rows, 0);
+        this.shared = false;
+        this.valid = true;
+    }
+    
+    /**
+     * Checks if a box is inside the grid and all its cells are free
+     */
+    boolean isFree(int x, int y, int z, int l, int h, int d) {
+        
+        if (x < 0 || y < 0 || z < 0 || l < 1 || h < 1 || d < 1 ||
+            x + l > this.length || y + h > this.height || z + d > this.depth) {
+                
+            return false;
+        }
+        
+        long mask = OccupancyGrid.mask(x, l);
+        
+        for (int j = y; j < y + h; j++) {
+            for (int k = z; k < z + d; k++) {
+                
+                if ((this.rows[j * this.depth + k] & mask) != 0) return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Finds the lowest, then most backward, then leftmost position where a
+     * box fits in free cells
+     * 
+     * @return the position as x, y and z, or null if the box doesn't fit
+     */
+    int[] find(int l, int h, int d) {
+        
+        if (l < 1 || h < 1 || d < 1 || l > this.length || h > this.height || d > this.depth) {
+            
+            return null;
+        }
+        
+        long inside = OccupancyGrid.mask(0, this.length - l + 1);
+        
+        for (int y = 0; y + h <= this.height; y++) {
+            for (int z = 0; z + d <= this.depth; z++) {
+                
+                // Cells occupied in any row under the box
+                long occupied = 0;
+                
+                for (int j = y; j < y + h; j++) {
+                    for (int k = z; k < z + d; k++) {
+                        
+                        occupied |= this.rows[j * this.depth + k];
+                    }
+                }
+                
+                // Bit x is set if the cells x to x + l - 1 are free
+                long free = ~occupied, start = free;
+                
+                for (int i = 1; i < l && start != 0; i++) {
+                    
+                    start &= free >>> i;
+                }
+                
+                start &= inside;
+                
+                if (start != 0) {
+                    
+                    return new int[] { Long.numberOfTrailingZeros(start), y, z };
+                }
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Sets or clears the cells of a box, clipped to the grid
+     * 
+     * @return true if a cell set was already occupied
+     */
+    private boolean fill(int x, int y, int z, int l, int h, int d, boolean occupied) {
+        
+        int x0 = Math.max(0, x), x1 = Math.min(this.length, x + l),
+            y0 = Math.max(0, y), y1 = Math.min(this.height, y + h),
+            z0 = Math.max(0, z), z1 = Math.min(this.depth, z + d);
+            
+        if (x0 >= x1) return false;
+        
+        long mask = OccupancyGrid.mask(x0, x1 - x0);
+        boolean overlap = false;
+        
+        for (int j = y0; j < y1; j++) {
+            for (int k = z0; k < z1; k++) {
+                
+                int row = j * this.depth + k;
+                
+                if (occupied) {
+                    
+                    overlap |= (this.rows[row] & mask) != 0;
+                    this.rows[row] |= mask;
+                    
+                } else {
+                    
+                    this.rows[row] &= ~mask;
+                }
+            }
+        }
+        
+        return overlap;
+    }
+    
+    /**
+     * Returns a mask with the bits from x to x + l - 1 set
+     */
+    private static long mask(int x, int l) {
+        
+        return (l >= Long.SIZE ? -1L : (1L << l) - 1) << x;
+    }
+    
+}
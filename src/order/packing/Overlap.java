@@ -0,0 +1,148 @@
+package order.packing;
+
+/**
+ * Search for overlapping boxes (axis-aligned, with integer coordinates) using
+ * a uniform grid. The space is split in cells with about the average size of
+ * the boxes, each box is registered in the cells it covers, and only the
+ * boxes that share a cell are compared. For packings of boxes of similar
+ * sizes each cell holds a few boxes, so the search is about O(n) instead
+ * of the O(n²) pairwise check.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+final class Overlap {
+    
+    private Overlap() {
+    }
+    
+    /**
+     * Finds two overlapping boxes. The coordinates must not be negative, and
+     * boxes without volume never overlap.
+     * 
+     * @param n number of boxes
+     * @param x x coordinates
+     * @param y y coordinates
+     * @param z z coordinates
+     * @param length sizes on the x axis
+     * @param height sizes on the y axis
+     * @param depth sizes on the z axis
+     * @return the indexes of two overlapping boxes, or null if none overlap
+     */
+    static int[] find(int n, int[] x, int[] y, int[] z, int[] length, int[] height, int[] depth) {
+        
+        // Boxes with volume, and the extent and average size of the boxes
+        int[] boxes = new int[n];
+        int m = 0;
+        long sumX = 0, sumY = 0, sumZ = 0;
+        int maxX = 0, maxY = 0, maxZ = 0;
+        
+        for (int i = 0; i < n; i++) {
+            
+            if (length[i] > 0 && height[i] > 0 && depth[i] > 0) {
+                
+                boxes[m++] = i;
+                sumX += length[i];
+                sumY += height[i];
+                sumZ += depth[i];
+                maxX = Math.max(maxX, x[i] + length[i]);
+                maxY = Math.max(maxY, y[i] + height[i]);
+                maxZ = Math.max(maxZ, z[i] + depth[i]);
+            }
+        }
+        
+        if (m < 2) return null;
+        
+        int cx = (int) Math.max(1, sumX / m), cy = (int) Math.max(1, sumY / m), cz = (int) Math.max(1, sumZ / m);
+        int gx = Overlap.cells(maxX, cx), gy = Overlap.cells(maxY, cy), gz = Overlap.cells(maxZ, cz);
+        
+        // Limit the grid to about two cells per box, growing the cells of the longest axis
+        while ((long) gx * gy * gz > 2L * m + 8) {
+            
+            if (gx >= gy && gx >= gz) {
+                
+                cx *= 2;
+                gx = Overlap.cells(maxX, cx);
+                
+            } else if (gy >= gz) {
+                
+                cy *= 2;
+                gy = Overlap.cells(maxY, cy);
+                
+            } else {
+                
+                cz *= 2;
+                gz = Overlap.cells(maxZ, cz);
+            }
+        }
+        
+        // Count the boxes of each cell, then register them (a CSR layout)
+        int[] start = new int[gx * gy * gz + 1];
+        
+        for (int k = 0; k < m; k++) {
+            
+            int i = boxes[k];
+            
+            for (int ix = x[i] / cx; ix <= (x[i] + length[i] - 1) / cx; ix++) {
+                for (int iy = y[i] / cy; iy <= (y[i] + height[i] - 1) / cy; iy++) {
+                    for (int iz = z[i] / cz; iz <= (z[i] + depth[i] - 1) / cz; iz++) {
+                        
+                        start[(ix * gy + iy) * gz + iz + 1]++;
+                    }
+                }
+            }
+        }
+        
+        for (int c = 1; c < start.length; c++) {
+            
+            start[c] += start[c - 1];
+        }
+        
+        int[] next = new int[start.length - 1];
+        int[] cells = new int[start[start.length - 1]];
+        
+        System.arraycopy(start, 0, next, 0, next.length);
+        
+        for (int k = 0; k < m; k++) {
+            
+            int i = boxes[k];
+            
+            for (int ix = x[i] / cx; ix <= (x[i] + length[i] - 1) / cx; ix++) {
+                for (int iy = y[i] / cy; iy <= (y[i] + height[i] - 1) / cy; iy++) {
+                    for (int iz = z[i] / cz; iz <= (z[i] + depth[i] - 1) / cz; iz++) {
+                        
+                        cells[next[(ix * gy + iy) * gz + iz]++] = i;
+                    }
+                }
+            }
+        }
+        
+        // Compare the boxes that share a cell
+        for (int c = 0; c < next.length; c++) {
+            
+            for (int a = start[c]; a < start[c + 1]; a++) {
+                
+                int i = cells[a];
+                
+                for (int b = a + 1; b < start[c + 1]; b++) {
+                    
+                    int j = cells[b];
+                    
+                    if (x[i] < x[j] + length[j] && x[j] < x[i] + length[i] &&
+                        y[i] < y[j] + height[j] && y[j] < y[i] + height[i] &&
+                        z[i] < z[j] + depth[j] && z[j] < z[i] + depth[i]) {
+                        
+                        return new int[] { Math.min(i, j), Math.max(i, j) };
+                    }
+                }
+            }
+        }
+        
+        return null;
+    }
+    
+    private static int cells(int extent, int size) {
+        
+        return Math.max(1, (extent + size - 1) / size);
+    }
+    
+}
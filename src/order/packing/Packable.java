@@ -0,0 +1,22 @@
+package order.packing;
+
+/**
+ * A container where the Packer places items: {@link Container} and
+ * {@link CompactContainer}, which find the free space in their occupancy
+ * grid
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+interface Packable extends IContainer {
+    
+    /**
+     * Finds the lowest free space (then the most backward and leftmost)
+     * where a box is inside the container and doesn't overlap any item
+     * 
+     * @param length size of the box on the x axis
+     * @param height size of the box on the y axis
+     * @param depth size of the box on the z axis
+     * @return the position, or null if there isn't free space for the box
+     */
+    IPosition findFreeSpace(int length, int height, int depth);
+}
@@ -0,0 +1,253 @@
+package order.packing;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Function;
+import order.exceptions.ContainerException;
+import order.exceptions.PositionException;
+import order.util.DinArray;
+
+/**
+ * Automatic packing engine that places items into closed containers.
+ * 
+ * The items are sorted by decreasing volume (first fit decreasing) and each
+ * one is placed in the first open container with free space for it, at the
+ * lowest free position (then the most backward and leftmost), found in the
+ * occupancy grid of the container. To keep the cost per item bounded, only
+ * the last containers opened (the window) are tried, the older ones are
+ * closed. The items can be packed into {@link Container} or, to keep less
+ * objects for each item, into {@link CompactContainer}.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class Packer {
+    
+    private static final int DEFAULT_WINDOW = 8;
+    
+    private final String prefix;
+    private final Color color, colorEdge;
+    private final int window;
+    
+    public Packer() {
+        
+        this("P");
+    }
+    
+    /**
+     * Packer's instance constructor, for black containers with blue edges
+     * 
+     * @param prefix prefix of the references of the containers (followed by a number)
+     */
+    public Packer(String prefix) {
+        
+        this(prefix, Color.black, Color.blue, DEFAULT_WINDOW);
+    }
+    
+    /**
+     * Packer's instance constructor
+     * 
+     * @param prefix prefix of the references of the containers (followed by a number)
+     * @param color color of the containers
+     * @param colorEdge edge color of the containers
+     * @param window number of open containers where items are tried
+     * @throws IllegalArgumentException if window is lower than 1
+     */
+    public Packer(String prefix, Color color, Color colorEdge, int window) {
+        
+        if (window < 1) {
+            
+            throw new IllegalArgumentException("Illegal window: " + window);
+        }
+        
+        this.prefix = prefix;
+        this.color = color;
+        this.colorEdge = colorEdge;
+        this.window = window;
+    }
+    
+    /**
+     * Packs the items into closed containers
+     * 
+     * @param items items to be packed
+     * @return the packing result, with the closed containers
+     * @throws ContainerException if an item has a size lower than 1, or
+     * doesn't fit in an empty container
+     * @throws PositionException if a container fails the validation when closed
+     */
+    public PackingResult<Container> pack(IItem[] items) throws ContainerException, PositionException {
+        
+        return this.pack(items, Container.class, reference -> new Container(reference, this.color, this.colorEdge));
+    }
+    
+    /**
+     * Packs the items into closed compact containers, with the same
+     * placements of {@link #pack(IItem[])}
+     * 
+     * @param items items to be packed
+     * @return the packing result, with the closed containers
+     * @throws ContainerException if an item has a size lower than 1, or
+     * doesn't fit in an empty container
+     * @throws PositionException if a container fails the validation when closed
+     */
+    public PackingResult<CompactContainer> packCompact(IItem[] items) throws ContainerException, PositionException {
+        
+        return this.pack(items, CompactContainer.class, reference -> new CompactContainer(reference, this.color, this.colorEdge));
+    }
+    
+    /**
+     * Packs the items into the containers created by the factory, from their
+     * references
+     */
+    private <C extends Packable> PackingResult<C> pack(IItem[] items, Class<C> type, Function<String, C> factory) throws ContainerException, PositionException {
+        
+        // An item without volume has no space to be found, reject it before
+        // opening any container
+        for (IItem item : items) {
+            
+            if (item.getLenght() < 1 || item.getHeight() < 1 || item.getDepth() < 1) {
+                
+                String reference = item.getReference();
+                
+                throw new ContainerException() {
+                    
+                    @Override
+                    public String getMessage() {
+                        return "the item " + reference + " has no volume";
+                    }
+                };
+            }
+        }
+        
+        IItem[] sorted = Arrays.copyOf(items, items.length);
+        Arrays.sort(sorted, Comparator.comparingInt(IItem::getVolume).reversed());
+        
+        Color[] colors = Color.values();
+        
+        DinArray<C> containers = new DinArray<>(type);
+        Bin[] open = new Bin[this.window];
+        int opened = 0;
+        long packedVolume = 0;
+        
+        for (int k = 0; k < sorted.length; k++) {
+            
+            IItem item = sorted[k];
+            IPosition position = null;
+            Bin bin = null;
+            
+            // First fit in the window of open containers, oldest first
+            for (int b = Math.max(0, opened - this.window); b < opened && position == null; b++) {
+                
+                bin = open[b % this.window];
+                position = bin.find(item);
+            }
+            
+            if (position == null) {
+                
+                // Close the oldest container of the window to open a new one
+                if (opened >= this.window) {
+                    
+                    open[opened % this.window].container.close();
+                }
+                
+                C container = factory.apply(this.prefix + (opened + 1));
+                
+                bin = new Bin(container);
+                open[opened % this.window] = bin;
+                containers.add(container);
+                opened++;
+                
+                position = bin.find(item);
+                
+                if (position == null) {
+                    
+                    String reference = item.getReference();
+                    
+                    throw new ContainerException() {
+                        
+                        @Override
+                        public String getMessage() {
+                            return "the item " + reference + " doesn't fit in an empty container";
+                        }
+                    };
+                }
+            }
+            
+            bin.place(item, position, colors[k % colors.length]);
+            packedVolume += item.getVolume();
+        }
+        
+        for (int b = Math.max(0, opened - this.window); b < opened; b++) {
+            
+            open[b % this.window].container.close();
+        }
+        
+        return new PackingResult<>(containers.toArray(), packedVolume);
+    }
+    
+    /**
+     * An open container, and the last item that didn't fit in it
+     */
+    private static class Bin {
+        
+        private final Packable container;
+        
+        // Sizes of the last item that didn't fit since the last placement:
+        // a larger item (on every axis) doesn't fit either
+        private int failedLength, failedHeight, failedDepth;
+        
+        Bin(Packable container) {
+            
+            this.container = container;
+            this.forget();
+        }
+        
+        private void forget() {
+            
+            this.failedLength = Integer.MAX_VALUE;
+            this.failedHeight = Integer.MAX_VALUE;
+            this.failedDepth = Integer.MAX_VALUE;
+        }
+        
+        /**
+         * Finds the lowest, most backward and leftmost free space for the item
+         * 
+         * @return the position, or null if the item doesn't fit
+         */
+        IPosition find(IItem item) {
+            
+            int l = item.getLenght(), h = item.getHeight(), d = item.getDepth();
+            
+            if (item.getVolume() > this.container.getRemainingVolume()) return null;
+            
+            if (l >= this.failedLength && h >= this.failedHeight && d >= this.failedDepth) return null;
+            
+            IPosition position = this.container.findFreeSpace(l, h, d);
+            
+            if (position == null) {
+                
+                this.failedLength = l;
+                this.failedHeight = h;
+                this.failedDepth = d;
+            }
+            
+            return position;
+        }
+        
+        void place(IItem item, IPosition position, Color color) throws ContainerException {
+            
+            if (!this.container.addItem(item, position, color)) {
+                
+                throw new ContainerException() {
+                    
+                    @Override
+                    public String getMessage() {
+                        return "the item " + item.getReference() + " is repeated";
+                    }
+                };
+            }
+            
+            this.forget();
+        }
+    }
+    
+}
@@ -0,0 +1,75 @@
+package order.packing;
+
+/**
+ * Result of an automatic packing: the closed containers and the quality of
+ * the packing. The containers are Container, or CompactContainer when
+ * packed by {@link Packer#packCompact(IItem[])}.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class PackingResult<C extends IContainer> {
+    
+    private final C[] containers;
+    private final long packedVolume;
+    
+    PackingResult(C[] containers, long packedVolume) {
+        
+        this.containers = containers;
+        this.packedVolume = packedVolume;
+    }
+    
+    /**
+     * Getter for the closed containers, in the order they were opened
+     * 
+     * @return the containers
+     */
+    public C[] getContainers() {
+        
+        return this.containers.clone();
+    }
+    
+    /**
+     * Getter for the number of containers used
+     * 
+     * @return number of containers
+     */
+    public int getContainerCount() {
+        
+        return this.containers.length;
+    }
+    
+    /**
+     * Getter for the volume of the packed items
+     * 
+     * @return packed volume
+     */
+    public long getPackedVolume() {
+        
+        return this.packedVolume;
+    }
+    
+    /**
+     * Returns the ratio between the volume of the packed items and the volume
+     * of the containers used
+     * 
+     * @return fill ratio, between 0 and 1 (0 if no container was used)
+     */
+    public double getFillRatio() {
+        
+        long capacity = 0;
+        
+        for (IContainer container : this.containers) {
+            
+            capacity += container.getVolume();
+        }
+        
+        return capacity > 0 ? (double) this.packedVolume / capacity : 0;
+    }
+    
+    @Override
+    public String toString() {
+        
+        return "Containers: " + this.containers.length + ", Fill ratio: " + String.format("%.3f", this.getFillRatio());
+    }
+    
+}
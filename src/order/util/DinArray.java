@@ -3,58 +3,224 @@ package order.util;
 import java.lang.reflect.Array;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * Represent's a Dinamic Array (avoiding de Java.Collection).
  * 
+ * The elements are stored in a backing array bigger than the number of
+ * elements, that grows geometrically (by half of its size), so the cost of
+ * {@link #add(Object)} is amortized constant.
+ * 
  * @author Filipe Certal (filipe.certal@gmail.com)
  */
 public class DinArray<T> implements Iterable<T> 
 {
+    private static final int DEFAULT_CAPACITY = 10;
+    
     private T[] array;
+    private int size;
     
     public DinArray(Class<T> t) {
         
-        this.array = (T[]) Array.newInstance(t, 0);
+        this(t, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * DinArray's instance constructor
+     * 
+     * @param t class of the elements
+     * @param capacity initial capacity of the backing array
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public DinArray(Class<T> t, int capacity) {
+        
+        if (capacity < 0) {
+            
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        
+        // Array.newInstance creates an array of the class of the elements
+        @SuppressWarnings("unchecked")
+        T[] array = (T[]) Array.newInstance(t, capacity);
+        
+        this.array = array;
+        this.size = 0;
     }
     
     public void add(T element) {
         
-        this.array = Arrays.copyOf(this.array, this.array.length + 1);
-        this.array[this.array.length - 1] = element;
+        if (this.size == this.array.length) {
+            
+            this.grow(this.size + 1);
+        }
+        
+        this.array[this.size++] = element;
+    }
+    
+    /**
+     * Adds all the elements of the given array, growing the backing array once
+     * 
+     * @param elements elements to be added
+     */
+    public void addAll(T[] elements) {
+        
+        this.ensureCapacity(this.size + elements.length);
+        
+        System.arraycopy(elements, 0, this.array, this.size, elements.length);
+        this.size += elements.length;
+    }
+    
+    /**
+     * Adds all the elements of the given DinArray, growing the backing array once
+     * 
+     * @param elements elements to be added
+     */
+    public void addAll(DinArray<? extends T> elements) {
+        
+        this.ensureCapacity(this.size + elements.size);
+        
+        System.arraycopy(elements.array, 0, this.array, this.size, elements.size);
+        this.size += elements.size;
     }
 
     public boolean remove(T element) {
         
-        int i;
+        int i = this.indexOf(element);
         
-        for (i = 0; i < this.array.length && !element.equals(this.array[i]); i++);
+        if (i < 0) return false;
         
-        if (i >= this.array.length) return false;
+        this.removeAt(i);
         
-        for (int j = i; j < this.array.length - 1; j++) {
-            
-            this.array[j] = this.array[j + 1];  
-        }
+        return true;
+    }
+    
+    /**
+     * Removes an element without preserving the order of the remaining elements:
+     * the last element takes the place of the removed one
+     * 
+     * @param element element to be removed
+     * @return true if the element was removed, false if it doesn't exist
+     */
+    public boolean removeUnordered(T element) {
         
-        this.array = Arrays.copyOf(this.array, this.array.length - 1);
+        int i = this.indexOf(element);
+        
+        if (i < 0) return false;
+        
+        this.swapRemove(i);
         
         return true;
     }
     
+    /**
+     * Removes the element at the given position, shifting the following elements
+     * 
+     * @param i position of the element
+     * @return the removed element
+     * @throws ArrayIndexOutOfBoundsException if i is outside the array
+     */
+    public T removeAt(int i) throws ArrayIndexOutOfBoundsException {
+        
+        this.checkIndex(i);
+        
+        T element = this.array[i];
+        
+        System.arraycopy(this.array, i + 1, this.array, i, this.size - i - 1);
+        this.array[--this.size] = null;
+        
+        return element;
+    }
+    
+    /**
+     * Removes the element at the given position in constant time, moving the
+     * last element to that position
+     * 
+     * @param i position of the element
+     * @return the removed element
+     * @throws ArrayIndexOutOfBoundsException if i is outside the array
+     */
+    public T swapRemove(int i) throws ArrayIndexOutOfBoundsException {
+        
+        this.checkIndex(i);
+        
+        T element = this.array[i];
+        
+        this.array[i] = this.array[--this.size];
+        this.array[this.size] = null;
+        
+        return element;
+    }
+    
+    /**
+     * Returns the position of the first element equal to the given one
+     * 
+     * @param element element to find
+     * @return position of the element, or -1 if it doesn't exist
+     */
+    public int indexOf(T element) {
+        
+        for (int i = 0; i < this.size; i++) {
+            
+            if (element.equals(this.array[i])) {
+                
+                return i;
+            }
+        }
+        
+        return -1;
+    }
+    
     public T get(int i) throws ArrayIndexOutOfBoundsException {
 
-        return (T) this.array[i];        
+        this.checkIndex(i);
+        
+        return this.array[i];
     }
     
     public void set(int i, T element)  throws ArrayIndexOutOfBoundsException {
         
+        this.checkIndex(i);
+        
         this.array[i] = element;
     }
     
+    /**
+     * Removes all the elements, keeping the current capacity
+     */
+    public void clear() {
+        
+        Arrays.fill(this.array, 0, this.size, null);
+        this.size = 0;
+    }
+    
+    /**
+     * Grows the backing array, if needed, to hold at least the given number of elements
+     * 
+     * @param capacity minimum capacity
+     */
+    public void ensureCapacity(int capacity) {
+        
+        if (capacity > this.array.length) {
+            
+            this.grow(capacity);
+        }
+    }
+    
+    /**
+     * Shrinks the backing array to the number of elements
+     */
+    public void trimToSize() {
+        
+        if (this.size < this.array.length) {
+            
+            this.array = Arrays.copyOf(this.array, this.size);
+        }
+    }
+    
     public T[] toArray() {
         
-        return Arrays.copyOf(this.array, this.array.length);
+        return Arrays.copyOf(this.array, this.size);
     }
     
 
@@ -62,20 +228,25 @@ public class DinArray<T> implements Iterable<T>
     public Iterator<T> iterator() {
         
         Iterator<T> it = new Iterator<T>() {
-        
+            
             private int currentIndex = 0;
 
             @Override
             public boolean hasNext() {
                 
-                return currentIndex < array.length && array[currentIndex] != null;
+                return currentIndex < size;
             }
 
             @Override
             public T next() {
                 
-                return (T) array[currentIndex++];
-            } 
+                if (currentIndex >= size) {
+                    
+                    throw new NoSuchElementException();
+                }
+                
+                return array[currentIndex++];
+            }
         };
         
         return it;
@@ -83,7 +254,27 @@ public class DinArray<T> implements Iterable<T>
     
     public int size() {
         
-        return this.array.length;
+        return this.size;
     }
-   
-}
\ No newline at end of file
+    
+    private void grow(int capacity) {
+        
+        int newCapacity = this.array.length + (this.array.length >> 1);
+        
+        if (newCapacity < capacity) {
+            
+            newCapacity = Math.max(capacity, DEFAULT_CAPACITY);
+        }
+        
+        this.array = Arrays.copyOf(this.array, newCapacity);
+    }
+    
+    private void checkIndex(int i) throws ArrayIndexOutOfBoundsException {
+        
+        if (i < 0 || i >= this.size) {
+            
+            throw new ArrayIndexOutOfBoundsException(i);
+        }
+    }
+    
+}
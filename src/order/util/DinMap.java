@@ -0,0 +1,329 @@
+package order.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Represent's a Dinamic hash Map (avoiding de Java.Collection).
+ * 
+ * The entries are kept in insertion order in parallel arrays and a hash
+ * table of open addressing (linear probing) points to them, so put, get and
+ * remove run in constant time and the iteration follows the insertion order.
+ * Removed entries leave a hole that is reclaimed when the arrays are rebuilt.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class DinMap<K, V> {
+    
+    private static final int DEFAULT_CAPACITY = 8;
+    
+    private static final Object REMOVED = new Object();
+    
+    private Object[] keys;
+    private Object[] values;
+    private int[] hashes;
+    private int[] table;
+    private int count;
+    private int size;
+    
+    public DinMap() {
+        
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * DinMap's instance constructor
+     * 
+     * @param capacity expected number of entries
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public DinMap(int capacity) {
+        
+        if (capacity < 0) {
+            
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        
+        capacity = Math.max(capacity, DEFAULT_CAPACITY);
+        
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        this.hashes = new int[capacity];
+        this.table = new int[DinMap.tableSize(capacity)];
+        this.count = 0;
+        this.size = 0;
+    }
+    
+    /**
+     * Associates the value with the key, replacing the previous value
+     * 
+     * @param key key (not null)
+     * @param value value
+     * @return the previous value of the key, or null if the key didn't exist
+     * @throws NullPointerException if key is null
+     */
+    public V put(K key, V value) {
+        
+        int hash = DinMap.hash(key);
+        int entry = this.find(key, hash);
+        
+        if (entry >= 0) {
+            
+            V old = this.value(entry);
+            this.values[entry] = value;
+            
+            return old;
+        }
+        
+        if (this.count == this.keys.length) {
+            
+            this.rebuild();
+        }
+        
+        entry = this.count++;
+        
+        this.keys[entry] = key;
+        this.values[entry] = value;
+        this.hashes[entry] = hash;
+        this.size++;
+        
+        this.link(entry, hash);
+        
+        return null;
+    }
+    
+    /**
+     * Associates the value with the key only if the key doesn't exist
+     * 
+     * @param key key (not null)
+     * @param value value
+     * @return true if the value was inserted, false if the key already exists
+     * @throws NullPointerException if key is null
+     */
+    public boolean putIfAbsent(K key, V value) {
+        
+        if (this.containsKey(key)) return false;
+        
+        this.put(key, value);
+        
+        return true;
+    }
+    
+    /**
+     * Returns the value associated with the key
+     * 
+     * @param key key
+     * @return the value, or null if the key doesn't exist
+     */
+    public V get(Object key) {
+        
+        if (key == null) return null;
+        
+        int entry = this.find(key, DinMap.hash(key));
+        
+        return entry >= 0 ? this.value(entry) : null;
+    }
+    
+    public boolean containsKey(Object key) {
+        
+        return key != null && this.find(key, DinMap.hash(key)) >= 0;
+    }
+    
+    /**
+     * Removes the key and its value
+     * 
+     * @param key key
+     * @return the removed value, or null if the key doesn't exist
+     */
+    public V remove(Object key) {
+        
+        if (key == null) return null;
+        
+        int entry = this.find(key, DinMap.hash(key));
+        
+        if (entry < 0) return null;
+        
+        V old = this.value(entry);
+        
+        // The slot of the hash table keeps pointing to the entry, acting as
+        // a tombstone until the table is rebuilt
+        this.keys[entry] = REMOVED;
+        this.values[entry] = null;
+        this.size--;
+        
+        return old;
+    }
+    
+    /**
+     * Removes all the entries, keeping the current capacity
+     */
+    public void clear() {
+        
+        Arrays.fill(this.keys, 0, this.count, null);
+        Arrays.fill(this.values, 0, this.count, null);
+        Arrays.fill(this.table, 0);
+        this.count = 0;
+        this.size = 0;
+    }
+    
+    public int size() {
+        
+        return this.size;
+    }
+    
+    public boolean isEmpty() {
+        
+        return this.size == 0;
+    }
+    
+    /**
+     * Returns the keys in insertion order
+     * 
+     * @return an Iterable over the keys
+     */
+    public Iterable<K> keys() {
+        
+        return () -> new EntryIterator<>(true);
+    }
+    
+    /**
+     * Returns the values in insertion order
+     * 
+     * @return an Iterable over the values
+     */
+    public Iterable<V> values() {
+        
+        return () -> new EntryIterator<>(false);
+    }
+    
+    /**
+     * Returns the value of an entry. The values array only holds values put
+     * with put (or null), so they are of type V.
+     */
+    @SuppressWarnings("unchecked")
+    private V value(int entry) {
+        
+        return (V) this.values[entry];
+    }
+    
+    private int find(Object key, int hash) {
+        
+        int mask = this.table.length - 1;
+        
+        for (int i = hash & mask; this.table[i] != 0; i = (i + 1) & mask) {
+            
+            int entry = this.table[i] - 1;
+            
+            if (this.hashes[entry] == hash && this.keys[entry] != REMOVED && key.equals(this.keys[entry])) {
+                
+                return entry;
+            }
+        }
+        
+        return -1;
+    }
+    
+    private void link(int entry, int hash) {
+        
+        int mask = this.table.length - 1;
+        int i = hash & mask;
+        
+        // Reuse the first slot that is empty or points to a removed entry
+        while (this.table[i] != 0 && this.keys[this.table[i] - 1] != REMOVED) {
+            
+            i = (i + 1) & mask;
+        }
+        
+        this.table[i] = entry + 1;
+    }
+    
+    private void rebuild() {
+        
+        // Compact when at least a quarter of the entries were removed, grow otherwise
+        int capacity = this.size <= this.count - (this.count >> 2) ? this.keys.length : this.keys.length << 1;
+        
+        Object[] newKeys = new Object[capacity];
+        Object[] newValues = new Object[capacity];
+        int[] newHashes = new int[capacity];
+        int n = 0;
+        
+        for (int i = 0; i < this.count; i++) {
+            
+            if (this.keys[i] != REMOVED) {
+                
+                newKeys[n] = this.keys[i];
+                newValues[n] = this.values[i];
+                newHashes[n] = this.hashes[i];
+                n++;
+            }
+        }
+        
+        this.keys = newKeys;
+        this.values = newValues;
+        this.hashes = newHashes;
+        this.table = new int[DinMap.tableSize(capacity)];
+        this.count = n;
+        
+        for (int i = 0; i < n; i++) {
+            
+            this.link(i, this.hashes[i]);
+        }
+    }
+    
+    private static int tableSize(int capacity) {
+        
+        // Power of two with at least twice the slots of the entries
+        return Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+    
+    private static int hash(Object key) {
+        
+        int h = key.hashCode();
+        
+        return h ^ (h >>> 16);
+    }
+    
+    private class EntryIterator<E> implements Iterator<E> {
+        
+        private final boolean overKeys;
+        private int currentIndex;
+        
+        EntryIterator(boolean overKeys) {
+            
+            this.overKeys = overKeys;
+            this.currentIndex = this.skip(0);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            
+            return this.currentIndex < count;
+        }
+        
+        @Override
+        public E next() {
+            
+            if (!this.hasNext()) {
+                
+                throw new NoSuchElementException();
+            }
+            
+            // The iterator over the keys is an EntryIterator<K>, over the values an EntryIterator<V>
+            @SuppressWarnings("unchecked")
+            E element = (E) (this.overKeys ? keys : values)[this.currentIndex];
+            
+            this.currentIndex = this.skip(this.currentIndex + 1);
+            
+            return element;
+        }
+        
+        private int skip(int i) {
+            
+            while (i < count && keys[i] == REMOVED) i++;
+            
+            return i;
+        }
+    }
+    
+}
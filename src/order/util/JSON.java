@@ -0,0 +1,107 @@
+package order.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import org.json.simple.JSONStreamAware;
+
+/**
+ * Helpers to write JSON notation directly to a Writer.
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public final class JSON {
+    
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    private JSON() {
+    }
+    
+    /**
+     * Writes a string as a JSON string literal, between quotes and escaped,
+     * or null if the string is null
+     * 
+     * @param out writer
+     * @param s string to be written
+     * @throws IOException if the writer fails
+     */
+    public static void writeString(Writer out, String s) throws IOException {
+        
+        if (s == null) {
+            
+            out.write("null");
+            return;
+        }
+        
+        out.write('"');
+        
+        int start = 0;
+        
+        for (int i = 0; i < s.length(); i++) {
+            
+            char c = s.charAt(i);
+            
+            if (c == '"' || c == '\\' || c < 0x20 || c == 0x2028 || c == 0x2029) {
+                
+                // Write the chars that don't need escaping in one go
+                out.write(s, start, i - start);
+                start = i + 1;
+                
+                switch (c) {
+                    case '"': out.write("\\\""); break;
+                    case '\\': out.write("\\\\"); break;
+                    case '\n': out.write("\\n"); break;
+                    case '\r': out.write("\\r"); break;
+                    case '\t': out.write("\\t"); break;
+                    case '\b': out.write("\\b"); break;
+                    case '\f': out.write("\\f"); break;
+                    default:
+                        out.write("\\u");
+                        out.write(HEX[(c >> 12) & 0xF]);
+                        out.write(HEX[(c >> 8) & 0xF]);
+                        out.write(HEX[(c >> 4) & 0xF]);
+                        out.write(HEX[c & 0xF]);
+                }
+            }
+        }
+        
+        out.write(s, start, s.length() - start);
+        out.write('"');
+    }
+    
+    /**
+     * Writes an object (or null) as a JSON string literal of its string representation
+     * 
+     * @param out writer
+     * @param o object to be written
+     * @throws IOException if the writer fails
+     */
+    public static void writeString(Writer out, Object o) throws IOException {
+        
+        JSON.writeString(out, o != null ? o.toString() : null);
+    }
+    
+    /**
+     * Returns the JSON notation written by an object as a String
+     * 
+     * @param o object to be written
+     * @return JSON notation representation
+     */
+    public static String toJSONString(JSONStreamAware o) {
+        
+        StringWriter out = new StringWriter();
+        
+        try {
+            
+            o.writeJSONString(out);
+            
+        } catch (IOException e) {
+            
+            // A StringWriter doesn't fail
+            throw new IllegalStateException(e);
+        }
+        
+        return out.toString();
+    }
+    
+}
@@ -0,0 +1,410 @@
+package order.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONStreamAware;
+
+/**
+ * Registry of named timers, measuring how long each stage (import,
+ * validation, status changes, close and export) takes. A timer counts the
+ * calls, the failed calls and the bytes processed, and keeps a histogram
+ * of the latencies to report percentiles. Recording a latency only updates
+ * atomic counters (no locks), so the timers can be shared by all threads.
+ * 
+ * The snapshot of all the timers is written as JSON, for example:
+ * <pre>
+ * { "order.export": { "count": 3, "failures": 0, "bytes": 5120,
+ *   "totalNanos": 900000, "maxNanos": 400000, "p50Nanos": 262143, ... } }
+ * </pre>
+ * A timer whose failures were recorded with their exception also writes the
+ * last one, as "lastFailure".
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public final class Metrics implements JSONAware, JSONStreamAware {
+    
+    private static final Metrics DEFAULT = new Metrics();
+    
+    private static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private static final String[] PERCENTILE_NAMES = { "p50Nanos", "p90Nanos", "p99Nanos", "p999Nanos" };
+    
+    private final ConcurrentSkipListMap<String, Timer> timers;
+    
+    public Metrics() {
+        
+        this.timers = new ConcurrentSkipListMap<>();
+    }
+    
+    /**
+     * Getter for the registry used by the instrumented classes
+     * 
+     * @return the default registry
+     */
+    public static Metrics getDefault() {
+        
+        return Metrics.DEFAULT;
+    }
+    
+    /**
+     * Returns the timer with the given name, created on the first call
+     * 
+     * @param name timer's name (for example: "order.export")
+     * @return the timer
+     */
+    public Timer timer(String name) {
+        
+        Timer timer = this.timers.get(name);
+        
+        if (timer == null) {
+            
+            timer = this.timers.computeIfAbsent(name, Timer::new);
+        }
+        
+        return timer;
+    }
+    
+    /**
+     * Clears the numbers of all the timers
+     */
+    public void reset() {
+        
+        for (Timer timer : this.timers.values()) {
+            
+            timer.reset();
+        }
+    }
+    
+    /**
+     * Create the JSON notation representation of a snapshot of the timers
+     * 
+     * @return JSON notation representation of the timers
+     */
+    @Override
+    public String toJSONString() {
+        
+        return JSON.toJSONString(this);
+    }
+    
+    /**
+     * Write the JSON notation representation of a snapshot of the timers,
+     * by name
+     * 
+     * @param out writer
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
+        
+        out.write("{");
+        
+        boolean first = true;
+        
+        for (Timer timer : this.timers.values()) {
+            
+            if (!first) out.write(", ");
+            
+            first = false;
+            
+            JSON.writeString(out, timer.name);
+            out.write(": ");
+            timer.writeJSONString(out);
+        }
+        
+        out.write("}");
+    }
+    
+    /**
+     * Timer of a stage, with a histogram of the latencies. The histogram has
+     * 8 buckets for each power of two, so a percentile is reported with an
+     * error below 12.5% (as the upper limit of its bucket).
+     */
+    public static final class Timer implements JSONStreamAware {
+        
+        private static final int SUB_BITS = 3, SUB = 1 << SUB_BITS;
+        
+        private final String name;
+        private final AtomicLongArray buckets;
+        private final LongAdder count, failures, nanos, bytes;
+        private final AtomicLong max;
+        private volatile String lastFailure;
+        
+        private Timer(String name) {
+            
+            this.name = name;
+            this.buckets = new AtomicLongArray((Long.SIZE - SUB_BITS) * SUB);
+            this.count = new LongAdder();
+            this.failures = new LongAdder();
+            this.nanos = new LongAdder();
+            this.bytes = new LongAdder();
+            this.max = new AtomicLong();
+        }
+        
+        /**
+         * Returns the start time of a call, to be passed to stop
+         * 
+         * @return the current time, in nanoseconds
+         */
+        public long start() {
+            
+            return System.nanoTime();
+        }
+        
+        /**
+         * Records a call started at the given time
+         * 
+         * @param start start time, returned by start
+         */
+        public void stop(long start) {
+            
+            this.stop(start, 0, false);
+        }
+        
+        /**
+         * Records a call started at the given time
+         * 
+         * @param start start time, returned by start
+         * @param bytes bytes read or written by the call
+         * @param failed true if the call failed
+         */
+        public void stop(long start, long bytes, boolean failed) {
+            
+            long elapsed = Math.max(0, System.nanoTime() - start);
+            
+            this.buckets.incrementAndGet(Timer.bucket(elapsed));
+            this.count.increment();
+            this.nanos.add(elapsed);
+            
+            if (bytes != 0) this.bytes.add(bytes);
+            if (failed) this.failures.increment();
+            
+            // Most calls are shorter than the longest, so read before updating
+            if (elapsed > this.max.get()) {
+                
+                this.max.accumulateAndGet(elapsed, Math::max);
+            }
+        }
+        
+        /**
+         * Records a call started at the given time that failed, keeping the
+         * failure as the last failure of the timer (the callers that can't
+         * throw it report it here instead)
+         * 
+         * @param start start time, returned by start
+         * @param failure exception that failed the call
+         */
+        public void stop(long start, Throwable failure) {
+            
+            this.stop(start, 0, true);
+            this.lastFailure = failure.getMessage() == null ? failure.getClass().getName() : failure.getClass().getName() + ": " + failure.getMessage();
+        }
+        
+        /**
+         * Getter for the timer's name
+         * 
+         * @return name
+         */
+        public String getName() {
+            
+            return this.name;
+        }
+        
+        /**
+         * Getter for the number of calls recorded
+         * 
+         * @return number of calls
+         */
+        public long getCount() {
+            
+            return this.count.sum();
+        }
+        
+        /**
+         * Getter for the number of calls that failed
+         * 
+         * @return number of failed calls
+         */
+        public long getFailures() {
+            
+            return this.failures.sum();
+        }
+        
+        /**
+         * Getter for the bytes read or written by the calls
+         * 
+         * @return number of bytes
+         */
+        public long getBytes() {
+            
+            return this.bytes.sum();
+        }
+        
+        /**
+         * Getter for the time spent in the calls
+         * 
+         * @return total time, in nanoseconds
+         */
+        public long getTotalNanos() {
+            
+            return this.nanos.sum();
+        }
+        
+        /**
+         * Getter for the time of the longest call
+         * 
+         * @return maximum time, in nanoseconds
+         */
+        public long getMaxNanos() {
+            
+            return this.max.get();
+        }
+        
+        /**
+         * Getter for the last failure recorded with its exception
+         * 
+         * @return class and message of the exception, or null if none
+         */
+        public String getLastFailure() {
+            
+            return this.lastFailure;
+        }
+        
+        /**
+         * Returns a percentile of the times of the calls
+         * 
+         * @param percentile percentile, from 0 to 1 (for example: 0.99)
+         * @return time below which are the given fraction of the calls, in
+         * nanoseconds, or 0 if there are no calls
+         * @throws IllegalArgumentException if percentile isn't between 0 and 1
+         */
+        public long getPercentileNanos(double percentile) {
+            
+            if (percentile < 0 || percentile > 1) {
+                
+                throw new IllegalArgumentException("Illegal percentile: " + percentile);
+            }
+            
+            return this.percentiles(new double[] { percentile })[0];
+        }
+        
+        /**
+         * Write the timer's JSON notation representation
+         * 
+         * @param out writer
+         * @throws IOException if the writer fails
+         */
+        @Override
+        public void writeJSONString(Writer out) throws IOException {
+            
+            long[] percentiles = this.percentiles(PERCENTILES);
+            
+            out.write("{ \"count\": ");
+            out.write(Long.toString(this.getCount()));
+            out.write(", \"failures\": ");
+            out.write(Long.toString(this.getFailures()));
+            out.write(", \"bytes\": ");
+            out.write(Long.toString(this.getBytes()));
+            out.write(", \"totalNanos\": ");
+            out.write(Long.toString(this.getTotalNanos()));
+            out.write(", \"maxNanos\": ");
+            out.write(Long.toString(this.getMaxNanos()));
+            
+            for (int i = 0; i < percentiles.length; i++) {
+                
+                out.write(", \"");
+                out.write(PERCENTILE_NAMES[i]);
+                out.write("\": ");
+                out.write(Long.toString(percentiles[i]));
+            }
+            
+            String failure = this.lastFailure;
+            
+            if (failure != null) {
+                
+                out.write(", \"lastFailure\": ");
+                JSON.writeString(out, failure);
+            }
+            
+            out.write(" }");
+        }
+        
+        private void reset() {
+            
+            for (int i = 0; i < this.buckets.length(); i++) {
+                
+                this.buckets.set(i, 0);
+            }
+            
+            this.count.reset();
+            this.failures.reset();
+            this.nanos.reset();
+            this.bytes.reset();
+            this.max.set(0);
+            this.lastFailure = null;
+        }
+        
+        /**
+         * Computes percentiles (in increasing order) from a single pass over
+         * the buckets, which are read while other threads may be recording
+         */
+        private long[] percentiles(double[] percentiles) {
+            
+            long[] counts = new long[this.buckets.length()];
+            long total = 0;
+            
+            for (int i = 0; i < counts.length; i++) {
+                
+                counts[i] = this.buckets.get(i);
+                total += counts[i];
+            }
+            
+            long[] r = new long[percentiles.length];
+            long max = this.max.get(), seen = 0;
+            int p = 0;
+            
+            for (int i = 0; i < counts.length && p < percentiles.length && total > 0; i++) {
+                
+                seen += counts[i];
+                
+                while (p < percentiles.length && seen >= Math.max(1, (long) Math.ceil(percentiles[p] * total))) {
+                    
+                    r[p++] = Math.min(max, Timer.upper(i));
+                }
+            }
+            
+            return r;
+        }
+        
+        /**
+         * Returns the bucket of a time: the times below 8 have a bucket each,
+         * the others are split by their highest bit and the next 3 bits
+         */
+        private static int bucket(long value) {
+            
+            if (value < SUB) return (int) value;
+            
+            int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB - 1);
+            
+            return (exponent - SUB_BITS + 1) * SUB + sub;
+        }
+        
+        /**
+         * Returns the highest time of a bucket
+         */
+        private static long upper(int bucket) {
+            
+            if (bucket < SUB) return bucket;
+            
+            int exponent = bucket / SUB + SUB_BITS - 1;
+            long lower = (long) (SUB + bucket % SUB) << (exponent - SUB_BITS);
+            
+            return lower + (1L << (exponent - SUB_BITS)) - 1;
+        }
+    }
+    
+}
@@ -0,0 +1,106 @@
+package order.base;
+
+/**
+ * Tests of the CustomerRegistry: the customers are found by VAT (or name),
+ * the registered customers can't be changed, and the customers without VAT
+ * and without name are never merged
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class CustomerRegistryTest {
+    
+    public static void main(String[] args) {
+        
+        Address address = new Address("street", "city", "country", "state", 1);
+        
+// TEST #1:
+
+        System.out.println("TEST #1 : Customers found by VAT or name... ");
+        
+        CustomerRegistry registry = new CustomerRegistry();
+        Customer alice = registry.resolve("Alice", "111111", address, address);
+        
+        check(registry.resolve("Alice Smith", "111111", address, address) == alice, "same VAT, same customer");
+        check(registry.get("111111", null) == alice, "customer by VAT");
+        
+        Customer bob = registry.resolve("Bob", null, address, address);
+        
+        check(registry.resolve("Bob", null, address, address) == bob, "same name without VAT, same customer");
+        check(registry.get(null, "Bob") == bob && registry.size() == 2, "customer by name");
+        
+        Customer carol = new Customer("Carol", address, address);
+        
+        carol.setVat("333333");
+        
+        check(registry.register(carol) == carol && registry.get("333333", "Carol") == carol, "customer registered");
+        check(registry.register(new Customer("Alice", address, address)) != alice, "customer without VAT registered by name");
+        
+// TEST #2:
+
+        System.out.println("TEST #2 : Registered customers can't be changed... ");
+        
+        for (Customer registered : new Customer[] { alice, bob, carol }) {
+            
+            check(registered.isFrozen(), "customer " + registered.getName() + " frozen");
+            check(refused(() -> registered.setVat("999999")), "VAT of " + registered.getName());
+            check(refused(() -> registered.setName("Mallory")), "name of " + registered.getName());
+            check(refused(() -> registered.setAddress(address)), "address of " + registered.getName());
+            check(refused(() -> registered.setBillingAddress(address)), "billing address of " + registered.getName());
+        }
+        
+        // The next import finds the same customers
+        check(registry.resolve("Alice", "111111", address, address) == alice, "VAT kept");
+        check(registry.resolve("Bob", null, address, address) == bob, "name kept");
+        
+        Customer dave = new Customer("Dave", address, address);
+        
+        dave.setVat("444444");
+        dave.setName("David");
+        
+        check(!dave.isFrozen() && dave.getName().equals("David"), "customer not registered can be changed");
+        
+// TEST #3:
+
+        System.out.println("TEST #3 : Customers without VAT and without name... ");
+        
+        int size = registry.size();
+        Customer first = registry.resolve(null, null, address, address), second = registry.resolve(null, null, address, address);
+        
+        check(first != second && first.getCustomerId() != second.getCustomerId(), "not merged");
+        check(!first.isFrozen() && registry.size() == size, "not registered");
+        
+        Customer unnamed = new Customer(null, address, address);
+        
+        check(registry.register(unnamed) == unnamed && registry.register(first) == first, "register returns the given customer");
+        check(registry.size() == size && registry.get(null, null) == null, "not registered either");
+        
+        System.out.println("OK");
+    }
+    
+    /**
+     * Checks if a change fails with an UnsupportedOperationException
+     */
+    private static boolean refused(Runnable change) {
+        
+        try {
+            
+            change.run();
+            
+        } catch (UnsupportedOperationException e) {
+            
+            // Expected
+            return true;
+        }
+        
+        return false;
+    }
+    
+    private static void check(boolean condition, String message) {
+        
+        if (!condition) {
+            
+            throw new AssertionError(message);
+        }
+    }
+    
+}
@@ -0,0 +1,242 @@
+package order.management;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import order.base.Address;
+import order.base.Customer;
+import order.base.ICustomer;
+import order.exceptions.OrderException;
+
+/**
+ * Tests of ConcurrentManagement with several threads adding and removing
+ * the same orders at once: each id is added once, and the orders of each
+ * customer stay consistent with the orders of the manager, and the orders
+ * without id are refused
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class ConcurrentManagementTest {
+    
+    private static final int THREADS = 8, ORDERS = 20000, CUSTOMERS = 16;
+    
+    public static void main(String[] args) throws Exception {
+        
+        Address address = new Address("street", "city", "country", "state", 1);
+        Customer[] customers = new Customer[CUSTOMERS];
+        
+        for (int i = 0; i < customers.length; i++) {
+            
+            customers[i] = new Customer("Customer " + i, address, address);
+        }
+        
+        // The same orders are offered by every thread
+        Order[] orders = new Order[ORDERS];
+        
+        for (int i = 0; i < orders.length; i++) {
+            
+            orders[i] = new Order();
+            orders[i].setId(i);
+            orders[i].setCustomer(customers[i % CUSTOMERS]);
+        }
+        
+// TEST #1:
+
+        System.out.println("TEST #1 : Adding the same orders from several threads... ");
+        
+        ConcurrentManagement management = new ConcurrentManagement();
+        AtomicInteger added = new AtomicInteger();
+        
+        run(() -> {
+            
+            for (Order order : orders) {
+                
+                if (management.add(order)) added.incrementAndGet();
+            }
+        });
+        
+        check(added.get() == ORDERS, "each order added once: " + added.get());
+        check(management.size() == ORDERS, "orders in the manager");
+        checkCustomers(management, customers);
+        
+// TEST #2:
+
+        System.out.println("TEST #2 : Adding and removing while reading the customers... ");
+        
+        AtomicInteger removed = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger wrong = new AtomicInteger();
+        
+        // Reads the orders of the customers while the others change them
+        Thread reader = new Thread(() -> {
+            
+            while (running.get()) {
+                
+                for (ICustomer customer : customers) {
+                    
+                    for (IOrder order : management.getOrders(customer)) {
+                        
+                        if (order.getCustomer() != customer) wrong.incrementAndGet();
+                    }
+                }
+            }
+        });
+        
+        reader.start();
+        
+        run(() -> {
+            
+            // Remove the even ids, and add them again and remove them once more
+            for (int round = 0; round < 3; round++) {
+                
+                for (int i = 0; i < orders.length; i += 2) {
+                    
+                    if (round == 1) {
+                        
+                        management.add(orders[i]);
+                        
+                    } else if (management.remove(orders[i])) {
+                        
+                        removed.incrementAndGet();
+                    }
+                }
+            }
+        });
+        
+        running.set(false);
+        reader.join();
+        
+        check(wrong.get() == 0, "orders listed under another customer: " + wrong.get());
+        check(removed.get() >= ORDERS / 2, "each even id removed at least once");
+        check(management.size() == ORDERS / 2, "odd ids left: " + management.size());
+        
+        for (Order order : orders) {
+            
+            check(management.contains(order) == (order.getId() % 2 == 1), "order " + order.getId() + " in the manager");
+        }
+        
+        checkCustomers(management, customers);
+        
+// TEST #3:
+
+        System.out.println("TEST #3 : Adding orders without id... ");
+        
+        // Every new order has the id -1, so they'd be duplicates of each other
+        for (IManagement manager : new IManagement[] { management, new Management() }) {
+            
+            int size = manager.getOrders().length;
+            
+            check(refused(manager, new Order()), manager.getClass().getSimpleName() + " refuses an order without id");
+            check(manager.getOrders().length == size, manager.getClass().getSimpleName() + " orders kept");
+        }
+        
+        System.out.println("OK");
+    }
+    
+    /**
+     * Checks if adding an order fails with an OrderException
+     */
+    private static boolean refused(IManagement manager, Order order) {
+        
+        try {
+            
+            manager.add(order);
+            
+        } catch (OrderException e) {
+            
+            // Expected
+            return true;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * A task run by a test thread
+     */
+    private interface Task {
+        
+        void run() throws Exception;
+    }
+    
+    /**
+     * Runs a task in several threads started at once, and waits for them
+     */
+    private static void run(Task task) throws Exception {
+        
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        Exception[] errors = new Exception[THREADS];
+        
+        for (int t = 0; t < threads.length; t++) {
+            
+            int n = t;
+            
+            threads[t] = new Thread(() -> {
+                
+                try {
+                    
+                    start.await();
+                    task.run();
+                    
+                } catch (Exception e) {
+                    
+                    errors[n] = e;
+                }
+            });
+            
+            threads[t].start();
+        }
+        
+        start.countDown();
+        
+        for (int t = 0; t < threads.length; t++) {
+            
+            threads[t].join();
+            
+            if (errors[t] != null) throw errors[t];
+        }
+    }
+    
+    /**
+     * Checks that the orders of each customer are the orders of the manager
+     * with that customer
+     */
+    private static void checkCustomers(ConcurrentManagement management, Customer[] customers) {
+        
+        int[] expected = new int[customers.length];
+        
+        for (IOrder order : management.getOrders()) {
+            
+            expected[order.getCustomer().getCustomerId() - customers[0].getCustomerId()]++;
+        }
+        
+        int total = 0;
+        
+        for (int i = 0; i < customers.length; i++) {
+            
+            IOrder[] orders = management.getOrders(customers[i]);
+            
+            check(orders.length == expected[i], "orders of customer " + i + ": " + orders.length + ", expected " + expected[i]);
+            
+            for (IOrder order : orders) {
+                
+                check(order.getCustomer() == customers[i], "customer of order " + order.getId());
+                check(management.getOrder(order.getId()) == order, "order " + order.getId() + " of customer " + i + " in the manager");
+            }
+            
+            total += orders.length;
+        }
+        
+        check(total == management.size(), "orders of the customers: " + total);
+    }
+    
+    private static void check(boolean condition, String message) {
+        
+        if (!condition) {
+            
+            throw new AssertionError(message);
+        }
+    }
+    
+}
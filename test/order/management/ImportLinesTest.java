@@ -0,0 +1,160 @@
+package order.management;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import order.exceptions.OrderException;
+
+/**
+ * Tests of the JSON Lines import and export: the malformed lines are
+ * reported without stopping the others, an exported file is imported
+ * again, and the lines with missing fields or values of the wrong type
+ * fail with an OrderException
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class ImportLinesTest {
+    
+    private static final String ADDRESS = "{\"street\": \"street A1\", \"number\": 1, \"city\": \"city A1\", \"state\": \"state A1\", \"country\": \"country A1\"}";
+    
+    public static void main(String[] args) throws Exception {
+        
+        Path directory = Files.createTempDirectory("lines");
+        
+        try {
+            
+// TEST #1:
+
+            System.out.println("TEST #1 : Importing malformed lines... ");
+            
+            Path input = directory.resolve("orders.jsonl");
+            
+            Files.write(input, Arrays.asList(
+                ImportLinesTest.order(1, 1, "ITEM1"),
+                "",
+                "{\"id\": 2, \"date\": {\"day\": 1",
+                ImportLinesTest.order(3, 0, "ITEM3"),
+                "{\"id\": 4, \"items\": [{\"reference\": 4, \"description\": \"item\", \"depth\": 1, \"height\": 1, \"length\": 1}]}",
+                ImportLinesTest.order(1, 1, "ITEM1"),
+                ImportLinesTest.order(5, 2, "ITEM5")));
+            
+            Management management = new Management();
+            ImportReport report = management.importLines(input);
+            ImportReport.Failure[] failures = report.getFailures();
+            
+            check(report.getImported() == 2, "imported lines: " + report.getImported());
+            check(report.getDuplicated() == 1, "duplicated lines: " + report.getDuplicated());
+            check(failures.length == 3, "failed lines: " + failures.length);
+            check(failures[0].getLine() == 3, "invalid JSON on line 3");
+            check(failures[1].getLine() == 4 && failures[1].getCause() instanceof DateTimeException, "day 0 on line 4");
+            check(failures[2].getLine() == 5 && failures[2].getCause() instanceof OrderException, "number as reference on line 5");
+            check(management.getOrders().length == 2, "orders added");
+            
+// TEST #2:
+
+            System.out.println("TEST #2 : Importing the exported lines... ");
+            
+            Path exported = directory.resolve("exported.jsonl");
+            
+            management.exportLines(exported, false);
+            
+            Management imported = new Management();
+            report = imported.importLines(exported);
+            
+            check(report.getImported() == 2 && report.getFailures().length == 0, "exported lines imported");
+            
+            for (IOrder order : management.getOrders()) {
+                
+                IOrder copy = imported.getOrders()[order.getId() == 1 ? 0 : 1];
+                
+                check(copy.getId() == order.getId(), "id of order " + order.getId());
+                check(copy.getDate().equals(order.getDate()), "date of order " + order.getId());
+                check(copy.getNumberOfItems() == order.getNumberOfItems(), "items of order " + order.getId());
+                check(copy.getItems()[0].getReference().equals(order.getItems()[0].getReference()), "item of order " + order.getId());
+                check(copy.getCustomer().getVat().equals(order.getCustomer().getVat()), "customer of order " + order.getId());
+                check(copy.getDestination().getName().equals(order.getDestination().getName()), "destination of order " + order.getId());
+            }
+            
+            // Exporting the imported orders writes the same lines
+            Path again = directory.resolve("again.jsonl");
+            
+            imported.exportLines(again, false);
+            
+            check(Files.readAllLines(again).equals(Files.readAllLines(exported)), "export of the imported orders");
+            
+// TEST #3:
+
+            System.out.println("TEST #3 : Importing lines with missing or invalid fields... ");
+            
+            String valid = ImportLinesTest.order(6, 1, "ITEM6");
+            String[] invalid = {
+                valid.replace("\"id\": 6", "\"id\": \"6\""),
+                valid.replace("\"id\": 6, ", ""),
+                valid.replace("\"id\": 6", "\"id\": 6.5"),
+                valid.replace("\"id\": 6", "\"id\": 10000000000"),
+                valid.replace("\"day\": 1, ", ""),
+                valid.replace("\"month\": 1", "\"month\": \"January\""),
+                valid.replace("\"year\": 2020", "\"year\": null"),
+                valid.replace("\"reference\": \"ITEM6\", ", ""),
+                valid.replace("\"reference\": \"ITEM6\"", "\"reference\": null"),
+                valid.replace("\"depth\": 1, ", ""),
+                valid.replace("\"height\": 2", "\"height\": \"2\""),
+                valid.replace("\"length\": 3", "\"length\": true"),
+                valid.replace("\"name\": \"John Doe\"", "\"name\": 7")
+            };
+            
+            Path fields = directory.resolve("fields.jsonl");
+            
+            Files.write(fields, Arrays.asList(invalid));
+            Files.write(fields, Arrays.asList(valid), StandardOpenOption.APPEND);
+            
+            Management checked = new Management();
+            
+            report = checked.importLines(fields);
+            failures = report.getFailures();
+            
+            check(failures.length == invalid.length, "failed lines: " + failures.length);
+            
+            for (int i = 0; i < failures.length; i++) {
+                
+                check(failures[i].getLine() == i + 1 && failures[i].getCause() instanceof OrderException, "line " + (i + 1) + ": " + failures[i].getCause());
+            }
+            
+            check(report.getImported() == 1 && checked.getOrder(6) != null, "valid line imported");
+            
+        } finally {
+            
+            try (Stream<Path> files = Files.list(directory)) {
+                
+                files.forEach(file -> file.toFile().delete());
+            }
+            
+            Files.delete(directory);
+        }
+        
+        System.out.println("OK");
+    }
+    
+    /**
+     * Returns the line of an order with an item
+     */
+    private static String order(int id, int day, String reference) {
+        
+        return "{\"id\": " + id + ", \"date\": {\"day\": " + day + ", \"month\": 1, \"year\": 2020}, " +
+                "\"customer\": {\"name\": \"John Doe\", \"vat\": \"111111\", \"address\": " + ADDRESS + ", \"billingAddress\": " + ADDRESS + "}, " +
+                "\"destination\": {\"name\": \"Jane Doe\", \"address\": " + ADDRESS + "}, " +
+                "\"items\": [{\"reference\": \"" + reference + "\", \"description\": \"item\", \"depth\": 1, \"height\": 2, \"length\": 3}]}";
+    }
+    
+    private static void check(boolean condition, String message) {
+        
+        if (!condition) {
+            
+            throw new AssertionError(message);
+        }
+    }
+    
+}
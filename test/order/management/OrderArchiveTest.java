@@ -0,0 +1,244 @@
+package order.management;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import order.base.Address;
+import order.base.AddressPool;
+import order.base.Customer;
+import order.packing.Color;
+import order.packing.Container;
+import order.packing.IItem;
+import order.packing.Item;
+import order.packing.ItemCatalog;
+import order.packing.Position;
+
+/**
+ * Tests of the archive of the closed orders: the orders closed by
+ * Order.close() are archived, the archived orders are read again when the
+ * archive is opened, and an entry partially written is discarded
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class OrderArchiveTest {
+    
+    public static void main(String[] args) throws Exception {
+        
+        Path directory = Files.createTempDirectory("archive");
+        
+        try {
+            
+            Address address = new Address("street", "city", "country", "state", 1);
+            Management management = new Management();
+            Customer customer = management.getCustomerRegistry().resolve("Alice", "111111", address, address);
+            Path path = directory.resolve("orders.archive");
+            
+            check(management.openArchive(path) == 0, "new archive");
+            
+            // Closed with a cancelled shipping that holds an item, so the item is still remaining
+            Order cancelled = OrderArchiveTest.order(1, customer, "A1", "A2");
+            
+            cancelled.addShipping(OrderArchiveTest.shipping("1-1", cancelled.getItems()[0], ShipmentStatus.SHIPPED));
+            cancelled.addShipping(OrderArchiveTest.shipping("1-2", cancelled.getItems()[1], ShipmentStatus.RECEIVED));
+            cancelled.close();
+            
+            // Every item received, but not closed
+            Order received = OrderArchiveTest.order(2, customer, "B1");
+            
+            received.addShipping(OrderArchiveTest.shipping("2-1", received.getItems()[0], ShipmentStatus.RECEIVED));
+            
+            // Every item received and closed
+            Order closed = OrderArchiveTest.order(3, customer, "C1");
+            
+            closed.addShipping(OrderArchiveTest.shipping("3-1", closed.getItems()[0], ShipmentStatus.RECEIVED));
+            closed.close();
+            
+            Order open = OrderArchiveTest.order(4, customer, "D1");
+            
+            management.add(cancelled);
+            management.add(received);
+            management.add(closed);
+            management.add(open);
+            
+// TEST #1:
+
+            System.out.println("TEST #1 : Archiving the closed orders... ");
+            
+            check(cancelled.isClosed() && cancelled.getNumberOfRemaingItemsToSend() == 1, "closed with an item remaining");
+            check(received.isClosed(), "every item received");
+            check(management.archiveClosed() == 2, "orders archived");
+            check(management.getOrder(1) instanceof ArchivedOrder && management.getOrder(3) instanceof ArchivedOrder, "closed orders archived");
+            check(management.getOrder(2) == received && management.getOrder(4) == open, "orders not closed by close() kept");
+            check(management.archiveClosed() == 0, "orders archived once");
+            check(management.getOrders(customer).length == 4, "orders of the customer");
+            
+            for (IOrder order : management.getOrders(customer)) {
+                
+                check(order == management.getOrder(order.getId()), "order " + order.getId() + " of the customer");
+            }
+            
+            OrderArchiveTest.checkArchived(management.getOrder(1), cancelled);
+            OrderArchiveTest.checkArchived(management.getOrder(3), closed);
+            
+            // The item of the cancelled shipping isn't packed again
+            try (PackingService packing = new PackingService(1)) {
+                
+                IShipping[] packed = packing.pack(new IOrder[] { cancelled, management.getOrder(1), open });
+                
+                check(packed[0] == null && packed[1] == null, "closed orders not packed");
+                check(packed[2] != null && packed[2].getContainers().length == 1, "open order packed");
+            }
+            
+// TEST #2:
+
+            System.out.println("TEST #2 : Opening the archive... ");
+            
+            Management reopened = new Management();
+            
+            check(reopened.openArchive(path) == 2, "archived orders read");
+            check(reopened.getCustomerRegistry().size() == 1, "customer registered");
+            check(reopened.getOrders(reopened.getCustomerRegistry().get("111111", "Alice")).length == 2, "orders of the customer");
+            
+            int items = ItemCatalog.getDefault().size(), addresses = AddressPool.getDefault().size();
+            
+            OrderArchiveTest.checkArchived(reopened.getOrder(1), cancelled);
+            OrderArchiveTest.checkArchived(reopened.getOrder(3), closed);
+            
+            IOrder archived = reopened.getOrder(1);
+            
+            check(ItemCatalog.getDefault().size() == items, "items decoded without the default catalog");
+            check(AddressPool.getDefault().size() == addresses, "addresses decoded without the default pool");
+            check(((Item) archived.getItems()[0]).isFrozen(), "frozen items");
+            check(archived.getItems()[0] == archived.getItems()[0], "order decoded once");
+            
+// TEST #3:
+
+            System.out.println("TEST #3 : Opening an archive with a partial entry... ");
+            
+            byte[] bytes = Files.readAllBytes(path);
+            ArchivedOrder first = (ArchivedOrder) management.getOrder(1), second = (ArchivedOrder) management.getOrder(3);
+            
+            if (first.getOffset() > second.getOffset()) {
+                
+                ArchivedOrder t = first;
+                first = second;
+                second = t;
+            }
+            
+            int end = (int) (first.getOffset() + first.getLength());
+            Path partial = directory.resolve("partial.archive");
+            
+            for (int length = end; length < bytes.length; length++) {
+                
+                Files.write(partial, Arrays.copyOf(bytes, length));
+                
+                Management truncated = new Management();
+                
+                check(truncated.openArchive(partial) == 1, "archive cut at " + length + " bytes");
+                check(truncated.getOrder(first.getId()) instanceof ArchivedOrder, "whole entry read from " + length + " bytes");
+                check(truncated.getOrder(second.getId()) == null, "partial entry discarded from " + length + " bytes");
+                check(Files.size(partial) == end, "partial entry removed from " + length + " bytes");
+            }
+            
+            // The orders archived afterwards are appended after the whole entries
+            Management appended = new Management();
+            
+            appended.openArchive(partial);
+            
+            Order another = OrderArchiveTest.order(5, customer, "E1");
+            
+            another.close();
+            appended.add(another);
+            
+            check(appended.archiveClosed() == 1, "order appended");
+            check(new Management().openArchive(partial) == 2, "appended order read");
+            
+        } finally {
+            
+            try (Stream<Path> files = Files.list(directory)) {
+                
+                files.forEach(file -> file.toFile().delete());
+            }
+            
+            Files.delete(directory);
+        }
+        
+        System.out.println("OK");
+    }
+    
+    /**
+     * Returns an order with items of the given references
+     */
+    private static Order order(int id, Customer customer, String... references) throws Exception {
+        
+        Order order = new Order();
+        
+        order.setId(id);
+        order.setDate(1, 2, 2020);
+        order.setCustomer(customer);
+        
+        for (String reference : references) {
+            
+            order.add(new Item(reference, "item " + reference, 1, 2, 3));
+        }
+        
+        return order;
+    }
+    
+    /**
+     * Returns a shipping with a container holding an item, moved from
+     * IN_TREATMENT to the given status
+     */
+    private static Shipping shipping(String reference, IItem item, ShipmentStatus status) throws Exception {
+        
+        Shipping shipping = new Shipping();
+        Container container = new Container(reference, Color.black, Color.blue);
+        
+        container.addItem(item, new Position(0, 0, 0), Color.red);
+        container.close();
+        
+        shipping.setShipmentStatus(ShipmentStatus.IN_TREATMENT);
+        shipping.addContainer(container);
+        
+        for (ShipmentStatus next : new ShipmentStatus[] { ShipmentStatus.CLOSED, ShipmentStatus.SHIPPED, ShipmentStatus.RECEIVED }) {
+            
+            if (shipping.getShipmentStatus() == status) break;
+            
+            shipping.setShipmentStatus(next);
+        }
+        
+        return shipping;
+    }
+    
+    /**
+     * Checks that an archived order has the content of the order archived
+     */
+    private static void checkArchived(IOrder archived, Order order) {
+        
+        check(archived instanceof ArchivedOrder, "order " + order.getId() + " archived");
+        check(archived.isClosed(), "order " + order.getId() + " closed");
+        check(archived.getDate().equals(order.getDate()), "date of order " + order.getId());
+        check(archived.getCustomer().getVat().equals(order.getCustomer().getVat()), "customer of order " + order.getId());
+        check(archived.getNumberOfItems() == order.getNumberOfItems(), "items of order " + order.getId());
+        
+        IShipping[] shippings = archived.getShippings();
+        
+        check(shippings.length == order.getShippings().length, "shippings of order " + order.getId());
+        
+        for (int i = 0; i < shippings.length; i++) {
+            
+            check(shippings[i].getShipmentStatus() == order.getShippings()[i].getShipmentStatus(), "shipping " + i + " of order " + order.getId());
+            check(shippings[i].getContainers()[0].getPackedItems()[0].getItem().getReference().equals(order.getItems()[i].getReference()), "packed item " + i + " of order " + order.getId());
+        }
+    }
+    
+    private static void check(boolean condition, String message) {
+        
+        if (!condition) {
+            
+            throw new AssertionError(message);
+        }
+    }
+    
+}
@@ -0,0 +1,137 @@
+package order.management;
+
+import order.exceptions.ContainerException;
+import order.packing.Item;
+
+/**
+ * Tests of the packing of a batch of orders: an order that fails doesn't
+ * stop the others, the shippings of the orders packed are kept by the
+ * report, and no error is dropped (the errors after the first are
+ * suppressed by the one thrown)
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class PackingServiceTest {
+    
+    public static void main(String[] args) throws Exception {
+        
+        // Packed, an item without volume, an unexpected error and nothing to pack
+        Order packed = PackingServiceTest.order(1, new Item("A1", "item", 1, 2, 3), new Item("A2", "item", 2, 2, 2));
+        Order empty = PackingServiceTest.order(2, new Item("B1", "item", 0, 2, 3));
+        Order broken = PackingServiceTest.order(3, new Broken("C1"));
+        Order nothing = PackingServiceTest.order(4);
+        
+        IOrder[] orders = { packed, empty, broken, nothing };
+        
+        try (PackingService packing = new PackingService(2)) {
+            
+// TEST #1:
+
+            System.out.println("TEST #1 : Report of the failed orders... ");
+            
+            PackingReport report = packing.packAll(orders);
+            IShipping[] shippings = report.getShippings();
+            Exception[] errors = report.getErrors();
+            
+            check(shippings[0] != null && shippings[0].getContainers().length == 1 && errors[0] == null, "order packed");
+            check(shippings[1] == null && errors[1] instanceof ContainerException, "item without volume: " + errors[1]);
+            check(shippings[2] == null && errors[2] instanceof IllegalStateException, "unexpected error kept: " + errors[2]);
+            check(shippings[3] == null && errors[3] == null, "nothing to pack");
+            check(report.getFailed() == 2, "failed orders");
+            check(report.summary().equals("Orders: 4, Packed: 1, Failed: 2"), "summary: " + report.summary());
+            
+// TEST #2:
+
+            System.out.println("TEST #2 : Errors suppressed by the one thrown... ");
+            
+            try {
+                
+                packing.pack(orders);
+                
+                check(false, "errors not thrown");
+                
+            } catch (ContainerException e) {
+                
+                // Expected, with the unexpected error of the next order
+                check(e.getSuppressed().length == 1 && e.getSuppressed()[0] instanceof IllegalStateException, "unexpected error suppressed");
+            }
+            
+            try {
+                
+                packing.pack(new IOrder[] { packed, broken });
+                
+                check(false, "unexpected error not thrown");
+                
+            } catch (IllegalStateException e) {
+                
+                // Expected, an unknown type isn't dropped
+                check(e.getMessage().equals("C1 is broken"), "unexpected error thrown: " + e.getMessage());
+            }
+            
+            check(packing.pack(new IOrder[] { packed, nothing })[0] != null, "orders packed without errors");
+            
+// TEST #3:
+
+            System.out.println("TEST #3 : Errors of the chunks of an order... ");
+            
+            // The first and the third chunks of the items fail
+            Order large = PackingServiceTest.order(5);
+            
+            for (int i = 0; i < 5000; i++) {
+                
+                large.add(i == 0 || i == 4500 ? new Item("L" + i, "item", 1, 0, 1) : new Item("L" + i, "item", 1, 1, 1));
+            }
+            
+            Exception error = packing.packAll(new IOrder[] { large }).getErrors()[0];
+            
+            check(error instanceof ContainerException && error.getMessage().contains("L0"), "error of the first chunk: " + error);
+            check(error.getSuppressed().length == 1 && error.getSuppressed()[0].getMessage().contains("L4500"), "error of the third chunk suppressed");
+        }
+        
+        System.out.println("OK");
+    }
+    
+    /**
+     * An item that fails when packed
+     */
+    private static class Broken extends Item {
+        
+        Broken(String reference) {
+            
+            super(reference, "broken", 1, 1, 1);
+        }
+        
+        @Override
+        public int getVolume() {
+            
+            throw new IllegalStateException(this.getReference() + " is broken");
+        }
+    }
+    
+    /**
+     * Returns an order with the given items
+     */
+    private static Order order(int id, Item... items) throws Exception {
+        
+        Order order = new Order();
+        
+        order.setId(id);
+        order.setDate(1, 2, 2020);
+        
+        for (Item item : items) {
+            
+            order.add(item);
+        }
+        
+        return order;
+    }
+    
+    private static void check(boolean condition, String message) {
+        
+        if (!condition) {
+            
+            throw new AssertionError(message);
+        }
+    }
+    
+}
@@ -0,0 +1,290 @@
+package order.management;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import order.exceptions.ContainerException;
+import order.exceptions.OrderException;
+import order.exceptions.PositionException;
+import order.packing.Color;
+import order.packing.Container;
+import order.packing.IContainer;
+import order.packing.Item;
+import order.packing.Position;
+import order.util.Metrics;
+
+/**
+ * Tests of the shipment status state machine: the table of the transitions,
+ * the transitions of a shipping, the isolation of the listeners and the
+ * containers added while the shipping is closed
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class ShipmentStateMachineTest {
+    
+    private static final int ITEMS = 50;
+    
+    public static void main(String[] args) throws Exception {
+        
+// TEST #1:
+
+        System.out.println("TEST #1 : Transition table... ");
+        
+        for (ShipmentStatus from : ShipmentStatus.values()) {
+            
+            for (ShipmentStatus to : ShipmentStatus.values()) {
+                
+                check(ShipmentStateMachine.isAllowed(from, to) == expected(from, to), from + " to " + to);
+            }
+            
+            check(!ShipmentStateMachine.isAllowed(from, null) && !ShipmentStateMachine.isAllowed(null, from), "null status");
+        }
+        
+// TEST #2:
+
+        System.out.println("TEST #2 : Transitions of a shipping... ");
+        
+        Shipping shipping = new Shipping();
+        
+        check(shipping.getShipmentStatus() == ShipmentStatus.AWAITS_TREATMENT, "initial status");
+        check(refused(shipping, ShipmentStatus.SHIPPED), "AWAITS_TREATMENT to SHIPPED");
+        
+        shipping.setShipmentStatus(ShipmentStatus.IN_TREATMENT);
+        
+        check(refused(shipping, ShipmentStatus.CLOSED), "CLOSED without containers");
+        check(shipping.getShipmentStatus() == ShipmentStatus.IN_TREATMENT, "status kept after a refused transition");
+        
+        shipping.addContainer(container("c1"));
+        shipping.setShipmentStatus(ShipmentStatus.CLOSED);
+        shipping.setShipmentStatus(ShipmentStatus.SHIPPED);
+        shipping.setShipmentStatus(ShipmentStatus.RECEIVED);
+        
+        check(shipping.getShipmentStatus() == ShipmentStatus.RECEIVED, "received");
+        check(refused(shipping, ShipmentStatus.CANCELLED), "RECEIVED to CANCELLED");
+        
+        Shipping cancelled = new Shipping();
+        
+        cancelled.setShipmentStatus(ShipmentStatus.CANCELLED);
+        
+        check(refused(cancelled, ShipmentStatus.IN_TREATMENT), "CANCELLED to IN_TREATMENT");
+        
+        // transitionAll skips the shippings that can't make the transition
+        Shipping[] shippings = { new Shipping(), new Shipping(), cancelled };
+        
+        check(ShipmentStateMachine.transitionAll(Arrays.asList(shippings), ShipmentStatus.IN_TREATMENT) == 2, "transitionAll");
+        
+// TEST #3:
+
+        System.out.println("TEST #3 : A failing listener doesn't fail the transition... ");
+        
+        AtomicInteger notified = new AtomicInteger();
+        
+        ShipmentStateMachine.Listener failing = (s, previous, status) -> {
+            
+            throw new IllegalStateException("listener failure");
+        };
+        ShipmentStateMachine.Listener counting = (s, previous, status) -> notified.incrementAndGet();
+        
+        ShipmentStateMachine.addListener(failing);
+        ShipmentStateMachine.addListener(counting);
+        
+        Metrics.Timer status = Metrics.getDefault().timer("shipping.setShipmentStatus");
+        Metrics.Timer listeners = Metrics.getDefault().timer("shipmentStateMachine.listener");
+        long failures = status.getFailures(), failed = listeners.getFailures();
+        
+        try {
+            
+            Shipping listened = new Shipping();
+            
+            listened.setShipmentStatus(ShipmentStatus.IN_TREATMENT);
+            listened.setShipmentStatus(ShipmentStatus.CANCELLED);
+            
+            check(listened.getShipmentStatus() == ShipmentStatus.CANCELLED, "status changed");
+            check(notified.get() == 2, "the next listener is notified: " + notified.get());
+            check(listeners.getFailures() - failed == 2, "the exceptions are counted: " + (listeners.getFailures() - failed));
+            check(listeners.getLastFailure().endsWith("listener failure"), "the last exception is kept: " + listeners.getLastFailure());
+            check(Metrics.getDefault().toJSONString().contains("\"lastFailure\": \"java.lang.IllegalStateException: listener failure\""), "the last exception is in the metrics");
+            check(status.getFailures() == failures, "the transitions didn't fail");
+            
+        } finally {
+            
+            ShipmentStateMachine.clearListeners();
+        }
+        
+// TEST #4:
+
+        System.out.println("TEST #4 : Adding containers while another thread closes the shipping... ");
+        
+        for (int round = 0; round < 200; round++) {
+            
+            Order order = new Order();
+            
+            for (int i = 0; i < ITEMS; i++) {
+                
+                order.add(new Item("item" + i, "item", 1, 1, 1));
+            }
+            
+            Shipping closing = new Shipping();
+            
+            closing.setShipmentStatus(ShipmentStatus.IN_TREATMENT);
+            closing.addContainer(counted(order, 0));
+            order.addShipping(closing);
+            
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger added = new AtomicInteger(1);
+            Exception[] errors = new Exception[2];
+            
+            Thread adder = new Thread(() -> {
+                
+                try {
+                    
+                    start.await();
+                    
+                    for (int i = 1; i < ITEMS; i++) {
+                        
+                        closing.addContainer(counted(order, i));
+                        added.incrementAndGet();
+                    }
+                    
+                } catch (OrderException e) {
+                    
+                    // Expected, once the shipping is closing or closed
+                    
+                } catch (Exception e) {
+                    
+                    errors[0] = e;
+                }
+            });
+            
+            Thread closer = new Thread(() -> {
+                
+                try {
+                    
+                    start.await();
+                    closing.setShipmentStatus(ShipmentStatus.CLOSED);
+                    
+                } catch (Exception e) {
+                    
+                    errors[1] = e;
+                }
+            });
+            
+            adder.start();
+            closer.start();
+            start.countDown();
+            adder.join();
+            closer.join();
+            
+            check(errors[0] == null && errors[1] == null, "no errors: " + Arrays.toString(errors));
+            check(closing.getShipmentStatus() == ShipmentStatus.CLOSED, "shipping closed");
+            
+            IContainer[] containers = closing.getContainers();
+            
+            check(containers.length == added.get(), "containers added: " + containers.length + ", expected " + added.get());
+            
+            for (IContainer container : containers) {
+                
+                check(((Counted) container).validated, "container " + container.getReference() + " validated before closing");
+            }
+            
+            closing.setShipmentStatus(ShipmentStatus.SHIPPED);
+            
+            check(order.getNumberOfRemaingItemsToSend() == ITEMS - containers.length, "remaining items: " + order.getNumberOfRemaingItemsToSend());
+            check(order.getUnplacedItems().length == ITEMS - containers.length, "unplaced items");
+        }
+        
+        System.out.println("OK");
+    }
+    
+    /**
+     * Container that records if it was validated after it was closed
+     */
+    private static final class Counted extends Container {
+        
+        private volatile boolean validated;
+        
+        Counted(String reference) {
+            
+            super(reference, Color.black, Color.blue);
+        }
+        
+        @Override
+        public void validate() throws ContainerException, PositionException {
+            
+            super.validate();
+            this.validated = true;
+        }
+    }
+    
+    /**
+     * Returns a closed container with an item of the order, not validated
+     * since it was closed
+     */
+    private static Counted counted(Order order, int i) throws Exception {
+        
+        Counted container = new Counted("c" + i);
+        
+        container.addItem(order.getItems()[i], new Position(0, 0, 0), Color.blue);
+        container.close();
+        container.validated = false;
+        
+        return container;
+    }
+    
+    /**
+     * Returns if a transition is in the table: the next status of the
+     * sequence, or CANCELLED from any status but RECEIVED
+     */
+    private static boolean expected(ShipmentStatus from, ShipmentStatus to) {
+        
+        if (to == ShipmentStatus.CANCELLED) return from != ShipmentStatus.RECEIVED;
+        
+        switch (from) {
+            case AWAITS_TREATMENT: return to == ShipmentStatus.IN_TREATMENT;
+            case IN_TREATMENT: return to == ShipmentStatus.CLOSED;
+            case CLOSED: return to == ShipmentStatus.SHIPPED;
+            case SHIPPED: return to == ShipmentStatus.RECEIVED;
+            default: return false;
+        }
+    }
+    
+    /**
+     * Checks if a transition fails with an OrderException
+     */
+    private static boolean refused(Shipping shipping, ShipmentStatus status) throws Exception {
+        
+        try {
+            
+            shipping.setShipmentStatus(status);
+            
+        } catch (OrderException e) {
+            
+            // Expected
+            return true;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Returns a closed container with an item
+     */
+    private static Container container(String reference) throws Exception {
+        
+        Container container = new Container(reference, Color.black, Color.blue);
+        
+        container.addItem(new Item(reference + "-item", "item", 1, 1, 1), new Position(0, 0, 0), Color.blue);
+        container.close();
+        
+        return container;
+    }
+    
+    private static void check(boolean condition, String message) {
+        
+        if (!condition) {
+            
+            throw new AssertionError(message);
+        }
+    }
+    
+}
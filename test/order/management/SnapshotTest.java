@@ -0,0 +1,248 @@
+package order.management;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import order.base.Address;
+import order.base.Customer;
+import order.base.ICustomer;
+import order.base.Person;
+import order.packing.Color;
+import order.packing.Container;
+import order.packing.IContainer;
+import order.packing.Item;
+import order.packing.Position;
+
+/**
+ * Tests of the binary snapshot: the orders read are the orders written, the
+ * customers restored don't take the ids of other customers, and the
+ * truncated or unknown files are refused
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class SnapshotTest {
+    
+    public static void main(String[] args) throws Exception {
+        
+        Path directory = Files.createTempDirectory("snapshot");
+        
+        try {
+            
+            Address address = new Address("street", "city", "country", "state", 1);
+            Management management = new Management();
+            
+            // A registered customer, a customer that isn't registered and an order without customer
+            Customer alice = management.getCustomerRegistry().resolve("Alice", "111111", address, address);
+            Customer bob = new Customer("Bob", address, address);
+            bob.setVat("222222");
+            
+            Order first = new Order();
+            first.setId(1);
+            first.setDate(1, 2, 2020);
+            first.setCustomer(alice);
+            first.setDestination(new Person("Jane Doe", address));
+            first.add(new Item("A1", "first", 1, 2, 3));
+            first.add(new Item("A2", "second", 2, 2, 2));
+            
+            Shipping shipping = new Shipping();
+            shipping.setShipmentStatus(ShipmentStatus.IN_TREATMENT);
+            
+            Container container = new Container("C1", Color.black, Color.blue);
+            container.addItem(first.getItems()[0], new Position(0, 0, 0), Color.red);
+            container.close();
+            
+            shipping.addContainer(container);
+            shipping.setShipmentStatus(ShipmentStatus.CLOSED);
+            first.addShipping(shipping);
+            
+            Order second = new Order();
+            second.setId(2);
+            second.setCustomer(bob);
+            second.add(new Item("B1", "third", 1, 1, 1));
+            
+            Order third = new Order();
+            third.setId(3);
+            third.add(new Item("C1", "fourth", 1, 1, 1));
+            
+            management.add(first);
+            management.add(second);
+            management.add(third);
+            
+            Path path = directory.resolve("orders.snapshot");
+            
+            management.writeSnapshot(path);
+            
+// TEST #1:
+
+            System.out.println("TEST #1 : Reading a snapshot... ");
+            
+            Management restored = new Management();
+            
+            check(restored.readSnapshot(path) == 3, "orders read");
+            check(restored.getCustomerRegistry().size() == 1, "registered customers");
+            
+            for (IOrder order : management.getOrders()) {
+                
+                IOrder copy = restored.getOrder(order.getId());
+                
+                check(copy != null && copy != order, "order " + order.getId() + " read");
+                check(copy.getNumberOfItems() == order.getNumberOfItems(), "items of order " + order.getId());
+                check(copy.getNumberOfRemaingItemsToSend() == order.getNumberOfRemaingItemsToSend(), "items to send of order " + order.getId());
+                check(copy.getShippings().length == order.getShippings().length, "shippings of order " + order.getId());
+                check((copy.getDate() == null) == (order.getDate() == null), "date of order " + order.getId());
+                
+                for (int i = 0; i < order.getNumberOfItems(); i++) {
+                    
+                    check(copy.getItems()[i].getReference().equals(order.getItems()[i].getReference()), "item " + i + " of order " + order.getId());
+                }
+                
+                if (order.getCustomer() == null) {
+                    
+                    check(copy.getCustomer() == null, "order " + order.getId() + " without customer");
+                    
+                } else {
+                    
+                    check(copy.getCustomer().getVat().equals(order.getCustomer().getVat()), "customer of order " + order.getId());
+                    check(restored.getOrders(copy.getCustomer())[0] == copy, "order " + order.getId() + " of its customer");
+                }
+            }
+            
+            IOrder copy = restored.getOrder(1);
+            IContainer[] containers = copy.getShippings()[0].getContainers();
+            
+            check(copy.getDate().equals(first.getDate()), "date");
+            check(copy.getDestination().getName().equals("Jane Doe"), "destination");
+            check(copy.getCustomer() == restored.getCustomerRegistry().get("111111", "Alice"), "registered customer");
+            check(copy.getShippings()[0].getShipmentStatus() == ShipmentStatus.CLOSED, "shipping status");
+            check(containers.length == 1 && containers[0].isClosed(), "closed container");
+            check(containers[0].getPackedItems()[0].getItem().getReference().equals("A1"), "packed item");
+            check(containers[0].getPackedItems()[0].getColor() == Color.red, "packed item color");
+            
+            // A snapshot of the restored orders reads the same
+            Path again = directory.resolve("again.snapshot");
+            
+            restored.writeSnapshot(again);
+            
+            check(new Management().readSnapshot(again) == 3, "orders of the restored snapshot");
+            
+// TEST #2:
+
+            System.out.println("TEST #2 : Restoring customers with ids already given... ");
+            
+            Customer given = Customer.restore(alice.getCustomerId(), "Carol", address, address);
+            
+            check(given.getCustomerId() != alice.getCustomerId(), "an id already given isn't restored");
+            
+            int free = new Customer("Dave", address, address).getCustomerId() + 1000;
+            
+            check(Customer.restore(free, "Erin", address, address).getCustomerId() == free, "a free id is restored");
+            check(new Customer("Frank", address, address).getCustomerId() > free, "new ids after the restored ones");
+            
+            // A manager with an order of the (unregistered) customer whose id is in the snapshot
+            Management other = new Management();
+            Order own = new Order();
+            
+            own.setId(100);
+            own.setCustomer(alice);
+            own.add(new Item("D1", "fifth", 1, 1, 1));
+            other.add(own);
+            
+            check(other.readSnapshot(path) == 3, "orders read into a manager with orders");
+            check(other.getOrders(alice).length == 1 && other.getOrders(alice)[0] == own, "orders of the customer already in the manager");
+            
+            for (int id = 1; id <= 3; id++) {
+                
+                ICustomer customer = other.getOrder(id).getCustomer();
+                
+                if (customer == null) continue;
+                
+                check(customer.getCustomerId() != alice.getCustomerId() && customer.getCustomerId() != bob.getCustomerId(), "new id of the customer of order " + id);
+                check(other.getOrders(customer).length == 1 && other.getOrders(customer)[0] == other.getOrder(id), "orders of the customer of order " + id);
+            }
+            
+// TEST #3:
+
+            System.out.println("TEST #3 : Reading a truncated snapshot... ");
+            
+            byte[] bytes = Files.readAllBytes(path);
+            Path truncated = directory.resolve("truncated.snapshot");
+            
+            for (int length = 0; length < bytes.length; length++) {
+                
+                Files.write(truncated, Arrays.copyOf(bytes, length));
+                
+                Management empty = new Management();
+                
+                check(refused(empty, truncated), "snapshot truncated to " + length + " bytes");
+                check(empty.getOrders().length == 0, "no orders added from " + length + " bytes");
+            }
+            
+// TEST #4:
+
+            System.out.println("TEST #4 : Reading a file that isn't a snapshot... ");
+            
+            Path wrong = directory.resolve("wrong.snapshot");
+            byte[] magic = bytes.clone();
+            
+            magic[0] = 'X';
+            Files.write(wrong, magic);
+            
+            check(refused(new Management(), wrong), "wrong magic number");
+            
+            // The version is after the 7 bytes of the magic number
+            byte[] version = bytes.clone();
+            
+            version[7] = 2;
+            Files.write(wrong, version);
+            
+            check(refused(new Management(), wrong), "unknown version");
+            
+            // An archive has another magic number
+            Path archive = directory.resolve("orders.archive");
+            
+            new Management().openArchive(archive);
+            
+            check(refused(new Management(), archive), "archive read as a snapshot");
+            
+        } finally {
+            
+            try (Stream<Path> files = Files.list(directory)) {
+                
+                files.forEach(file -> file.toFile().delete());
+            }
+            
+            Files.delete(directory);
+        }
+        
+        System.out.println("OK");
+    }
+    
+    /**
+     * Checks if reading a snapshot fails with an IOException
+     */
+    private static boolean refused(Management management, Path path) {
+        
+        try {
+            
+            management.readSnapshot(path);
+            
+        } catch (IOException e) {
+            
+            // Expected
+            return true;
+        }
+        
+        return false;
+    }
+    
+    private static void check(boolean condition, String message) {
+        
+        if (!condition) {
+            
+            throw new AssertionError(message);
+        }
+    }
+    
+}
@@ -0,0 +1,225 @@
+package order.packing;
+
+import order.exceptions.ContainerException;
+import order.exceptions.PositionException;
+
+/**
+ * Tests of the CompactContainer: the items added and removed (the last item
+ * takes the place of the removed one), the views of the packed items, the
+ * occupancy grid after moving items, the validation, the JSON (the same of
+ * a Container with the same items) and the packing into compact containers
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class CompactContainerTest {
+    
+    public static void main(String[] args) throws Exception {
+        
+// TEST #1:
+
+        System.out.println("TEST #1 : Adding items... ");
+        
+        CompactContainer container = new CompactContainer("C1", Color.black, Color.blue);
+        Item a = new Item("A", "first", 1, 1, 2), b = new Item("B", "second", 2, 1, 1), c = new Item("C", "third", 1, 2, 1);
+        
+        check(container.addItem(a, new Position(0, 0, 0), Color.red), "item added");
+        check(container.addItem(b, new Position(2, 0, 0), Color.green), "second item added");
+        check(container.addItem(c, new Position(3, 0, 0), Color.yellow), "third item added");
+        check(!container.addItem(new Item("A", "other", 1, 1, 1), new Position(4, 4, 4), Color.red), "repeated reference refused");
+        
+        check(container.getNumberOfItems() == 3, "number of items");
+        check(container.getOccupiedVolume() == 6 && container.getRemainingVolume() == 119, "occupied volume");
+        check(container.getItem("B").getReference().equals("B") && container.getItem("B").getVolume() == 2, "item by reference");
+        check(container.getItem("D") == null, "missing item");
+        check(!container.isFree(new Position(0, 0, 0), 1, 1, 1) && container.isFree(new Position(4, 0, 0), 1, 1, 1), "occupied cells");
+        
+        check(failed(() -> container.addItem(null, new Position(0, 0, 0), Color.red), ContainerException.class), "null item");
+        check(failed(() -> container.addItem(a, null, Color.red), ContainerException.class), "null position");
+        check(failed(() -> container.removeItem(null), ContainerException.class), "null item removed");
+        
+// TEST #2:
+
+        System.out.println("TEST #2 : Removing items... ");
+        
+        IItemPacked[] views = container.getPackedItems();
+        
+        check(container.removeItem(a) && !container.removeItem(a), "item removed once");
+        check(container.getNumberOfItems() == 2 && container.getItem("A") == null, "removed item");
+        check(container.getOccupiedVolume() == 4, "occupied volume after the removal");
+        check(container.isFree(new Position(0, 0, 0), 2, 1, 1), "cells of the removed item freed");
+        
+        // The last item took the place of the removed one
+        IItemPacked[] packed = container.getPackedItems();
+        
+        check(packed[0].getItem().getReference().equals("C") && packed[1].getItem().getReference().equals("B"), "last item moved to the free place");
+        
+// TEST #3:
+
+        System.out.println("TEST #3 : Views of the packed items after a removal... ");
+        
+        // The views follow their items to the new places
+        check(views[2].getItem().getReference().equals("C") && views[2].getColor() == Color.yellow, "view of the moved item");
+        check(views[2].getPosition().getX() == 3, "position of the moved item");
+        check(views[1].getItem().getReference().equals("B") && views[1].getColor() == Color.green, "view of a kept item");
+        
+        views[2].setColorEdge(Color.purple);
+        
+        check(container.getPackedItems()[0].getColorEdge() == Color.purple, "color changed by the view of the moved item");
+        
+        // The view of the removed item fails, even if another item has its place
+        check(failed(views[0]::getItem, IllegalStateException.class), "item of a removed view");
+        check(failed(views[0]::getPosition, IllegalStateException.class), "position of a removed view");
+        check(failed(() -> views[0].setColor(Color.red), IllegalStateException.class), "color of a removed view");
+        
+// TEST #4:
+
+        System.out.println("TEST #4 : Moving items... ");
+        
+        container.addItem(a, new Position(0, 0, 0), Color.red);
+        
+        IItemPacked moved = container.getPackedItems()[2];
+        
+        check(moved.getItem().getReference().equals("A"), "item added again");
+        
+        moved.setPosition(new Position(0, 4, 0));
+        
+        check(container.isFree(new Position(0, 0, 0), 2, 1, 1) && !container.isFree(new Position(0, 4, 0), 1, 1, 1), "cells of the moved item");
+        
+        // Moved over another item: the shared cells can't be freed when
+        // moved again, so the grid is filled again from the items
+        moved.setPosition(new Position(2, 0, 0));
+        
+        check(failed(container::validate, PositionException.class), "overlapping items");
+        
+        moved.setPosition(new Position(0, 3, 3));
+        
+        check(container.isFree(new Position(0, 4, 0), 2, 1, 1), "cells left by the moved item");
+        check(!container.isFree(new Position(2, 0, 0), 1, 1, 1) && !container.isFree(new Position(1, 3, 3), 1, 1, 1), "cells of the items after the grid is filled again");
+        check(container.isFree(new Position(4, 0, 0), 1, 1, 1), "free cell after the grid is filled again");
+        
+        container.validate();
+        
+        IPosition free = container.findFreeSpace(5, 1, 5);
+        
+        check(free != null && free.getY() == 2, "free layer: " + (free != null ? free.getY() : -1));
+        
+// TEST #5:
+
+        System.out.println("TEST #5 : Validation... ");
+        
+        CompactContainer outside = new CompactContainer("C2", Color.black, Color.blue);
+        
+        outside.addItem(new Item("O", "outside", 1, 1, 2), new Position(4, 0, 0), Color.red);
+        
+        check(failed(outside::validate, PositionException.class), "item outside the limits");
+        check(failed(outside::close, PositionException.class) && !outside.isClosed(), "container not closed");
+        
+        CompactContainer negative = new CompactContainer("C3", Color.black, Color.blue);
+        
+        negative.addItem(new Item("N", "negative", 1, 1, 1), new Position(0, 0, -1), Color.red);
+        
+        check(failed(negative::validate, PositionException.class), "item at a negative position");
+        
+        CompactContainer overlapping = new CompactContainer("C4", Color.black, Color.blue);
+        
+        overlapping.addItem(new Item("P", "first", 2, 2, 2), new Position(0, 0, 0), Color.red);
+        overlapping.addItem(new Item("Q", "second", 2, 2, 2), new Position(1, 1, 1), Color.red);
+        
+        check(failed(overlapping::validate, PositionException.class), "overlapping items");
+        
+        overlapping.removeItem(new Item("Q", "second", 2, 2, 2));
+        overlapping.close();
+        
+        check(overlapping.isClosed(), "valid container closed");
+        check(failed(() -> overlapping.addItem(a, new Position(4, 4, 4), Color.red), ContainerException.class), "item added to a closed container");
+        check(failed(() -> overlapping.removeItem(a), ContainerException.class), "item removed from a closed container");
+        
+// TEST #6:
+
+        System.out.println("TEST #6 : JSON of the same items of a Container... ");
+        
+        Container full = new Container("C5", Color.black, Color.blue);
+        CompactContainer compact = new CompactContainer("C5", Color.black, Color.blue);
+        
+        for (int i = 0; i < 10; i++) {
+            
+            Item item = new Item("J" + i, i % 2 == 0 ? "item " + i : null, 1, 1, 1);
+            
+            full.addItem(item, new Position(i % 5, 0, i / 5), Color.values()[i % Color.values().length]);
+            compact.addItem(item, new Position(i % 5, 0, i / 5), Color.values()[i % Color.values().length]);
+        }
+        
+        check(compact.toJSONString().equals(full.toJSONString()), "JSON of the added items");
+        
+        // Both move the last item to the place of the removed one
+        full.removeItem(full.getItem("J3"));
+        compact.removeItem(compact.getItem("J3"));
+        full.close();
+        compact.close();
+        
+        check(compact.toJSONString().equals(full.toJSONString()), "JSON after a removal: " + compact.toJSONString());
+        
+// TEST #7:
+
+        System.out.println("TEST #7 : Packing into compact containers... ");
+        
+        IItem[] items = new IItem[300];
+        
+        for (int i = 0; i < items.length; i++) {
+            
+            items[i] = new Item("M" + i, "item", 1 + i % 3, 1 + i % 5, 1 + i % 4);
+        }
+        
+        PackingResult<Container> expected = new Packer("P", Color.black, Color.blue, 2).pack(items);
+        PackingResult<CompactContainer> result = new Packer("P", Color.black, Color.blue, 2).packCompact(items);
+        
+        check(result.getContainerCount() == expected.getContainerCount(), "number of containers");
+        check(result.getPackedVolume() == expected.getPackedVolume(), "packed volume");
+        
+        for (int i = 0; i < result.getContainerCount(); i++) {
+            
+            CompactContainer packedContainer = result.getContainers()[i];
+            
+            check(packedContainer.isClosed(), "closed container " + packedContainer.getReference());
+            packedContainer.validate();
+            check(packedContainer.toJSONString().equals(expected.getContainers()[i].toJSONString()), "same placements in container " + packedContainer.getReference());
+        }
+        
+        System.out.println("OK");
+    }
+    
+    /**
+     * A call that is expected to throw
+     */
+    private interface Call {
+        
+        void run() throws Exception;
+    }
+    
+    /**
+     * Checks if the call fails with an exception of the given type
+     */
+    private static boolean failed(Call call, Class<? extends Exception> type) {
+        
+        try {
+            
+            call.run();
+            
+        } catch (Exception e) {
+            
+            // Expected, if of the given type
+            return type.isInstance(e);
+        }
+        
+        return false;
+    }
+    
+    private static void check(boolean condition, String message) {
+        
+        if (!condition) {
+            
+            throw new AssertionError(message);
+        }
+    }
+    
+}
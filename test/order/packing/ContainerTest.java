@@ -0,0 +1,95 @@
+package order.packing;
+
+import order.exceptions.PositionException;
+
+/**
+ * Tests of the occupancy grid of a Container when its items are moved: the
+ * packed items update the grid when their position is set, and a copy of
+ * the position doesn't move them
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class ContainerTest {
+    
+    public static void main(String[] args) throws Exception {
+        
+// TEST #1:
+
+        System.out.println("TEST #1 : Moving items... ");
+        
+        Container container = new Container("C1", Color.black, Color.blue);
+        Item a = new Item("A", "first", 1, 1, 2), b = new Item("B", "second", 2, 1, 1);
+        
+        container.addItem(a, new Position(0, 0, 0), Color.red);
+        container.addItem(b, new Position(2, 0, 0), Color.green);
+        
+        IItemPacked moved = container.getPackedItems()[0];
+        
+        moved.setPosition(new Position(0, 4, 0));
+        
+        check(container.isFree(new Position(0, 0, 0), 2, 1, 1) && !container.isFree(new Position(0, 4, 0), 2, 1, 1), "cells of the moved item");
+        check(container.findFreeSpace(5, 1, 5).getY() == 1, "lowest free layer after the move");
+        
+        // Moved over another item: the shared cells can't be freed when
+        // moved again, so the grid is filled again from the items
+        moved.setPosition(new Position(2, 0, 1));
+        
+        check(failed(container), "overlapping items");
+        
+        moved.setPosition(new Position(3, 3, 3));
+        
+        check(container.isFree(new Position(0, 4, 0), 2, 1, 1) && container.isFree(new Position(3, 0, 1), 2, 1, 1), "cells left by the moved item");
+        check(!container.isFree(new Position(2, 0, 1), 1, 1, 1) && !container.isFree(new Position(4, 3, 3), 1, 1, 1), "cells of the items after the grid is filled again");
+        
+        container.validate();
+        
+// TEST #2:
+
+        System.out.println("TEST #2 : Positions of the packed items... ");
+        
+        // The position returned is a copy, and the one set is copied
+        Position position = new Position(0, 0, 0);
+        
+        moved.setPosition(position);
+        position.setX(4);
+        ((Position) moved.getPosition()).setY(4);
+        
+        check(moved.getPosition().getX() == 0 && moved.getPosition().getY() == 0, "position kept: " + moved.getPosition().getX() + ", " + moved.getPosition().getY());
+        check(!container.isFree(new Position(0, 0, 0), 2, 1, 1) && container.isFree(new Position(4, 4, 0), 1, 1, 1), "cells of the kept position");
+        
+        // A removed item doesn't change the grid of the container anymore
+        container.removeItem(a);
+        moved.setPosition(new Position(3, 4, 4));
+        
+        check(container.isFree(new Position(3, 4, 4), 2, 1, 1) && container.isFree(new Position(0, 0, 0), 2, 1, 1), "removed item not in the grid");
+        
+        System.out.println("OK");
+    }
+    
+    /**
+     * Checks if the validation of the container fails with a PositionException
+     */
+    private static boolean failed(Container container) throws Exception {
+        
+        try {
+            
+            container.validate();
+            
+        } catch (PositionException e) {
+            
+            // Expected
+            return true;
+        }
+        
+        return false;
+    }
+    
+    private static void check(boolean condition, String message) {
+        
+        if (!condition) {
+            
+            throw new AssertionError(message);
+        }
+    }
+    
+}
@@ -0,0 +1,127 @@
+package order.packing;
+
+import order.exceptions.ContainerException;
+
+/**
+ * Tests of the Packer: the items fit in the fewest containers for the exact
+ * fits, every item is placed once in a valid container, and the items that
+ * can't be packed are rejected
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class PackerTest {
+    
+    public static void main(String[] args) throws Exception {
+        
+// TEST #1:
+
+        System.out.println("TEST #1 : Exact fits... ");
+        
+        PackingResult<Container> result = new Packer().pack(items("U", 125, 1, 1, 1));
+        
+        check(result.getContainerCount() == 1, "125 unit items in one container");
+        check(result.getFillRatio() == 1.0, "full container");
+        
+        result = new Packer().pack(items("L", 5, 5, 5, 1));
+        
+        check(result.getContainerCount() == 1, "5 layers in one container");
+        
+        result = new Packer().pack(items("L", 6, 5, 5, 1));
+        
+        check(result.getContainerCount() == 2, "6 layers in two containers");
+        check(result.getPackedVolume() == 150, "packed volume of 6 layers");
+        
+        result = new Packer().pack(items("B", 3, 5, 5, 5));
+        
+        check(result.getContainerCount() == 3, "a container for each full size item");
+        
+// TEST #2:
+
+        System.out.println("TEST #2 : Every item placed once in a valid container... ");
+        
+        IItem[] mixed = new IItem[300];
+        long volume = 0;
+        
+        for (int i = 0; i < mixed.length; i++) {
+            
+            mixed[i] = new Item("M" + i, "item", 1 + i % 3, 1 + i % 5, 1 + i % 4);
+            volume += mixed[i].getVolume();
+        }
+        
+        result = new Packer("P", Color.black, Color.blue, 2).pack(mixed);
+        
+        int placed = 0;
+        
+        for (Container container : result.getContainers()) {
+            
+            check(container.isClosed(), "closed container " + container.getReference());
+            container.validate();
+            
+            for (IItemPacked packed : container.getPackedItems()) {
+                
+                check(packed.getItem().getReference().startsWith("M"), "packed item");
+                placed++;
+            }
+        }
+        
+        check(placed == mixed.length, "placed items: " + placed);
+        check(result.getPackedVolume() == volume, "packed volume");
+        check(result.getFillRatio() > 0 && result.getFillRatio() <= 1, "fill ratio");
+        
+        check(new Packer().pack(new IItem[0]).getContainerCount() == 0, "no items, no containers");
+        
+// TEST #3:
+
+        System.out.println("TEST #3 : Items that can't be packed... ");
+        
+        check(rejected(new Item("big", "item", 1, 1, 6)), "item longer than a container");
+        check(rejected(new Item("zero", "item", 0, 0, 0)), "item without size");
+        check(rejected(new Item("flat", "item", 1, 0, 1)), "item without height");
+        check(rejected(new Item("negative", "item", -1, 1, 1)), "item with a negative size");
+        check(rejected(new Item("same", "item", 1, 1, 1), new Item("same", "item", 1, 1, 1)), "repeated reference");
+        
+        System.out.println("OK");
+    }
+    
+    /**
+     * Returns items with the same size
+     */
+    private static IItem[] items(String prefix, int n, int depth, int height, int length) {
+        
+        IItem[] items = new IItem[n];
+        
+        for (int i = 0; i < n; i++) {
+            
+            items[i] = new Item(prefix + i, "item", depth, height, length);
+        }
+        
+        return items;
+    }
+    
+    /**
+     * Checks if the packing of the items fails with a ContainerException
+     */
+    private static boolean rejected(IItem... items) throws Exception {
+        
+        try {
+            
+            new Packer().pack(items);
+            
+        } catch (ContainerException e) {
+            
+            // Expected
+            return true;
+        }
+        
+        return false;
+    }
+    
+    private static void check(boolean condition, String message) {
+        
+        if (!condition) {
+            
+            throw new AssertionError(message);
+        }
+    }
+    
+}
@@ -0,0 +1,225 @@
+package order.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Tests of DinArray: the growth of the backing array, the removals (shifting
+ * and unordered), the index checks and the iterator
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class DinArrayTest {
+    
+    public static void main(String[] args) {
+        
+// TEST #1:
+
+        System.out.println("TEST #1 : Growth of the backing array... ");
+        
+        for (int capacity : new int[] { 0, 1, 10 }) {
+            
+            DinArray<Integer> array = new DinArray<>(Integer.class, capacity);
+            
+            for (int i = 0; i < 10000; i++) {
+                
+                array.add(i);
+            }
+            
+            check(array.size() == 10000, "size after 10000 adds, from capacity " + capacity);
+            check(inOrder(array, 0, 10000), "elements after growing from capacity " + capacity);
+        }
+        
+        DinArray<Integer> array = new DinArray<>(Integer.class);
+        
+        array.ensureCapacity(100);
+        array.addAll(new Integer[] { 0, 1, 2 });
+        
+        DinArray<Integer> more = new DinArray<>(Integer.class, 0);
+        
+        more.add(3);
+        more.add(4);
+        array.addAll(more);
+        array.addAll(new Integer[0]);
+        
+        check(array.size() == 5 && inOrder(array, 0, 5), "addAll");
+        
+        array.trimToSize();
+        array.add(5);
+        
+        check(array.size() == 6 && inOrder(array, 0, 6), "add after trimToSize");
+        
+        array.clear();
+        
+        check(array.size() == 0 && !array.iterator().hasNext(), "clear");
+        
+        array.add(0);
+        
+        check(array.size() == 1 && array.get(0) == 0, "add after clear");
+        check(refused(() -> new DinArray<>(Integer.class, -1), IllegalArgumentException.class), "negative capacity");
+        
+// TEST #2:
+
+        System.out.println("TEST #2 : Removals... ");
+        
+        array = DinArrayTest.range(10);
+        
+        check(array.removeAt(0) == 0 && array.removeAt(8) == 9 && array.removeAt(3) == 4, "removeAt returns the element");
+        check(array.size() == 7 && equals(array, 1, 2, 3, 5, 6, 7, 8), "removeAt keeps the order");
+        
+        check(array.remove(5) && !array.remove(5) && !array.remove(42), "remove of a present and a missing element");
+        check(equals(array, 1, 2, 3, 6, 7, 8), "remove keeps the order");
+        
+        check(array.swapRemove(1) == 2, "swapRemove returns the element");
+        check(equals(array, 1, 8, 3, 6, 7), "swapRemove moves the last element");
+        check(array.swapRemove(4) == 7 && equals(array, 1, 8, 3, 6), "swapRemove of the last element");
+        
+        check(array.removeUnordered(1) && !array.removeUnordered(1), "removeUnordered of a present and a missing element");
+        check(equals(array, 6, 8, 3), "removeUnordered moves the last element");
+        check(array.indexOf(3) == 2 && array.indexOf(1) == -1, "indexOf");
+        
+        array.set(0, 9);
+        
+        check(equals(array, 9, 8, 3), "set");
+        
+        // The removed positions are cleared, the elements aren't kept by the array
+        array = DinArrayTest.range(3);
+        array.swapRemove(0);
+        array.removeAt(0);
+        array.removeAt(0);
+        
+        check(array.size() == 0 && !array.iterator().hasNext(), "every element removed");
+        
+// TEST #3:
+
+        System.out.println("TEST #3 : Index checks... ");
+        
+        DinArray<Integer> checked = DinArrayTest.range(5);
+        
+        for (int i : new int[] { -1, 5, 6 }) {
+            
+            check(refused(() -> checked.get(i), ArrayIndexOutOfBoundsException.class), "get(" + i + ")");
+            check(refused(() -> checked.set(i, 0), ArrayIndexOutOfBoundsException.class), "set(" + i + ")");
+            check(refused(() -> checked.removeAt(i), ArrayIndexOutOfBoundsException.class), "removeAt(" + i + ")");
+            check(refused(() -> checked.swapRemove(i), ArrayIndexOutOfBoundsException.class), "swapRemove(" + i + ")");
+        }
+        
+        // A position of the backing array after the last element isn't an element
+        checked.removeAt(4);
+        
+        check(refused(() -> checked.get(4), ArrayIndexOutOfBoundsException.class), "get after the last element");
+        check(checked.size() == 4 && inOrder(checked, 0, 4), "elements kept after the refused calls");
+        
+// TEST #4:
+
+        System.out.println("TEST #4 : Iterator... ");
+        
+        // The iterator returns the size elements, null ones included (it used to stop at the first null)
+        DinArray<String> strings = new DinArray<>(String.class, 2);
+        
+        strings.add("a");
+        strings.add(null);
+        strings.add("c");
+        
+        Iterator<String> it = strings.iterator();
+        
+        check(it.hasNext() && "a".equals(it.next()), "first element");
+        check(it.hasNext() && it.next() == null, "null element");
+        check(it.hasNext() && "c".equals(it.next()), "element after a null");
+        check(!it.hasNext(), "end of the elements");
+        check(refused(it::next, NoSuchElementException.class), "next after the end");
+        
+        // Only the elements are returned, not the free positions of the backing array
+        DinArray<Integer> free = new DinArray<>(Integer.class, 100);
+        
+        free.add(1);
+        
+        Iterator<Integer> one = free.iterator();
+        
+        check(one.next() == 1 && !one.hasNext(), "free positions not iterated");
+        check(!new DinArray<>(Integer.class, 0).iterator().hasNext(), "empty array");
+        
+        System.out.println("OK");
+    }
+    
+    /**
+     * A call that is expected to throw
+     */
+    private interface Call {
+        
+        void run();
+    }
+    
+    /**
+     * Returns a DinArray with the elements 0 to n - 1
+     */
+    private static DinArray<Integer> range(int n) {
+        
+        DinArray<Integer> array = new DinArray<>(Integer.class);
+        
+        for (int i = 0; i < n; i++) {
+            
+            array.add(i);
+        }
+        
+        return array;
+    }
+    
+    /**
+     * Checks if the elements are from to to - 1, by get, toArray and the
+     * iterator
+     */
+    private static boolean inOrder(DinArray<Integer> array, int from, int to) {
+        
+        Integer[] elements = new Integer[to - from];
+        
+        for (int i = 0; i < elements.length; i++) {
+            
+            elements[i] = from + i;
+        }
+        
+        return equals(array, elements);
+    }
+    
+    private static boolean equals(DinArray<Integer> array, Integer... elements) {
+        
+        Integer[] copy = array.toArray();
+        
+        if (array.size() != elements.length || copy.length != elements.length) return false;
+        
+        int i = 0;
+        
+        for (Integer element : array) {
+            
+            if (!element.equals(elements[i]) || !array.get(i).equals(elements[i]) || !copy[i].equals(elements[i])) return false;
+            
+            i++;
+        }
+        
+        return i == elements.length;
+    }
+    
+    private static boolean refused(Call call, Class<? extends RuntimeException> type) {
+        
+        try {
+            
+            call.run();
+            
+        } catch (RuntimeException e) {
+            
+            // Expected, if of the given type
+            return type.isInstance(e);
+        }
+        
+        return false;
+    }
+    
+    private static void check(boolean condition, String message) {
+        
+        if (!condition) {
+            
+            throw new AssertionError(message);
+        }
+    }
+    
+}
@@ -0,0 +1,198 @@
+package order.util;
+
+/**
+ * Tests of DinMap: removal (tombstones in the probe chains) and the rebuild
+ * of the arrays (compaction and growth)
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class DinMapTest {
+    
+    /**
+     * Key with a chosen hash code, to build probe chains
+     */
+    private static final class Key {
+        
+        private final int id, hash;
+        
+        Key(int id, int hash) {
+            
+            this.id = id;
+            this.hash = hash;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            
+            return o instanceof Key && ((Key) o).id == this.id;
+        }
+        
+        @Override
+        public int hashCode() {
+            
+            return this.hash;
+        }
+    }
+    
+    public static void main(String[] args) {
+        
+// TEST #1:
+
+        System.out.println("TEST #1 : Put, replace and get... ");
+        
+        DinMap<Integer, String> map = new DinMap<>();
+        
+        for (int i = 0; i < 1000; i++) {
+            
+            check(map.put(i, "v" + i) == null, "new key returns null");
+        }
+        
+        check(map.size() == 1000, "size after 1000 puts");
+        check("v7".equals(map.put(7, "w7")), "replace returns the previous value");
+        check(map.size() == 1000, "replace keeps the size");
+        check("w7".equals(map.get(7)), "replaced value");
+        check(!map.putIfAbsent(7, "x"), "putIfAbsent of an existing key");
+        check(map.get(-1) == null && map.get(null) == null, "missing keys");
+        check(keysInOrder(map, 0, 1000, 1), "insertion order after replace");
+        
+// TEST #2:
+
+        System.out.println("TEST #2 : Remove with tombstones... ");
+        
+        for (int i = 0; i < 1000; i += 2) {
+            
+            check(("v" + i).equals(map.remove(i)), "remove returns the value");
+        }
+        
+        check(map.remove(0) == null, "remove of a removed key");
+        check(map.size() == 500, "size after removing half");
+        
+        for (int i = 0; i < 1000; i++) {
+            
+            check(map.containsKey(i) == (i % 2 == 1), "containsKey after remove: " + i);
+        }
+        
+        check(keysInOrder(map, 1, 1001, 2), "insertion order after remove");
+        
+        // A removed key put again goes to the end
+        map.put(0, "again");
+        
+        Integer last = null;
+        
+        for (Integer key : map.keys()) last = key;
+        
+        check(last == 0, "a key put again is the last one");
+        
+// TEST #3:
+
+        System.out.println("TEST #3 : Removal in the middle of a probe chain... ");
+        
+        DinMap<Key, Integer> chain = new DinMap<>();
+        Key[] keys = new Key[20];
+        
+        for (int i = 0; i < keys.length; i++) {
+            
+            keys[i] = new Key(i, 42);
+            chain.put(keys[i], i);
+        }
+        
+        chain.remove(keys[5]);
+        chain.remove(keys[0]);
+        
+        for (int i = 0; i < keys.length; i++) {
+            
+            Integer value = chain.get(new Key(i, 42));
+            
+            check(i == 5 || i == 0 ? value == null : Integer.valueOf(i).equals(value), "get after a tombstone in the chain: " + i);
+        }
+        
+        // The slots of removed entries are reused
+        chain.put(new Key(100, 42), 100);
+        
+        check(chain.get(new Key(100, 42)) == 100 && chain.get(keys[19]) == 19, "put after a tombstone in the chain");
+        
+// TEST #4:
+
+        System.out.println("TEST #4 : Rebuild by compaction and growth... ");
+        
+        DinMap<Integer, Integer> churn = new DinMap<>();
+        
+        // Many puts and removes with few live entries compact the arrays
+        for (int i = 0; i < 100000; i++) {
+            
+            churn.put(i, i);
+            
+            if (i >= 4) churn.remove(i - 4);
+        }
+        
+        check(churn.size() == 4, "size after the churn");
+        check(keysInOrder(churn, 99996, 100000, 1), "order after the compactions");
+        
+        for (int i = 0; i < 99996; i++) {
+            
+            check(!churn.containsKey(i), "removed key after compaction: " + i);
+        }
+        
+        // Growth keeps the entries and their order
+        DinMap<Integer, Integer> grow = new DinMap<>(0);
+        
+        for (int i = 0; i < 50000; i++) {
+            
+            grow.put(i * 31, i);
+        }
+        
+        for (int i = 0; i < 50000; i++) {
+            
+            check(grow.get(i * 31) == i, "get after growth: " + i);
+        }
+        
+        check(keysInOrder(grow, 0, 50000 * 31, 31), "order after growth");
+        
+// TEST #5:
+
+        System.out.println("TEST #5 : Clear and null keys... ");
+        
+        grow.clear();
+        
+        check(grow.size() == 0 && grow.isEmpty() && !grow.keys().iterator().hasNext(), "empty after clear");
+        
+        grow.put(1, 1);
+        
+        check(grow.get(1) == 1 && grow.size() == 1, "put after clear");
+        
+        try {
+            
+            grow.put(null, 1);
+            check(false, "put of a null key");
+            
+        } catch (NullPointerException e) {
+            
+            // Expected
+        }
+        
+        System.out.println("OK");
+    }
+    
+    private static boolean keysInOrder(DinMap<Integer, ?> map, int from, int to, int step) {
+        
+        int expected = from;
+        
+        for (Integer key : map.keys()) {
+            
+            if (key != expected) return false;
+            
+            expected += step;
+        }
+        
+        return expected == to;
+    }
+    
+    private static void check(boolean condition, String message) {
+        
+        if (!condition) {
+            
+            throw new AssertionError(message);
+        }
+    }
+    
+}
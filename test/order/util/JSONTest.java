@@ -0,0 +1,92 @@
+package order.util;
+
+import java.io.StringWriter;
+import order.base.Address;
+import order.base.Person;
+import order.packing.Item;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+/**
+ * Tests of the JSON helper: the format of the string literals (a null
+ * string is written as the literal null, not as the string "null") and the
+ * escaping, read back by the JSON parser
+ * 
+ * @author Filipe Certal (filipe.certal@gmail.com)
+ */
+public class JSONTest {
+    
+    public static void main(String[] args) throws Exception {
+        
+// TEST #1:
+
+        System.out.println("TEST #1 : Null strings... ");
+        
+        check(JSONTest.string(null).equals("null"), "null string");
+        check(JSONTest.object(null).equals("null"), "null object");
+        check(JSONTest.string("null").equals("\"null\""), "the string null");
+        
+        Item item = new Item("A1", null, 1, 2, 3);
+        
+        check(item.toJSONString().contains("\"description\": null"), "null description: " + item.toJSONString());
+        
+        JSONObject parsed = (JSONObject) new JSONParser().parse(item.toJSONString());
+        
+        check(parsed.containsKey("description") && parsed.get("description") == null, "null description read back");
+        
+        Person person = new Person(null, new Address(null, "city", "country", "state", 1));
+        
+        check(person.toJSONString().contains("\"name\": null") && person.toJSONString().contains("\"street\": null"), "null name and street: " + person.toJSONString());
+        
+// TEST #2:
+
+        System.out.println("TEST #2 : Escaping... ");
+        
+        check(JSONTest.string("plain text").equals("\"plain text\""), "plain string");
+        check(JSONTest.string("a\"b\\c").equals("\"a\\\"b\\\\c\""), "quote and backslash");
+        check(JSONTest.string("a\nb\rc\td\be\ff").equals("\"a\\nb\\rc\\td\\be\\ff\""), "short escapes");
+        check(JSONTest.string("\u0001\u001f\u2028\u2029").equals("\"\\u0001\\u001f\\u2028\\u2029\""), "unicode escapes");
+        check(JSONTest.object(Color.RED).equals("\"RED\""), "object as its string");
+        
+        String text = "quote \" backslash \\ line\nfeed \u0000 end\u2028";
+        
+        check(new JSONParser().parse(JSONTest.string(text)).equals(text), "escaped string read back");
+        
+        System.out.println("OK");
+    }
+    
+    /**
+     * An object written by its toString
+     */
+    private enum Color {
+        
+        RED
+    }
+    
+    private static String string(String s) throws Exception {
+        
+        StringWriter out = new StringWriter();
+        
+        JSON.writeString(out, s);
+        
+        return out.toString();
+    }
+    
+    private static String object(Object o) throws Exception {
+        
+        StringWriter out = new StringWriter();
+        
+        JSON.writeString(out, o);
+        
+        return out.toString();
+    }
+    
+    private static void check(boolean condition, String message) {
+        
+        if (!condition) {
+            
+            throw new AssertionError(message);
+        }
+    }
+    
+}